@@ -7,11 +7,8 @@ import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
-import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -188,7 +185,7 @@ public class Main {
 
         final List<String> overloadPeriodList = new ArrayList<>();
 
-        final Deque<Pair<Integer, Long>> latestResponseTimes = new ArrayDeque<>();
+        final ResponseTimeWindow latestResponseTimes = new ResponseTimeWindow(averageCount);
         boolean isOverload = false;
         String overloadStart = null;
 
@@ -199,19 +196,18 @@ public class Main {
                 continue;
             }
 
-            latestResponseTimes.addLast(new Pair<>(i, Long.valueOf(line[INDEX_RETURN_TIME])));
+            latestResponseTimes.addLast(i, Long.parseLong(line[INDEX_RETURN_TIME]));
 
             // 指定された回数に到達
             if (latestResponseTimes.size() >= averageCount) {
-                final double averageTime = latestResponseTimes.stream()
-                        .map(Pair::getRight)
-                        .collect(Collectors.averagingLong(a -> a));
+                // 応答時間の合計を保持しているため、平均の算出は指定平均回数によらず一定時間
+                final double averageTime = latestResponseTimes.average();
 
                 // 平均が許容秒数を超えている場合
                 if (averageTime > (double) notAcceptableMillis) {
                     if (!isOverload) {
                         // 最初の要素のインデックスを用いて日時を取得
-                        overloadStart = lineList.get(latestResponseTimes.getFirst().getLeft())[INDEX_CONFIRM_DATE];
+                        overloadStart = lineList.get(latestResponseTimes.firstLineIndex())[INDEX_CONFIRM_DATE];
                     }
 
                     isOverload = true;
@@ -0,0 +1,72 @@
+package com.asukahime.logmonitor;
+
+/**
+ * 直近の応答時間を指定回数分だけ保持するリングバッファです。
+ *
+ * 応答時間の合計を追加・削除のたびに更新するため、平均の算出は保持件数によらず O(1) です。
+ * 値はプリミティブ配列に保持し、追加時にオブジェクトを生成しません。
+ */
+public class ResponseTimeWindow {
+
+    // 応答時間と、その応答時間が記録された行のインデックス
+    private final long[] responseTimes;
+    private final int[] lineIndexes;
+
+    private int head = 0;
+    private int size = 0;
+    private long sum = 0;
+
+    /**
+     * @param capacity 保持する応答時間の最大件数
+     */
+    public ResponseTimeWindow(final int capacity) {
+        responseTimes = new long[Math.max(capacity, 1)];
+        lineIndexes = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * 末尾に応答時間を追加します。
+     *
+     * @param lineIndex 応答時間が記録された行のインデックス
+     * @param responseTime 応答時間
+     */
+    public void addLast(final int lineIndex, final long responseTime) {
+
+        final int tail = (head + size) % responseTimes.length;
+        responseTimes[tail] = responseTime;
+        lineIndexes[tail] = lineIndex;
+        sum += responseTime;
+        size++;
+    }
+
+    /**
+     * 先頭の応答時間を削除します。
+     */
+    public void removeFirst() {
+
+        sum -= responseTimes[head];
+        head = (head + 1) % responseTimes.length;
+        size--;
+    }
+
+    /**
+     * @return 保持している応答時間の平均
+     */
+    public double average() {
+        return size == 0 ? 0.0d : (double) sum / size;
+    }
+
+    /**
+     * @return 先頭の応答時間が記録された行のインデックス
+     */
+    public int firstLineIndex() {
+        return lineIndexes[head];
+    }
+
+    /**
+     * @return 保持している件数
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -280,4 +280,23 @@ public class MainTest {
                 , out.toString());
     }
 
+    @Test
+    public void test_doProcess_正常_過負荷状態出力_指定平均回数を超える行数() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        final String[] args = new String[4];
+        args[0] = validFileName;
+        args[1] = "1";
+        args[2] = "3";
+        args[3] = "1000";
+
+        // 指定平均回数の数倍の行で、直近の応答時間の入れ替えを繰り返しても、毎回平均を計算し直した場合と同じ期間となる
+        Main.main(args);
+        assertEquals("IP : 1.1.1.2/24, SECONDS_TO_RETURN : 10\r\n"
+                + "IP : 1.1.1.2/24, OVERLOAD_PERIOD : 20210717101020-20210717101040\r\n"
+                + "IP : 1.1.1.2/24, OVERLOAD_PERIOD : 20210717101040-20210717101130\r\n"
+                + "IP : 1.1.1.2/24, OVERLOAD_PERIOD : 20210717101130-20210717101200\r\n"
+                , out.toString());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.asukahime.logmonitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ベンチマークのウォームアップ・計測を行い、スループットとアロケーション量を集計します。
+ *
+ * 1回の呼び出しで処理した件数(行数)を操作数として、計測期間中の操作数/秒と、
+ * 計測スレッドが確保したバイト数を操作数で割った値(B/op)、確保速度(MB/s)を求めます。
+ * 確保したバイト数は com.sun.management.ThreadMXBean から取得するため、HotSpot 系のJVMで実行してください。
+ */
+public class BenchmarkRunner {
+
+    /**
+     * 計測対象の処理です。
+     */
+    @FunctionalInterface
+    public interface Benchmark {
+
+        /**
+         * @return 結果から求めた値。最適化で処理が省略されないよう、集計値に加算します。
+         */
+        long run();
+    }
+
+    private final int warmupIterations;
+
+    private final int measurementIterations;
+
+    private final long iterationMillis;
+
+    private final String filter;
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // 処理結果の集計値(最適化で処理が省略されないよう保持する)
+    private long consumed = 0;
+
+    /**
+     * @param warmupIterations ウォームアップの回数
+     * @param measurementIterations 計測の回数
+     * @param iterationMillis 1回あたりの時間(ミリ秒)
+     * @param filter 名前にこの文字列を含むベンチマークのみ実行する。空文字の場合はすべて実行する
+     */
+    public BenchmarkRunner(final int warmupIterations, final int measurementIterations, final long iterationMillis, final String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationMillis = iterationMillis;
+        this.filter = filter;
+    }
+
+    /**
+     * ヘッダ行を出力します。
+     */
+    public void printHeader() {
+        System.out.println(String.format(Locale.ROOT, "%-40s %-12s %16s %10s %12s %12s",
+                "Benchmark", "Param", "ops/s", "error(%)", "B/op", "alloc MB/s"));
+    }
+
+    /**
+     * ベンチマークを実行し、結果を1行出力します。
+     *
+     * @param name ベンチマーク名
+     * @param param パラメータ
+     * @param operationsPerRun 1回の呼び出しで処理する件数
+     * @param benchmark 計測対象の処理
+     */
+    public void run(final String name, final String param, final long operationsPerRun, final Benchmark benchmark) {
+
+        if (!name.contains(filter)) {
+            return;
+        }
+
+        for (int i = 0; i < warmupIterations; i++) {
+            iterate(operationsPerRun, benchmark);
+        }
+
+        final List<double[]> results = new ArrayList<>();
+        for (int i = 0; i < measurementIterations; i++) {
+            results.add(iterate(operationsPerRun, benchmark));
+        }
+
+        double throughputSum = 0;
+        double bytesPerOperationSum = 0;
+        for (final double[] result : results) {
+            throughputSum += result[0];
+            bytesPerOperationSum += result[1];
+        }
+        final double throughput = throughputSum / results.size();
+        final double bytesPerOperation = bytesPerOperationSum / results.size();
+
+        // 計測回ごとのばらつき(標準偏差の平均に対する割合)
+        double variance = 0;
+        for (final double[] result : results) {
+            variance += (result[0] - throughput) * (result[0] - throughput);
+        }
+        final double error = results.size() > 1 ? Math.sqrt(variance / (results.size() - 1)) / throughput * 100 : 0;
+
+        System.out.println(String.format(Locale.ROOT, "%-40s %-12s %16.1f %10.1f %12.1f %12.1f",
+                name, param, throughput, error, bytesPerOperation, throughput * bytesPerOperation / (1024 * 1024)));
+    }
+
+    /**
+     * 1回分の時間だけ処理を繰り返し、操作数/秒と操作あたりの確保バイト数を返却します。
+     */
+    private double[] iterate(final long operationsPerRun, final Benchmark benchmark) {
+
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        final long deadline = start + iterationMillis * 1_000_000L;
+
+        long operations = 0;
+        long now;
+        do {
+            consumed += benchmark.run();
+            operations += operationsPerRun;
+            now = System.nanoTime();
+        } while (now < deadline);
+
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new double[] {operations * 1e9 / (now - start), (double) allocated / operations};
+    }
+
+    /**
+     * @return 処理結果の集計値
+     */
+    public long getConsumed() {
+        return consumed;
+    }
+}
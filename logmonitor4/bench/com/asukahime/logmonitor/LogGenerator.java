@@ -0,0 +1,572 @@
+package com.asukahime.logmonitor;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 負荷試験・故障注入の試験用に、LINE_REGEXP 形式のpingログを生成します。
+ *
+ * 指定したサブネット数・プレフィックス長でサーバーを割り当て、全サーバーが ping 間隔ごとに1行ずつ出力します。
+ * 以下の故障を乱数で注入し、同じシードからは同じログを生成します。
+ * <ul>
+ *     <li>連続タイムアウト:1サーバーが1回以上連続してタイムアウトする</li>
+ *     <li>過負荷:1サーバーの応答時間が山なりに増加し、元に戻る</li>
+ *     <li>サブネット障害:サブネットの全サーバーが同時に連続してタイムアウトする</li>
+ *     <li>フラッピング:1サーバーがタイムアウトと応答を交互に繰り返す</li>
+ * </ul>
+ *
+ * 期待結果ファイルを指定した場合、Main を --sort(過負荷の指定がある場合は --overload-count・--overload-millis も)
+ * 付きで実行した結果と一致する内容を出力します。サブネットの故障は --subnet-fault-percent=100(既定値)の結果です。
+ * サブネット障害は、サブネット内で他の故障が発生していない時にのみ注入し、1サーバーの故障はサブネットの
+ * 少なくとも2サーバーが正常な間にのみ注入するため、サブネットの故障期間は注入した障害から一意に決まります。
+ *
+ * 実行方法:java -cp 出力先 com.asukahime.logmonitor.LogGenerator --output=出力先 [オプション]
+ */
+public class LogGenerator {
+
+    private static final String OPTION_OUTPUT = "--output=";
+    private static final String OPTION_EXPECTED = "--expected=";
+    private static final String OPTION_SEED = "--seed=";
+    private static final String OPTION_HOSTS = "--hosts=";
+    private static final String OPTION_SUBNETS = "--subnets=";
+    private static final String OPTION_PREFIXES = "--prefixes=";
+    private static final String OPTION_START = "--start=";
+    private static final String OPTION_INTERVAL = "--interval=";
+    private static final String OPTION_DURATION = "--duration=";
+    private static final String OPTION_COUNT = "--count=";
+    private static final String OPTION_OVERLOAD_COUNT = "--overload-count=";
+    private static final String OPTION_OVERLOAD_MILLIS = "--overload-millis=";
+    private static final String OPTION_BASE_MILLIS = "--base-millis=";
+    private static final String OPTION_STREAK_RATE = "--streak-rate=";
+    private static final String OPTION_MAX_STREAK = "--max-streak=";
+    private static final String OPTION_FLAP_RATE = "--flap-rate=";
+    private static final String OPTION_MAX_FLAP = "--max-flap=";
+    private static final String OPTION_RAMP_RATE = "--ramp-rate=";
+    private static final String OPTION_MAX_RAMP = "--max-ramp=";
+    private static final String OPTION_RAMP_PEAK_MILLIS = "--ramp-peak-millis=";
+    private static final String OPTION_OUTAGE_RATE = "--outage-rate=";
+    private static final String OPTION_MAX_OUTAGE = "--max-outage=";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // アドレスの先頭オクテットの最大値(クラスA-Cの範囲とする)
+    private static final long MAX_FIRST_OCTET = 223;
+
+    // 1行の最大長(日時14桁、IPアドレス18文字、応答時間10桁と区切り文字・改行)
+    private static final int MAX_LINE_LENGTH = 48;
+
+    // サーバーの状態
+    private static final byte NORMAL = 0;
+    private static final byte STREAK = 1;
+    private static final byte FLAP = 2;
+
+    private final SplittableRandom random;
+    private final int intervalSeconds;
+    private final long startEpochSecond;
+    private final long tickCount;
+    private final int notAcceptableCount;
+    private final int overloadCount;
+    private final int overloadMillis;
+    private final int baseMillis;
+    private final double streakRate;
+    private final int maxStreak;
+    private final double flapRate;
+    private final int maxFlap;
+    private final double rampRate;
+    private final int maxRamp;
+    private final int rampPeakMillis;
+    private final double outageRate;
+    private final int maxOutage;
+
+    // サーバーごとの情報(添字はサーバーの番号)
+    private final long[] serverKeys;
+    private final int[] serverSubnets;
+    // サーバーIPの文字列(番号順に連結したもの)と各サーバーの開始位置
+    private final byte[] serverText;
+    private final int[] serverTextOffsets;
+
+    // サブネットごとの情報(添字はサブネットの番号)
+    private final long[] subnetKeys;
+    private final int[] subnetSizes;
+
+    // 注入中の故障
+    private final byte[] serverStates;
+    private final int[] serverRemainingTicks;
+    private final int[] rampTicks;
+    private final int[] rampRemainingTicks;
+    private final int[] subnetActiveServers;
+    private final int[] outageRemainingTicks;
+    private final long[] outageStartEpochSeconds;
+
+    // 期待結果の算出用(連続タイムアウト回数・開始時刻、直近の応答時間、過負荷状態)
+    private final int[] timeoutCounts;
+    private final long[] timeoutStartEpochSeconds;
+    private final int[] windowResponseTimes;
+    private final long[] windowEpochSeconds;
+    private final int[] windowHeads;
+    private final int[] windowSizes;
+    private final long[] windowSums;
+    private final boolean[] overloads;
+    private final long[] overloadStartEpochSeconds;
+    private final long[] previousEpochSeconds;
+    private final Map<Integer, List<Long>> serverSecondsMap = new HashMap<>();
+    private final Map<Integer, List<String>> serverOverloadMap = new HashMap<>();
+    private final Map<Integer, List<String>> subnetPeriodMap = new HashMap<>();
+
+    // 注入した故障の件数
+    private long streakCount = 0;
+    private long flapCount = 0;
+    private long rampCount = 0;
+    private long outageCount = 0;
+
+    private LogGenerator(final Map<String, String> options) {
+
+        random = new SplittableRandom(parseLong(options, OPTION_SEED, 1));
+        intervalSeconds = parseInt(options, OPTION_INTERVAL, 1, 1);
+        startEpochSecond = LogTimestamp.toEpochSecond(parseLong(options, OPTION_START, 20210717000000L));
+        tickCount = Math.max(parseLong(options, OPTION_DURATION, 3600) / intervalSeconds, 1);
+        notAcceptableCount = parseInt(options, OPTION_COUNT, 3, 1);
+        overloadCount = parseInt(options, OPTION_OVERLOAD_COUNT, OVERLOAD_DISABLED, 1);
+        overloadMillis = parseInt(options, OPTION_OVERLOAD_MILLIS, OVERLOAD_DISABLED, 1);
+        if ((overloadCount == OVERLOAD_DISABLED) != (overloadMillis == OVERLOAD_DISABLED)) {
+            throw new IllegalArgumentException(OPTION_OVERLOAD_COUNT + " と " + OPTION_OVERLOAD_MILLIS + " は同時に指定してください。");
+        }
+        baseMillis = parseInt(options, OPTION_BASE_MILLIS, 50, 1);
+        streakRate = parseRate(options, OPTION_STREAK_RATE, 0.0005);
+        maxStreak = parseInt(options, OPTION_MAX_STREAK, 2 * notAcceptableCount, 1);
+        flapRate = parseRate(options, OPTION_FLAP_RATE, 0.0001);
+        maxFlap = parseInt(options, OPTION_MAX_FLAP, 20, 1);
+        rampRate = parseRate(options, OPTION_RAMP_RATE, 0.0002);
+        maxRamp = parseInt(options, OPTION_MAX_RAMP, 60, 1);
+        rampPeakMillis = parseInt(options, OPTION_RAMP_PEAK_MILLIS, 20 * baseMillis, 1);
+        outageRate = parseRate(options, OPTION_OUTAGE_RATE, 0.0002);
+        maxOutage = parseInt(options, OPTION_MAX_OUTAGE, 2 * notAcceptableCount, 1);
+
+        final int serverCount = parseInt(options, OPTION_HOSTS, 1000, 1);
+        final int subnetCount = parseInt(options, OPTION_SUBNETS, Math.max(serverCount / 100, 1), 1);
+        if (subnetCount > serverCount) {
+            throw new IllegalArgumentException(OPTION_SUBNETS + " は " + OPTION_HOSTS + " 以下としてください。");
+        }
+        final int[] prefixLengths = Arrays.stream(options.getOrDefault(OPTION_PREFIXES, "8,16,24").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+
+        serverKeys = new long[serverCount];
+        serverTextOffsets = new int[serverCount + 1];
+        serverSubnets = new int[serverCount];
+        subnetKeys = new long[subnetCount];
+        subnetSizes = new int[subnetCount];
+        serverText = assignAddresses(prefixLengths);
+
+        serverStates = new byte[serverCount];
+        serverRemainingTicks = new int[serverCount];
+        rampTicks = new int[serverCount];
+        rampRemainingTicks = new int[serverCount];
+        subnetActiveServers = new int[subnetCount];
+        outageRemainingTicks = new int[subnetCount];
+        outageStartEpochSeconds = new long[subnetCount];
+
+        timeoutCounts = new int[serverCount];
+        timeoutStartEpochSeconds = new long[serverCount];
+        final int windowCapacity = Math.max(overloadCount, 1);
+        windowResponseTimes = new int[overloadCount == OVERLOAD_DISABLED ? 0 : serverCount * windowCapacity];
+        windowEpochSeconds = new long[windowResponseTimes.length];
+        windowHeads = new int[serverCount];
+        windowSizes = new int[serverCount];
+        windowSums = new long[serverCount];
+        overloads = new boolean[serverCount];
+        overloadStartEpochSeconds = new long[serverCount];
+        previousEpochSeconds = new long[serverCount];
+    }
+
+    public static void main(final String[] args) throws IOException {
+
+        final Map<String, String> options = new HashMap<>();
+        for (final String arg : args) {
+            final int equal = arg.indexOf('=');
+            if (!arg.startsWith(OPTION_PREFIX) || equal < 0) {
+                throw new IllegalArgumentException("不正なオプションです:" + arg);
+            }
+            options.put(arg.substring(0, equal + 1), arg.substring(equal + 1));
+        }
+        if (!options.containsKey(OPTION_OUTPUT)) {
+            throw new IllegalArgumentException(OPTION_OUTPUT + " を指定してください。");
+        }
+
+        final LogGenerator generator = new LogGenerator(options);
+        final long start = System.nanoTime();
+        final long bytes;
+        try (final OutputStream out = new FileOutputStream(options.get(OPTION_OUTPUT))) {
+            bytes = generator.generate(out);
+        }
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        if (options.containsKey(OPTION_EXPECTED)) {
+            try (final PrintStream out = new PrintStream(new FileOutputStream(options.get(OPTION_EXPECTED)), false, "US-ASCII")) {
+                generator.writeExpected(out);
+            }
+        }
+
+        System.out.println(String.format(Locale.ROOT,
+                "lines=%d bytes=%d elapsed=%.2fs (%.1f MB/s) streaks=%d flaps=%d ramps=%d outages=%d",
+                generator.tickCount * generator.serverKeys.length, bytes, elapsedSeconds, bytes / elapsedSeconds / (1024 * 1024),
+                generator.streakCount, generator.flapCount, generator.rampCount, generator.outageCount));
+    }
+
+    /**
+     * サブネットのアドレスとプレフィックス長を決め、サーバーをサブネットに均等に割り当てます。
+     * アドレスはサブネットごと・サーバーごとに重複しないよう乱数で決めます。
+     *
+     * @return サーバーIPの文字列を番号順に連結したもの
+     */
+    private byte[] assignAddresses(final int[] prefixLengths) {
+
+        // 先頭オクテットを 1-MAX_FIRST_OCTET とした場合に、プレフィックス長ごとに取りうるネットワーク数を確認する
+        final int subnetCountPerPrefix = (subnetKeys.length + prefixLengths.length - 1) / prefixLengths.length;
+        for (final int prefixLength : prefixLengths) {
+            if (prefixLength < 8 || prefixLength > 30 || (MAX_FIRST_OCTET << (prefixLength - 8)) < subnetCountPerPrefix) {
+                throw new IllegalArgumentException(OPTION_PREFIXES + " のプレフィックス長 " + prefixLength + " で " + subnetCountPerPrefix + " 個のサブネットを割り当てられません。");
+            }
+        }
+
+        final Set<Long> subnetKeySet = new HashSet<>();
+        final Set<Integer> addressSet = new HashSet<>();
+        // 番号順に出力する際に各サブネットのサーバーが混在するよう、サブネットへの割り当て順をシャッフルする
+        final int[] servers = IntStream.range(0, serverKeys.length).toArray();
+        for (int i = servers.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int swap = servers[i];
+            servers[i] = servers[j];
+            servers[j] = swap;
+        }
+
+        int assigned = 0;
+        for (int subnet = 0; subnet < subnetKeys.length; subnet++) {
+            final int prefixLength = prefixLengths[subnet % prefixLengths.length];
+            final int size = serverKeys.length / subnetKeys.length + (subnet < serverKeys.length % subnetKeys.length ? 1 : 0);
+            // ネットワークアドレス・ブロードキャストアドレスを除いたホスト数
+            final long hostCapacity = (1L << (32 - prefixLength)) - 2;
+            if (hostCapacity < size) {
+                throw new IllegalArgumentException(OPTION_PREFIXES + " のプレフィックス長 " + prefixLength + " に " + size + " 台のサーバーを割り当てられません。");
+            }
+
+            long subnetKey;
+            do {
+                final int address = (1 + random.nextInt((int) MAX_FIRST_OCTET)) << 24 | random.nextInt(1 << 24);
+                subnetKey = ServerAddress.subnetKey(address, prefixLength);
+            } while (!subnetKeySet.add(subnetKey));
+            subnetKeys[subnet] = subnetKey;
+            subnetSizes[subnet] = size;
+
+            final int network = ServerAddress.address(subnetKey);
+            for (int i = 0; i < size; i++) {
+                final int server = servers[assigned++];
+                int address;
+                do {
+                    address = network + 1 + (int) random.nextLong(hostCapacity);
+                } while (!addressSet.add(address));
+                serverKeys[server] = ServerAddress.pack(address, prefixLength);
+                serverSubnets[server] = subnet;
+            }
+        }
+
+        final StringBuilder text = new StringBuilder(serverKeys.length * 18);
+        for (int server = 0; server < serverKeys.length; server++) {
+            serverTextOffsets[server] = text.length();
+            ServerAddress.appendText(serverKeys[server], text);
+        }
+        serverTextOffsets[serverKeys.length] = text.length();
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * ログを生成して書き出します。
+     *
+     * @param out 書き出し先
+     * @return 書き出したバイト数
+     */
+    private long generate(final OutputStream out) throws IOException {
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final char[] timestampChars = new char[14];
+        final byte[] timestamp = new byte[timestampChars.length];
+        int length = 0;
+        long bytes = 0;
+
+        for (long tick = 0; tick < tickCount; tick++) {
+            final long epochSecond = startEpochSecond + tick * intervalSeconds;
+            LogTimestamp.write(epochSecond, timestampChars);
+            for (int i = 0; i < timestamp.length; i++) {
+                timestamp[i] = (byte) timestampChars[i];
+            }
+            startOutages(epochSecond);
+
+            for (int server = 0; server < serverKeys.length; server++) {
+                if (length > buffer.length - MAX_LINE_LENGTH) {
+                    out.write(buffer, 0, length);
+                    bytes += length;
+                    length = 0;
+                }
+
+                System.arraycopy(timestamp, 0, buffer, length, timestamp.length);
+                length += timestamp.length;
+                buffer[length++] = ',';
+                final int textLength = serverTextOffsets[server + 1] - serverTextOffsets[server];
+                System.arraycopy(serverText, serverTextOffsets[server], buffer, length, textLength);
+                length += textLength;
+                buffer[length++] = ',';
+
+                final int responseTime = nextResponseTime(server);
+                if (responseTime < 0) {
+                    buffer[length++] = (byte) TIMEOUT_LETTER.charAt(0);
+                } else {
+                    length = writeDecimal(responseTime, buffer, length);
+                }
+                buffer[length++] = '\n';
+
+                expect(server, epochSecond, responseTime);
+            }
+
+            endOutages(epochSecond);
+        }
+
+        out.write(buffer, 0, length);
+        return bytes + length;
+    }
+
+    /**
+     * サブネット内で他の故障が発生していないサブネットに、一定の確率でサブネット障害を注入します。
+     * 障害の期間は、タイムアウトする回数と、全サーバーが復帰する1回分です。
+     */
+    private void startOutages(final long epochSecond) {
+
+        for (int subnet = 0; subnet < subnetKeys.length; subnet++) {
+            if (outageRemainingTicks[subnet] == 0 && subnetActiveServers[subnet] == 0 && random.nextDouble() < outageRate) {
+                outageRemainingTicks[subnet] = 1 + random.nextInt(maxOutage) + 1;
+                outageStartEpochSeconds[subnet] = epochSecond;
+                outageCount++;
+            }
+        }
+    }
+
+    /**
+     * サブネット障害の残り回数を減らし、復帰した障害の故障期間を期待結果に記録します。
+     * 全サーバーが復帰した時点(ソート後の先頭行)で故障期間が終わるため、終了時刻は直前の ping 間隔の時刻です。
+     */
+    private void endOutages(final long epochSecond) {
+
+        for (int subnet = 0; subnet < subnetKeys.length; subnet++) {
+            if (outageRemainingTicks[subnet] == 0 || --outageRemainingTicks[subnet] > 0) {
+                continue;
+            }
+
+            final long timeoutTicks = (epochSecond - outageStartEpochSeconds[subnet]) / intervalSeconds;
+            if (timeoutTicks >= notAcceptableCount) {
+                subnetPeriodMap.computeIfAbsent(subnet, key -> new ArrayList<>()).add(
+                        LogTimestamp.format(outageStartEpochSeconds[subnet]) + "-" + LogTimestamp.format(epochSecond - intervalSeconds));
+            }
+        }
+    }
+
+    /**
+     * サーバーの次の応答時間を決めます。
+     *
+     * @return 応答時間。タイムアウトの場合は負の値
+     */
+    private int nextResponseTime(final int server) {
+
+        final int subnet = serverSubnets[server];
+        final boolean timeout;
+        if (outageRemainingTicks[subnet] > 0) {
+            // サブネット障害中(最後の1回は復帰)
+            timeout = outageRemainingTicks[subnet] > 1;
+        } else {
+            // サブネットの少なくとも2サーバーが正常な場合のみ、新たな故障を注入する
+            if (serverStates[server] == NORMAL && subnetActiveServers[subnet] < subnetSizes[subnet] - 2) {
+                final double value = random.nextDouble();
+                if (value < streakRate) {
+                    serverStates[server] = STREAK;
+                    serverRemainingTicks[server] = 1 + random.nextInt(maxStreak) + 1;
+                    subnetActiveServers[subnet]++;
+                    streakCount++;
+                } else if (value < streakRate + flapRate) {
+                    // タイムアウトと応答を交互に繰り返し、応答で終わる
+                    serverStates[server] = FLAP;
+                    serverRemainingTicks[server] = 2 * (1 + random.nextInt(maxFlap));
+                    subnetActiveServers[subnet]++;
+                    flapCount++;
+                }
+            }
+
+            switch (serverStates[server]) {
+                case STREAK:
+                    timeout = serverRemainingTicks[server] > 1;
+                    break;
+                case FLAP:
+                    timeout = serverRemainingTicks[server] % 2 == 0;
+                    break;
+                default:
+                    timeout = false;
+            }
+
+            if (serverStates[server] != NORMAL && --serverRemainingTicks[server] == 0) {
+                serverStates[server] = NORMAL;
+                subnetActiveServers[subnet]--;
+            }
+        }
+
+        // 応答時間の増加は、タイムアウトとは独立に注入する
+        if (rampRemainingTicks[server] == 0 && random.nextDouble() < rampRate) {
+            rampTicks[server] = 1 + random.nextInt(maxRamp);
+            rampRemainingTicks[server] = rampTicks[server];
+            rampCount++;
+        }
+
+        final int baseResponseTime = 1 + random.nextInt(baseMillis);
+        if (rampRemainingTicks[server] == 0) {
+            return timeout ? -1 : baseResponseTime;
+        }
+
+        // 期間の中央で最大となる三角形状に応答時間を増やす
+        final int elapsed = rampTicks[server] - rampRemainingTicks[server]--;
+        final double progress = (elapsed + 0.5) / rampTicks[server];
+        final int rampResponseTime = baseResponseTime + (int) (rampPeakMillis * (1 - Math.abs(2 * progress - 1)));
+        return timeout ? -1 : rampResponseTime;
+    }
+
+    /**
+     * 1行分の応答時間から、サーバーの復帰までの秒数と過負荷期間の期待結果を更新します。
+     */
+    private void expect(final int server, final long epochSecond, final int responseTime) {
+
+        if (responseTime < 0) {
+            if (timeoutCounts[server]++ == 0) {
+                timeoutStartEpochSeconds[server] = epochSecond;
+            }
+        } else {
+            if (timeoutCounts[server] >= notAcceptableCount) {
+                serverSecondsMap.computeIfAbsent(server, key -> new ArrayList<>())
+                        .add(epochSecond - timeoutStartEpochSeconds[server]);
+            }
+            timeoutCounts[server] = 0;
+
+            if (overloadCount != OVERLOAD_DISABLED) {
+                expectOverload(server, epochSecond, responseTime);
+            }
+        }
+
+        previousEpochSeconds[server] = epochSecond;
+    }
+
+    /**
+     * 直近の指定回数分の応答時間の平均から、過負荷期間の期待結果を更新します。
+     * 過負荷期間の終了時刻は、平均が許容時間以下となった行の直前の行(タイムアウトを含む)の時刻です。
+     */
+    private void expectOverload(final int server, final long epochSecond, final int responseTime) {
+
+        final int offset = server * overloadCount;
+        final int tail = (windowHeads[server] + windowSizes[server]) % overloadCount;
+        windowResponseTimes[offset + tail] = responseTime;
+        windowEpochSeconds[offset + tail] = epochSecond;
+        windowSums[server] += responseTime;
+        if (++windowSizes[server] < overloadCount) {
+            return;
+        }
+
+        if ((double) windowSums[server] / windowSizes[server] > overloadMillis) {
+            if (!overloads[server]) {
+                overloadStartEpochSeconds[server] = windowEpochSeconds[offset + windowHeads[server]];
+                overloads[server] = true;
+            }
+        } else if (overloads[server]) {
+            serverOverloadMap.computeIfAbsent(server, key -> new ArrayList<>()).add(
+                    LogTimestamp.format(overloadStartEpochSeconds[server]) + "-" + LogTimestamp.format(previousEpochSeconds[server]));
+            overloads[server] = false;
+        }
+
+        windowSums[server] -= windowResponseTimes[offset + windowHeads[server]];
+        windowHeads[server] = (windowHeads[server] + 1) % overloadCount;
+        windowSizes[server]--;
+    }
+
+    /**
+     * 期待結果を、Main の --sort 指定時と同じ順序・形式で出力します。
+     */
+    private void writeExpected(final PrintStream out) {
+
+        final ResultSink sink = ResultSink.create(FORMAT_TEXT, out);
+        final Comparator<Integer> serverOrder = Comparator.comparingLong(server -> serverKeys[server]);
+
+        serverSecondsMap.keySet().stream().sorted(serverOrder).forEach(server -> {
+            final String address = ServerAddress.format(serverKeys[server]);
+            serverSecondsMap.get(server).forEach(seconds -> sink.writeSeconds(ResultType.SECONDS_TO_RETURN, address, seconds));
+        });
+        serverOverloadMap.keySet().stream().sorted(serverOrder).forEach(server -> {
+            final String address = ServerAddress.format(serverKeys[server]);
+            serverOverloadMap.get(server).forEach(period -> sink.writePeriod(ResultType.OVERLOAD_PERIOD, address, period));
+        });
+        subnetPeriodMap.keySet().stream().sorted(Comparator.comparingLong(subnet -> subnetKeys[subnet])).forEach(subnet -> {
+            final String subnetText = ServerAddress.formatSubnet(subnetKeys[subnet]);
+            subnetPeriodMap.get(subnet).forEach(period -> sink.writePeriod(ResultType.SUBNET_FAULT_PERIOD, subnetText, period));
+        });
+
+        sink.flush();
+    }
+
+    private static int writeDecimal(final int value, final byte[] dest, final int offset) {
+
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+
+        int rest = value;
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            dest[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+
+        return offset + digits;
+    }
+
+    private static long parseLong(final Map<String, String> options, final String name, final long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    private static int parseInt(final Map<String, String> options, final String name, final int defaultValue, final int min) {
+
+        if (!options.containsKey(name)) {
+            return defaultValue;
+        }
+
+        final int value = Integer.parseInt(options.get(name));
+        if (value < min) {
+            throw new IllegalArgumentException(name + " は " + min + " 以上としてください。");
+        }
+        return value;
+    }
+
+    private static double parseRate(final Map<String, String> options, final String name, final double defaultValue) {
+
+        final double value = options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+        if (value < 0 || value > 1) {
+            throw new IllegalArgumentException(name + " は 0 以上 1 以下としてください。");
+        }
+        return value;
+    }
+}
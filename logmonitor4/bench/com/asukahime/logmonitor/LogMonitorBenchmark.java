@@ -0,0 +1,231 @@
+package com.asukahime.logmonitor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 行の検証・解析、グループ分け、各故障判定の処理性能を計測します。
+ *
+ * 従来の String ベースの処理(Main)と、逐次処理の検出器(LogLineParser、各 Detector)を同じデータで計測し、
+ * 1行を1操作としたスループット(ops/s)とアロケーション量(B/op)を出力します。
+ *
+ * 実行方法:java -cp 出力先 com.asukahime.logmonitor.LogMonitorBenchmark [ベンチマーク名に含まれる文字列]
+ */
+public class LogMonitorBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 1000;
+
+    private static final int NOT_ACCEPTABLE_COUNT = 3;
+    private static final int NOT_ACCEPTABLE_MILLIS = 100;
+    private static final int LINE_COUNT = 100_000;
+    private static final int GROUPING_SERVER_COUNT = 1000;
+    private static final int[] OVERLOAD_WINDOW_SIZES = {1, 10, 100, 1000};
+    private static final int[] SUBNET_SIZES = {4, 64, 1024};
+    private static final int HISTOGRAM_CHUNK_COUNT = 64;
+
+    private static final long SEED = 20210717L;
+
+    public static void main(final String[] args) throws IOException {
+
+        final BenchmarkRunner runner = new BenchmarkRunner(
+                WARMUP_ITERATIONS, MEASUREMENT_ITERATIONS, ITERATION_MILLIS, args.length > 0 ? args[0] : "");
+        final Main main = new Main();
+        runner.printHeader();
+
+        // 行の検証(LINE_REGEXP と LogLineParser)
+        final List<String> lineList = generateLines(GROUPING_SERVER_COUNT, 16, LINE_COUNT);
+        final byte[] fileBytes = toBytes(lineList);
+        runner.run("validate.regex", "-", lineList.size(), () -> lineList.stream().filter(Main.predicate).count());
+        runner.run("validate.parser", "-", lineList.size(), () -> {
+            final LogRecord record = new LogRecord();
+            final long[] valid = new long[1];
+            LogLineReader.splitLines(fileBytes, 0, fileBytes.length, (buf, from, to) -> {
+                if (LogLineParser.parse(buf, from, to, record)) {
+                    valid[0]++;
+                }
+            });
+            return valid[0];
+        });
+
+        // 列指向形式のファイルからの読み込み(検証・解析済みの行の復元)
+        final Path columnarFile = toColumnar(lineList);
+        try {
+            runner.run("read.columnar", "-", lineList.size(), () -> {
+                final long[] count = new long[1];
+                try {
+                    new ColumnarLogReader().read(columnarFile, record -> count[0]++);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return count[0];
+            });
+        } finally {
+            Files.delete(columnarFile);
+        }
+
+        // 行の分割・サーバーごとのグループ分けと、復帰までの秒数の算出
+        runner.run("group.legacy", "servers=" + GROUPING_SERVER_COUNT, lineList.size(),
+                () -> main.createTimeoutServerIPAndReturnTimePairList(lineList, NOT_ACCEPTABLE_COUNT, null).size());
+        runner.run("group.stream", "servers=" + GROUPING_SERVER_COUNT, lineList.size(), () -> {
+            final StreamingLogMonitor monitor = new StreamingLogMonitor(NOT_ACCEPTABLE_COUNT, MAX_SUBNET_FAULT_PERCENT);
+            LogLineReader.splitLines(fileBytes, 0, fileBytes.length, monitor);
+            return monitor.createTimeoutServerIPAndReturnTimePairList().size();
+        });
+
+        // 1サーバー分の復帰までの秒数の算出
+        final List<String> serverLineList = generateLines(1, 24, LINE_COUNT);
+        final List<String[]> serverColumnList = split(serverLineList);
+        final LogRecordBuffer serverRecords = parse(serverLineList);
+        runner.run("calcBetweenTimeout.legacy", "-", serverColumnList.size(),
+                () -> main.calcBetweenTimeout(serverColumnList, NOT_ACCEPTABLE_COUNT).size());
+        runner.run("calcBetweenTimeout.detector", "-", serverRecords.size(), () -> {
+            final TimeoutDetector detector = new TimeoutDetector(NOT_ACCEPTABLE_COUNT);
+            final LogRecord record = new LogRecord();
+            for (int i = 0; i < serverRecords.size(); i++) {
+                serverRecords.get(i, record);
+                detector.accept(record);
+            }
+            return detector.getTimeoutSeconds().size();
+        });
+
+        // 1サーバー分の過負荷期間の算出(指定平均回数ごと)
+        for (final int windowSize : OVERLOAD_WINDOW_SIZES) {
+            runner.run("calcOverloadPeriod.detector", "window=" + windowSize, serverRecords.size(), () -> {
+                final OverloadDetector detector = new OverloadDetector(windowSize, NOT_ACCEPTABLE_MILLIS, 0, null);
+                final LogRecord record = new LogRecord();
+                for (int i = 0; i < serverRecords.size(); i++) {
+                    serverRecords.get(i, record);
+                    detector.accept(record);
+                }
+                return detector.getOverloadPeriods().size();
+            });
+        }
+
+        // 1サーバー分の応答時間のヒストグラムの集計と、チャンクごとに集計したヒストグラムのマージ(1チャンクを1操作とする)
+        runner.run("latencyHistogram.record", "-", serverRecords.size(), () -> {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            final LogRecord record = new LogRecord();
+            for (int i = 0; i < serverRecords.size(); i++) {
+                serverRecords.get(i, record);
+                histogram.accept(record);
+            }
+            return histogram.getPercentile(99);
+        });
+        final LatencyHistogram[] chunkHistograms = new LatencyHistogram[HISTOGRAM_CHUNK_COUNT];
+        final LogRecord chunkRecord = new LogRecord();
+        for (int i = 0; i < chunkHistograms.length; i++) {
+            chunkHistograms[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < serverRecords.size(); i++) {
+            serverRecords.get(i, chunkRecord);
+            chunkHistograms[i % HISTOGRAM_CHUNK_COUNT].accept(chunkRecord);
+        }
+        runner.run("latencyHistogram.merge", "chunks=" + HISTOGRAM_CHUNK_COUNT, HISTOGRAM_CHUNK_COUNT, () -> {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            for (final LatencyHistogram chunkHistogram : chunkHistograms) {
+                histogram.merge(chunkHistogram);
+            }
+            return histogram.getPercentile(99);
+        });
+
+        // 1サブネット分の故障期間の算出(サブネットのサーバー数ごと)
+        for (final int subnetSize : SUBNET_SIZES) {
+            final List<String> subnetLineList = generateLines(subnetSize, 16, LINE_COUNT);
+            final List<String[]> subnetColumnList = split(subnetLineList);
+            final LogRecordBuffer subnetRecords = parse(subnetLineList);
+            runner.run("calcBetweenTimeoutBySubnet.legacy", "hosts=" + subnetSize, subnetColumnList.size(),
+                    () -> main.calcBetweenTimeoutBySubnet(subnetColumnList, NOT_ACCEPTABLE_COUNT, MAX_SUBNET_FAULT_PERCENT).size());
+            runner.run("calcBetweenTimeoutBySubnet.detector", "hosts=" + subnetSize, subnetRecords.size(), () -> {
+                final SubnetTimeoutDetector detector = new SubnetTimeoutDetector(NOT_ACCEPTABLE_COUNT, MAX_SUBNET_FAULT_PERCENT);
+                final LogRecord record = new LogRecord();
+                for (int i = 0; i < subnetRecords.size(); i++) {
+                    subnetRecords.get(i, record);
+                    detector.accept(record);
+                }
+                detector.flush();
+                return detector.getTimeoutPeriods().size();
+            });
+        }
+
+        System.out.println("consumed : " + runner.getConsumed());
+    }
+
+    /**
+     * 同じサブネット(10.0.0.0/16 の範囲)のサーバーが1秒ごとに順にpingを送ったログを生成します。
+     * 一定の確率で連続タイムアウトと応答時間の増加を発生させます。
+     */
+    private static List<String> generateLines(final int serverCount, final int prefixLength, final int lineCount) {
+
+        final Random random = new Random(SEED);
+        final int[] remainingTimeouts = new int[serverCount];
+        final List<String> lineList = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            final int server = i % serverCount;
+            if (remainingTimeouts[server] == 0 && random.nextInt(100) == 0) {
+                remainingTimeouts[server] = 1 + random.nextInt(2 * NOT_ACCEPTABLE_COUNT);
+            }
+
+            final String returnTime;
+            if (remainingTimeouts[server] > 0) {
+                remainingTimeouts[server]--;
+                returnTime = TIMEOUT_LETTER;
+            } else {
+                returnTime = String.valueOf(random.nextInt(2 * NOT_ACCEPTABLE_MILLIS));
+            }
+
+            lineList.add(LogTimestamp.format(1626516610L + i / serverCount)
+                    + "," + ServerAddress.format(ServerAddress.pack(10 << 24 | server, prefixLength))
+                    + "," + returnTime);
+        }
+
+        return lineList;
+    }
+
+    private static byte[] toBytes(final List<String> lineList) {
+        return (String.join("\n", lineList) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static Path toColumnar(final List<String> lineList) throws IOException {
+
+        final Path path = Files.createTempFile("logmonitor", ".lmc");
+        final LogRecordBuffer records = parse(lineList);
+        final LogRecord record = new LogRecord();
+        try (final ColumnarLogWriter writer = new ColumnarLogWriter(path)) {
+            for (int i = 0; i < records.size(); i++) {
+                records.get(i, record);
+                writer.accept(record);
+            }
+            writer.commit();
+        }
+        return path;
+    }
+
+    private static List<String[]> split(final List<String> lineList) {
+
+        final List<String[]> columnList = new ArrayList<>(lineList.size());
+        lineList.forEach(line -> columnList.add(line.split(LINE_DELIMITER)));
+        return columnList;
+    }
+
+    private static LogRecordBuffer parse(final List<String> lineList) {
+
+        final byte[] bytes = toBytes(lineList);
+        final LogRecordBuffer buffer = new LogRecordBuffer(lineList.size());
+        final LogRecord record = new LogRecord();
+        LogLineReader.splitLines(bytes, 0, bytes.length, (buf, from, to) -> {
+            LogLineParser.parse(buf, from, to, record);
+            buffer.add(record);
+        });
+        return buffer;
+    }
+}
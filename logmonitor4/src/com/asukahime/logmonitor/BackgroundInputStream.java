@@ -0,0 +1,181 @@
+package com.asukahime.logmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 元のストリームを別スレッドで読み込み、読み込んだバッファを受け渡す入力ストリームです。
+ * 圧縮ファイルの展開を解析と別のコアで並行して行うために使用します。
+ *
+ * バッファは一定数を使い回すため、読み込みが解析より速い場合も使用メモリは増えません。
+ * 読み込みスレッドで発生した例外は、呼び出し元の read で送出します。
+ */
+public class BackgroundInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    // 読み込み済みで受け渡し待ちにできるバッファ数
+    private static final int QUEUE_CAPACITY = 4;
+
+    private static final String THREAD_NAME = "logmonitor-reader";
+
+    /**
+     * 受け渡すバッファです。
+     */
+    private static class Chunk {
+
+        private final byte[] data;
+
+        private int length;
+
+        // 読み込みスレッドで発生した例外(末尾・例外を表す場合のみ)
+        private final IOException error;
+
+        Chunk(final int size, final IOException error) {
+            this.data = new byte[size];
+            this.error = error;
+        }
+    }
+
+    // ストリームの末尾を表すバッファ
+    private static final Chunk END = new Chunk(0, null);
+
+    private final InputStream source;
+
+    private final BlockingQueue<Chunk> filledQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+
+    private final BlockingQueue<Chunk> freeQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY + 1);
+
+    private final Thread thread;
+
+    // 読み出し中のバッファと位置
+    private Chunk current = null;
+
+    private int position = 0;
+
+    /**
+     * @param source 元のストリーム。このストリームを閉じると閉じます。
+     */
+    public BackgroundInputStream(final InputStream source) {
+
+        this.source = source;
+        for (int i = 0; i < QUEUE_CAPACITY + 1; i++) {
+            freeQueue.add(new Chunk(CHUNK_SIZE, null));
+        }
+
+        thread = new Thread(this::readSource, THREAD_NAME);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 元のストリームを末尾まで読み込み、バッファ単位で受け渡します(読み込みスレッドで実行)。
+     */
+    private void readSource() {
+
+        try {
+            while (true) {
+                final Chunk chunk = freeQueue.take();
+                chunk.length = readFully(chunk.data);
+                if (chunk.length > 0) {
+                    filledQueue.put(chunk);
+                }
+                if (chunk.length < chunk.data.length) {
+                    filledQueue.put(END);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // close により中断された
+        } catch (IOException | RuntimeException e) {
+            final Chunk error = new Chunk(0, e instanceof IOException ? (IOException) e : new IOException(e));
+            filledQueue.offer(error);
+        }
+    }
+
+    private int readFully(final byte[] data) throws IOException {
+
+        int length = 0;
+        while (length < data.length) {
+            final int read = source.read(data, length, data.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        if (!fill()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buf, final int off, final int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        final int length = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, buf, off, length);
+        position += length;
+        return length;
+    }
+
+    /**
+     * 読み出し中のバッファを読み終えている場合は、次のバッファを受け取ります。
+     *
+     * @return 読み出せるバイトがある場合はtrue、ストリームの末尾の場合はfalse
+     */
+    private boolean fill() throws IOException {
+
+        if (current == END) {
+            return false;
+        }
+        if (current != null && position < current.length) {
+            return true;
+        }
+
+        if (current != null) {
+            freeQueue.add(current);
+        }
+        try {
+            current = filledQueue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        position = 0;
+
+        if (current.error != null) {
+            final IOException error = current.error;
+            current = END;
+            throw error;
+        }
+        return current != END;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            source.close();
+        }
+    }
+}
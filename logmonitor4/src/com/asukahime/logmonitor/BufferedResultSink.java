@@ -0,0 +1,206 @@
+package com.asukahime.logmonitor;
+
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 結果を使い回すバイト配列のバッファに直接書き込み、バッファが一杯になった時点でまとめて書き出す出力先です。
+ * 1件ごとの文字列の連結や String の生成を行わず、書き出し先の同期も書き出しの単位でのみ発生します。
+ *
+ * 出力する文字はすべてASCIIです。
+ */
+public abstract class BufferedResultSink implements ResultSink {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // 割合の小数点以下4桁を整数で表す倍率
+    private static final long RATIO_SCALE = 10_000;
+
+    private static final byte[] NULL_DATE = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final PrintStream out;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int position = 0;
+
+    private final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    // 検出器から通知されたキー・時刻の文字列化に使い回す領域
+    private final StringBuilder addressText = new StringBuilder(18);
+    private final char[] dateChars = new char[14];
+    private final CharBuffer dateText = CharBuffer.wrap(dateChars);
+
+    // 10進数の書き込みに使い回す領域(long の最大桁数と符号)
+    private final byte[] digits = new byte[20];
+
+    protected BufferedResultSink(final PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onServerFault(final long serverKey, final long startEpochSecond) {
+        writePeriod(ResultType.SERVER_FAULT_START, serverText(serverKey), dateText(startEpochSecond));
+    }
+
+    @Override
+    public void onServerRecovery(final long serverKey, final long secondsToReturn) {
+        writeSeconds(ResultType.SECONDS_TO_RETURN, serverText(serverKey), secondsToReturn);
+    }
+
+    @Override
+    public void onRecovery(final long serverKey, final long secondsToReturn) {
+        writeSeconds(ResultType.RECOVERY_SECONDS, serverText(serverKey), secondsToReturn);
+    }
+
+    @Override
+    public void onOverloadStart(final long serverKey, final long startEpochSecond) {
+        writePeriod(ResultType.OVERLOAD_START, serverText(serverKey), dateText(startEpochSecond));
+    }
+
+    @Override
+    public void onOverloadEnd(final long serverKey, final String period) {
+        writePeriod(ResultType.OVERLOAD_PERIOD, serverText(serverKey), period);
+    }
+
+    @Override
+    public void onSubnetFault(final long subnetKey, final long startEpochSecond) {
+        writePeriod(ResultType.SUBNET_FAULT_START, subnetText(subnetKey), dateText(startEpochSecond));
+    }
+
+    @Override
+    public void onSubnetRecovery(final long subnetKey, final String period) {
+        writePeriod(ResultType.SUBNET_FAULT_PERIOD, subnetText(subnetKey), period);
+    }
+
+    @Override
+    public void flush() {
+
+        out.write(buffer, 0, position);
+        out.flush();
+        position = 0;
+    }
+
+    private CharSequence serverText(final long serverKey) {
+
+        addressText.setLength(0);
+        return ServerAddress.appendText(serverKey, addressText);
+    }
+
+    private CharSequence subnetText(final long subnetKey) {
+
+        addressText.setLength(0);
+        return ServerAddress.appendSubnetText(subnetKey, addressText);
+    }
+
+    private CharSequence dateText(final long epochSecond) {
+
+        LogTimestamp.write(epochSecond, dateChars);
+        return dateText;
+    }
+
+    /**
+     * 期間のうち開始時刻と終了時刻の区切り文字の位置を返却します。
+     *
+     * @param period 期間
+     * @return 区切り文字の位置。開始時刻のみの場合は period の長さ
+     */
+    protected static int periodSeparator(final CharSequence period) {
+
+        for (int i = 0; i < period.length(); i++) {
+            if (period.charAt(i) == '-') {
+                return i;
+            }
+        }
+
+        return period.length();
+    }
+
+    /**
+     * @return 時刻が未設定("null")の場合はtrue
+     */
+    protected static boolean isNullDate(final CharSequence text, final int from, final int to) {
+
+        if (to - from != NULL_DATE.length) {
+            return false;
+        }
+        for (int i = 0; i < NULL_DATE.length; i++) {
+            if (text.charAt(from + i) != NULL_DATE[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    protected void write(final byte b) {
+
+        if (position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = b;
+    }
+
+    protected void write(final byte[] bytes) {
+
+        for (final byte b : bytes) {
+            write(b);
+        }
+    }
+
+    protected void write(final CharSequence text) {
+        write(text, 0, text.length());
+    }
+
+    protected void write(final CharSequence text, final int from, final int to) {
+
+        for (int i = from; i < to; i++) {
+            write((byte) text.charAt(i));
+        }
+    }
+
+    protected void writeDecimal(final long value) {
+
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return;
+        }
+
+        long remaining = Math.abs(value);
+        int length = 0;
+        do {
+            digits[length++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        if (value < 0) {
+            digits[length++] = '-';
+        }
+
+        while (length > 0) {
+            write(digits[--length]);
+        }
+    }
+
+    /**
+     * 割合を小数点以下4桁の10進数で書き込みます(四捨五入)。
+     *
+     * @param numerator 分子
+     * @param denominator 分母(1以上)
+     */
+    protected void writeRatio(final long numerator, final long denominator) {
+
+        final long scaled = Math.round((double) numerator * RATIO_SCALE / denominator);
+        writeDecimal(scaled / RATIO_SCALE);
+        write((byte) '.');
+        final long fraction = scaled % RATIO_SCALE;
+        for (long digit = RATIO_SCALE / 10; digit > fraction && digit > 1; digit /= 10) {
+            write((byte) '0');
+        }
+        writeDecimal(fraction);
+    }
+
+    protected void writeLineSeparator() {
+        write(lineSeparator);
+    }
+}
@@ -0,0 +1,80 @@
+package com.asukahime.logmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * テキスト形式のログファイルを検証・解析し、ColumnarLogWriter で列指向形式のファイルに変換します。
+ * 変換したファイルは、ログファイルの代わりに Main の第一引数に指定できます。
+ *
+ * ログファイルの指定は Main と同様で、複数のファイルは時系列順にマージしながら変換します。
+ * --lenient・--quarantine を指定した場合は、指定のフォーマットではない行を除外して変換します。
+ *
+ * 実行方法:java -cp logmonitor4.jar com.asukahime.logmonitor.ColumnarLogConverter ログファイルパス 出力ファイルパス [オプション]
+ */
+public class ColumnarLogConverter {
+
+    public static void main(final String[] args) {
+        doProcess(args);
+    }
+
+    /**
+     * 主処理
+     *
+     * @param args コマンドライン引数(ログファイルパス、出力ファイルパスとオプション)
+     */
+    public static void doProcess(final String[] args) {
+
+        try {
+            final List<String> argumentList = new ArrayList<>();
+            boolean lenient = false;
+            Path quarantinePath = null;
+            for (final String arg : args) {
+                if (!arg.startsWith(OPTION_PREFIX)) {
+                    argumentList.add(arg);
+                } else if (OPTION_LENIENT.equals(arg)) {
+                    lenient = true;
+                } else if (arg.startsWith(OPTION_QUARANTINE) && arg.length() > OPTION_QUARANTINE.length()) {
+                    quarantinePath = Paths.get(arg.substring(OPTION_QUARANTINE.length()));
+                } else {
+                    throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+                }
+            }
+            if (argumentList.size() != VALID_NUMBER_OF_ARGS) {
+                throw new LogMonitoringException(MESSAGE_INVALID_ARGS);
+            }
+            if (!lenient && quarantinePath != null) {
+                throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+            }
+
+            final List<Path> pathList = LogFiles.resolve(argumentList.get(0));
+            final Path outputPath = Paths.get(argumentList.get(1));
+            final LogLineValidator validator = lenient ? LogLineValidator.lenient(quarantinePath) : LogLineValidator.strict();
+            try (validator; final ColumnarLogWriter writer = new ColumnarLogWriter(outputPath)) {
+                if (pathList.size() > 1) {
+                    new LogFileMerger(pathList, validator).read(writer);
+                } else {
+                    try (final InputStream inputStream = LogFiles.open(pathList.get(0))) {
+                        new LogLineReader(inputStream).readLines(validator.parser(pathList.get(0), writer));
+                    }
+                }
+                writer.commit();
+            } finally {
+                if (validator.getRejectedCount() > 0) {
+                    System.err.println(String.format(MESSAGE_LINES_REJECTED, validator.getRejectedCount()));
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println(MESSAGE_FILE_CAN_NOT_READ);
+        } catch (LogMonitoringException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
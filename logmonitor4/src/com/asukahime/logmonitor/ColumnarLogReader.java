@@ -0,0 +1,175 @@
+package com.asukahime.logmonitor;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * ColumnarLogWriter で書き出した列指向形式のファイルをメモリマップし、ファイル上の順序で1行ずつ handler に渡します。
+ *
+ * 行は書き出し時に検証・解析済みのため、LINE_REGEXP による検証や日時・サーバーIPの解析を行いません。
+ * ファイルは MAX_WINDOW_SIZE ずつマップするため、2GB を超えるファイルも読み込めます。
+ * ファイルの構造が不正な場合(途中で切れている場合など)は MESSAGE_INVALID_COLUMNAR を送出します。
+ */
+public class ColumnarLogReader {
+
+    // 1回にマップする最大のバイト数
+    private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+    /**
+     * ファイルの全行を、ファイル上の順序で handler に渡します。
+     *
+     * @param path 列指向形式のファイル
+     * @param handler 行の受け取り先
+     */
+    public void read(final Path path, final Consumer<LogRecord> handler) throws IOException {
+
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < ColumnarLogWriter.HEADER_SIZE + ColumnarLogWriter.FOOTER_SIZE) {
+                throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+            }
+
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, ColumnarLogWriter.HEADER_SIZE);
+            final ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, size - ColumnarLogWriter.FOOTER_SIZE, ColumnarLogWriter.FOOTER_SIZE);
+            final long dictionaryPosition = footer.getLong();
+            final long rowCount = footer.getLong();
+            if (header.getInt() != ColumnarLogWriter.MAGIC
+                    || header.getInt() != ColumnarLogWriter.VERSION
+                    || footer.getInt() != ColumnarLogWriter.MAGIC
+                    || dictionaryPosition < ColumnarLogWriter.HEADER_SIZE
+                    || dictionaryPosition > size - ColumnarLogWriter.FOOTER_SIZE - Integer.BYTES) {
+                throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+            }
+
+            final long[] dictionary = readDictionary(channel, dictionaryPosition, size - ColumnarLogWriter.FOOTER_SIZE);
+            if (readBlocks(channel, dictionaryPosition, dictionary, handler) != rowCount) {
+                throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+        }
+    }
+
+    /**
+     * 辞書(添字順のサーバーのキー)を読み込みます。
+     */
+    private static long[] readDictionary(final FileChannel channel, final long position, final long end) throws IOException {
+
+        final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+        final int serverCount = buffer.getInt();
+        if (serverCount < 0 || (long) serverCount * Long.BYTES != buffer.remaining()) {
+            throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+        }
+
+        final long[] dictionary = new long[serverCount];
+        for (int i = 0; i < serverCount; i++) {
+            dictionary[i] = buffer.getLong();
+        }
+        return dictionary;
+    }
+
+    /**
+     * ヘッダから辞書の手前までのブロックを順に復元し、handler に渡します。
+     *
+     * @return 復元した行数
+     */
+    private static long readBlocks(final FileChannel channel, final long end, final long[] dictionary,
+                                   final Consumer<LogRecord> handler) throws IOException {
+
+        final LogRecord record = new LogRecord();
+        long rowCount = 0;
+        long windowStart = ColumnarLogWriter.HEADER_SIZE;
+        MappedByteBuffer window = map(channel, windowStart, end);
+        long position = windowStart;
+        while (position < end) {
+            // ブロック全体がマップした範囲に収まらない場合は、ブロックの先頭からマップし直す
+            if (position + ColumnarLogWriter.BLOCK_HEADER_SIZE > windowStart + window.capacity()) {
+                windowStart = position;
+                window = map(channel, windowStart, end);
+            }
+            final int offset = (int) (position - windowStart);
+            final int blockRowCount = window.getInt(offset);
+            final long firstEpochSecond = window.getLong(offset + Integer.BYTES);
+            final int epochSecondLength = window.getInt(offset + Integer.BYTES + Long.BYTES);
+            final int serverLength = window.getInt(offset + Integer.BYTES * 2 + Long.BYTES);
+            final int returnTimeLength = window.getInt(offset + Integer.BYTES * 3 + Long.BYTES);
+            if (blockRowCount <= 0 || epochSecondLength < 0 || serverLength < 0 || returnTimeLength < 0) {
+                throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+            }
+            final long blockSize = ColumnarLogWriter.BLOCK_HEADER_SIZE + (long) epochSecondLength + serverLength + returnTimeLength;
+            if (position + blockSize > end || blockSize > MAX_WINDOW_SIZE) {
+                throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+            }
+            if (position + blockSize > windowStart + window.capacity()) {
+                windowStart = position;
+                window = map(channel, windowStart, end);
+            }
+
+            final int columnOffset = (int) (position - windowStart) + ColumnarLogWriter.BLOCK_HEADER_SIZE;
+            final ByteBuffer epochSecondColumn = slice(window, columnOffset, epochSecondLength);
+            final ByteBuffer serverColumn = slice(window, columnOffset + epochSecondLength, serverLength);
+            final ByteBuffer returnTimeColumn = slice(window, columnOffset + epochSecondLength + serverLength, returnTimeLength);
+
+            long epochSecond = firstEpochSecond;
+            for (int i = 0; i < blockRowCount; i++) {
+                final long delta = readVarint(epochSecondColumn);
+                epochSecond += delta >>> 1 ^ -(delta & 1);
+                final long serverIndex = readVarint(serverColumn);
+                if (serverIndex < 0 || serverIndex >= dictionary.length) {
+                    throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+                }
+                final long returnTime = readVarint(returnTimeColumn);
+
+                record.epochSecond = epochSecond;
+                record.address = ServerAddress.address(dictionary[(int) serverIndex]);
+                record.prefixLength = ServerAddress.prefixLength(dictionary[(int) serverIndex]);
+                record.returnTime = returnTime == ColumnarLogWriter.TIMEOUT_VALUE ? LogRecord.TIMEOUT : (int) (returnTime - 1);
+                handler.accept(record);
+            }
+            if (epochSecondColumn.hasRemaining() || serverColumn.hasRemaining() || returnTimeColumn.hasRemaining()) {
+                throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+            }
+
+            rowCount += blockRowCount;
+            position += blockSize;
+        }
+
+        return rowCount;
+    }
+
+    private static MappedByteBuffer map(final FileChannel channel, final long position, final long end) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(end - position, MAX_WINDOW_SIZE));
+    }
+
+    private static ByteBuffer slice(final ByteBuffer buffer, final int offset, final int length) {
+
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset).limit(offset + length);
+        return duplicate.slice();
+    }
+
+    /**
+     * ColumnarLogWriter で書き込んだ varint を読み込みます。
+     */
+    static long readVarint(final ByteBuffer buffer) {
+
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+
+        throw new LogMonitoringException(MESSAGE_INVALID_COLUMNAR);
+    }
+}
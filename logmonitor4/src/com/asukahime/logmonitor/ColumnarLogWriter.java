@@ -0,0 +1,223 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 解析済みの行を、列ごとに符号化したバイナリ形式(列指向形式)のファイルに書き出します。
+ * 書き出したファイルは ColumnarLogReader で、行の検証・解析を行わずに読み込めます。
+ *
+ * 行は BLOCK_ROW_COUNT 行ごとのブロックにまとめ、ブロック内では列ごとに可変長整数(varint)で連続して格納します。
+ * ファイルの形式は以下のとおりで、固定長の数値はいずれもビッグエンディアンです。
+ * <pre>
+ * ヘッダ : MAGIC(int) VERSION(int)
+ * ブロック : 行数(int) 先頭行の確認日時(long) 各列のバイト数(int × 3)
+ *            確認日時の列 : 直前の行との差(秒)を zigzag 符号化した varint
+ *            サーバーの列 : 辞書の添字の varint
+ *            応答時間の列 : 応答時間 + 1 の varint(タイムアウトは0)
+ * 辞書 : サーバー数(int) サーバーのキー(long × サーバー数)
+ * フッタ : 辞書の位置(long) 行数(long) MAGIC(int)
+ * </pre>
+ * サーバーはファイル内の初出順に辞書の添字を割り当てます。
+ * 書き出しは一時ファイルに行い、commit した時点で名前を変更して確定します。
+ */
+public class ColumnarLogWriter implements Consumer<LogRecord>, Closeable {
+
+    // 列指向形式のファイルの識別子("LMCL")とバージョン
+    static final int MAGIC = 0x4C4D434C;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    static final int BLOCK_HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES * 3;
+
+    static final int FOOTER_SIZE = Long.BYTES * 2 + Integer.BYTES;
+
+    // 1ブロックの行数
+    static final int BLOCK_ROW_COUNT = 64 * 1024;
+
+    // タイムアウトを表す応答時間の列の値
+    static final int TIMEOUT_VALUE = 0;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+
+    private final Path tempPath;
+
+    private final DataOutputStream output;
+
+    // サーバーの辞書(キーの追加順を辞書の添字とする)
+    private final LongIntMap dictionary = new LongIntMap();
+
+    // 書き出し中のブロックの列
+    private final Column epochSecondColumn = new Column();
+    private final Column serverColumn = new Column();
+    private final Column returnTimeColumn = new Column();
+
+    private int blockRowCount = 0;
+
+    private long blockFirstEpochSecond;
+
+    private long previousEpochSecond;
+
+    // 書き込んだバイト数
+    private long position = 0;
+
+    private long rowCount = 0;
+
+    private boolean committed = false;
+
+    /**
+     * @param path 書き出すファイル。既に存在する場合は commit した時点で置き換えます。
+     */
+    public ColumnarLogWriter(final Path path) throws IOException {
+
+        this.path = path;
+        this.tempPath = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), OUTPUT_BUFFER_SIZE));
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        position += HEADER_SIZE;
+    }
+
+    /**
+     * 1行分を書き出します。
+     * 行の受け取り先として呼び出すため、書き込みの失敗は UncheckedIOException とします。
+     *
+     * @param record 解析済みの行
+     */
+    @Override
+    public void accept(final LogRecord record) {
+
+        if (blockRowCount == 0) {
+            blockFirstEpochSecond = record.getEpochSecond();
+            previousEpochSecond = blockFirstEpochSecond;
+        }
+
+        final long delta = record.getEpochSecond() - previousEpochSecond;
+        epochSecondColumn.writeVarint(delta << 1 ^ delta >> 63);
+        previousEpochSecond = record.getEpochSecond();
+        serverColumn.writeVarint(dictionary.indexOfOrAdd(ServerAddress.pack(record.getAddress(), record.getPrefixLength())));
+        returnTimeColumn.writeVarint(record.isTimeout() ? TIMEOUT_VALUE : record.getReturnTime() + 1L);
+        blockRowCount++;
+        rowCount++;
+
+        if (blockRowCount == BLOCK_ROW_COUNT) {
+            try {
+                flushBlock();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * 書き出し中のブロックと辞書を書き込み、ファイルを確定します。
+     */
+    public void commit() throws IOException {
+
+        flushBlock();
+
+        final long dictionaryPosition = position;
+        output.writeInt(dictionary.size());
+        for (int i = 0; i < dictionary.size(); i++) {
+            output.writeLong(dictionary.keyAt(i));
+        }
+        output.writeLong(dictionaryPosition);
+        output.writeLong(rowCount);
+        output.writeInt(MAGIC);
+        output.close();
+
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * 確定していない場合は一時ファイルを削除します。
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (committed) {
+            return;
+        }
+        try {
+            output.close();
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * @return 書き出した行数
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    private void flushBlock() throws IOException {
+
+        if (blockRowCount == 0) {
+            return;
+        }
+
+        output.writeInt(blockRowCount);
+        output.writeLong(blockFirstEpochSecond);
+        output.writeInt(epochSecondColumn.size);
+        output.writeInt(serverColumn.size);
+        output.writeInt(returnTimeColumn.size);
+        epochSecondColumn.writeTo(output);
+        serverColumn.writeTo(output);
+        returnTimeColumn.writeTo(output);
+        position += BLOCK_HEADER_SIZE + (long) epochSecondColumn.size + serverColumn.size + returnTimeColumn.size;
+
+        epochSecondColumn.size = 0;
+        serverColumn.size = 0;
+        returnTimeColumn.size = 0;
+        blockRowCount = 0;
+    }
+
+    /**
+     * 1ブロック分の1列を varint で符号化して保持します。
+     */
+    private static class Column {
+
+        private byte[] bytes = new byte[BLOCK_ROW_COUNT];
+
+        private int size = 0;
+
+        /**
+         * 下位から7ビットずつ、続きがある場合は最上位ビットを立てて書き込みます。
+         *
+         * @param value 0以上の値(zigzag 符号化した値を含む)
+         */
+        void writeVarint(final long value) {
+
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (remaining & 0x7F | 0x80);
+                remaining >>>= 7;
+            }
+            bytes[size++] = (byte) remaining;
+        }
+
+        void writeTo(final DataOutputStream output) throws IOException {
+            output.write(bytes, 0, size);
+        }
+    }
+}
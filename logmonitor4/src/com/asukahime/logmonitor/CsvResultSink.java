@@ -0,0 +1,132 @@
+package com.asukahime.logmonitor;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 1件の結果を1行のCSVとして、先頭にヘッダ行を付けて出力します。
+ * 列は type,ip,subnet,seconds,start,end で、結果の種類に該当しない列と未設定の時刻は空とします。
+ * 例:SECONDS_TO_RETURN,10.20.30.1/16,,20,,
+ * 応答時間のパーセンタイルを出力する場合は、p50,p90,p99,max,timeout_ratio の列を追加します。
+ * 例:LATENCY,10.20.30.1/16,,,,,12,30,95,120,0.0100
+ *
+ * 出力する値はいずれも区切り文字・引用符を含まないため、引用符で囲みません。
+ */
+public class CsvResultSink extends BufferedResultSink {
+
+    private static final byte[] HEADER = "type,ip,subnet,seconds,start,end".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PERCENTILE_HEADER = ",p".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LATENCY_HEADER = ",max,timeout_ratio".getBytes(StandardCharsets.US_ASCII);
+
+    // 応答時間のパーセンタイルの列を出力する場合はtrue
+    private final boolean latency;
+
+    public CsvResultSink(final PrintStream out) {
+        this(out, false);
+    }
+
+    /**
+     * @param out 書き出し先
+     * @param latency 応答時間のパーセンタイルの列を追加する場合はtrue
+     */
+    public CsvResultSink(final PrintStream out, final boolean latency) {
+        super(out);
+        this.latency = latency;
+        write(HEADER);
+        if (latency) {
+            for (final int percentile : LATENCY_PERCENTILES) {
+                write(PERCENTILE_HEADER);
+                writeDecimal(percentile);
+            }
+            write(LATENCY_HEADER);
+        }
+        writeLineSeparator();
+    }
+
+    @Override
+    public void writeSeconds(final ResultType type, final CharSequence address, final long seconds) {
+
+        writeHeader(type, address);
+        writeDecimal(seconds);
+        write((byte) ',');
+        write((byte) ',');
+        writeEmptyLatency();
+        writeLineSeparator();
+    }
+
+    @Override
+    public void writePeriod(final ResultType type, final CharSequence address, final CharSequence period) {
+
+        final int separator = periodSeparator(period);
+
+        writeHeader(type, address);
+        write((byte) ',');
+        writeDate(period, 0, separator);
+        write((byte) ',');
+        if (separator < period.length()) {
+            writeDate(period, separator + 1, period.length());
+        }
+        writeEmptyLatency();
+        writeLineSeparator();
+    }
+
+    @Override
+    public void writeLatency(final CharSequence address, final LatencyHistogram histogram) {
+
+        writeHeader(ResultType.LATENCY, address);
+        write((byte) ',');
+        write((byte) ',');
+        for (final int percentile : LATENCY_PERCENTILES) {
+            write((byte) ',');
+            writeMillis(histogram.getPercentile(percentile));
+        }
+        write((byte) ',');
+        writeMillis(histogram.getMax());
+        write((byte) ',');
+        writeRatio(histogram.getTimeoutCount(), histogram.getTotalCount());
+        writeLineSeparator();
+    }
+
+    private void writeMillis(final int millis) {
+
+        if (millis != LatencyHistogram.NO_VALUE) {
+            writeDecimal(millis);
+        }
+    }
+
+    /**
+     * 応答時間のパーセンタイルの列を出力する場合に、該当しない行の列を空とします。
+     */
+    private void writeEmptyLatency() {
+
+        if (!latency) {
+            return;
+        }
+        for (int i = 0; i < LATENCY_PERCENTILES.length + 2; i++) {
+            write((byte) ',');
+        }
+    }
+
+    private void writeHeader(final ResultType type, final CharSequence address) {
+
+        write(type.getLabel());
+        write((byte) ',');
+        if (!type.isSubnet()) {
+            write(address);
+        }
+        write((byte) ',');
+        if (type.isSubnet()) {
+            write(address);
+        }
+        write((byte) ',');
+    }
+
+    private void writeDate(final CharSequence period, final int from, final int to) {
+
+        if (!isNullDate(period, from, to)) {
+            write(period, from, to);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.asukahime.logmonitor;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 1回の読み込みで同時に実行できる検出器の種類です。
+ * --detectors オプションでは、名前をカンマ区切りで指定します。
+ */
+public enum DetectorType {
+
+    /** タイムアウトの回数によらない、サーバーの復帰までの秒数 */
+    RECOVERY("recovery"),
+
+    /** 故障とみなされるタイムアウト回数以上連続したサーバーの、復帰までの秒数 */
+    TIMEOUT("timeout"),
+
+    /** 直近の平均応答時間によるサーバーの過負荷期間 */
+    OVERLOAD("overload"),
+
+    /** サブネットの故障期間 */
+    SUBNET("subnet"),
+
+    /** サーバーの応答時間のパーセンタイル・最大値とタイムアウトの割合 */
+    LATENCY("latency");
+
+    private final String optionName;
+
+    DetectorType(final String optionName) {
+        this.optionName = optionName;
+    }
+
+    /**
+     * @param optionName --detectors オプションで指定する名前
+     * @return 名前に対応する検出器の種類
+     */
+    public static DetectorType fromOptionName(final String optionName) {
+
+        for (final DetectorType type : values()) {
+            if (type.optionName.equals(optionName)) {
+                return type;
+            }
+        }
+
+        throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+    }
+}
@@ -0,0 +1,347 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * 時系列順に並んでいないログを、指定したメモリ量の範囲で (日時, サーバーIP) の順に並べ替えます。
+ *
+ * 解析済みの行をメモリ量に収まる件数ずつ並べ替え、一時ファイル(ラン)に書き出したうえで、
+ * 全ランを k-way マージしながら1行ずつ handler に渡します。全行がメモリ量に収まる場合は一時ファイルを使用しません。
+ * サーバーIPは文字列化した場合の辞書順とし、日時とサーバーIPが等しい行は入力の順序を保ちます。
+ */
+public class ExternalLogSorter {
+
+    // ランに書き出す1行のバイト数(日時8バイト、アドレス4バイト、プレフィックス長1バイト、応答時間4バイト)
+    private static final int RECORD_SIZE = 17;
+
+    // 1行あたりのメモリ使用量。LogRecordBuffer の各配列と、RunSorter の各配列(添字・マージソートの作業領域・日時・サーバーIPの順序)の要素の合計
+    private static final int BYTES_PER_RECORD = Long.BYTES + Integer.BYTES + Byte.BYTES + Integer.BYTES
+            + Integer.BYTES + Integer.BYTES + Long.BYTES + Long.BYTES;
+
+    private static final int MIN_RUN_CAPACITY = 1024;
+
+    // 一度にマージするランの最大数。超える場合は複数回に分けてマージする
+    private static final int MAX_MERGE_WAY = 64;
+
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    private static final String RUN_FILE_PREFIX = "logmonitor-run";
+
+    private final int runCapacity;
+
+    private final Path tempDirectory;
+
+    /**
+     * @param memoryBytes 並べ替えに使用するメモリ量(バイト)
+     * @param tempDirectory 一時ファイルの作成先
+     */
+    public ExternalLogSorter(final long memoryBytes, final Path tempDirectory) {
+        // LogRecordBuffer は容量を2倍ずつ拡張するため、ランの件数は2のべき乗とする
+        this.runCapacity = Integer.highestOneBit((int) Math.min(Math.max(memoryBytes / BYTES_PER_RECORD, MIN_RUN_CAPACITY), 1 << 30));
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * 全ファイルの全行を検証・解析し、並べ替えた順に handler に渡します。
+     *
+     * @param pathList ログファイルのリスト
+     * @param handler 解析済みの行の受け取り先
+     */
+    public void sort(final List<Path> pathList, final Consumer<LogRecord> handler) throws IOException {
+        sort(pathList, LogLineValidator.strict(), handler);
+    }
+
+    /**
+     * 全ファイルの全行を検証・解析し、並べ替えた順に handler に渡します。
+     *
+     * @param pathList ログファイルのリスト
+     * @param validator 指定のフォーマットではない行の扱い
+     * @param handler 解析済みの行の受け取り先
+     */
+    public void sort(final List<Path> pathList, final LogLineValidator validator, final Consumer<LogRecord> handler) throws IOException {
+
+        final List<Path> runList = new ArrayList<>();
+        try {
+            final LogRecordBuffer buffer = new LogRecordBuffer(MIN_RUN_CAPACITY);
+            final RunSorter sorter = new RunSorter();
+            for (final Path path : pathList) {
+                try (final InputStream inputStream = LogFiles.open(path)) {
+                    new LogLineReader(inputStream).readLines(validator.parser(path, record -> {
+                        buffer.add(record);
+                        if (buffer.size() == runCapacity) {
+                            runList.add(writeRun(buffer, sorter.sort(buffer)));
+                            buffer.clear();
+                        }
+                    }));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+
+            // 全行がメモリに収まった場合はそのまま渡す
+            if (runList.isEmpty()) {
+                final LogRecord record = new LogRecord();
+                final int[] indexes = sorter.sort(buffer);
+                for (int i = 0; i < buffer.size(); i++) {
+                    buffer.get(indexes[i], record);
+                    handler.accept(record);
+                }
+                return;
+            }
+
+            if (buffer.size() > 0) {
+                runList.add(writeRun(buffer, sorter.sort(buffer)));
+            }
+
+            // 一度にマージできる数になるまで、連続するランをまとめる
+            while (runList.size() > MAX_MERGE_WAY) {
+                final List<Path> mergedList = new ArrayList<>();
+                try {
+                    for (int from = 0; from < runList.size(); from += MAX_MERGE_WAY) {
+                        final List<Path> group = runList.subList(from, Math.min(from + MAX_MERGE_WAY, runList.size()));
+                        mergedList.add(mergeToRun(group));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // まとめたランは runList に含まれないため、ここで削除する
+                    for (final Path merged : mergedList) {
+                        Files.deleteIfExists(merged);
+                    }
+                    throw e;
+                }
+                runList.clear();
+                runList.addAll(mergedList);
+            }
+
+            merge(runList, handler);
+        } finally {
+            for (final Path run : runList) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * 並べ替えた順に行をランに書き出します。
+     * 行の受け取り先から呼び出すため、書き込みの失敗は UncheckedIOException とします。
+     */
+    private Path writeRun(final LogRecordBuffer buffer, final int[] indexes) {
+
+        try {
+            final Path run = Files.createTempFile(tempDirectory, RUN_FILE_PREFIX, null);
+            try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE))) {
+                final LogRecord record = new LogRecord();
+                for (int i = 0; i < buffer.size(); i++) {
+                    buffer.get(indexes[i], record);
+                    writeRecord(output, record);
+                }
+            }
+            return run;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 複数のランをマージして1つのランに書き出し、元のランを削除します。
+     */
+    private Path mergeToRun(final List<Path> runList) throws IOException {
+
+        final Path run = Files.createTempFile(tempDirectory, RUN_FILE_PREFIX, null);
+        try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE))) {
+            merge(runList, record -> {
+                try {
+                    writeRecord(output, record);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(run);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+
+        for (final Path merged : runList) {
+            Files.deleteIfExists(merged);
+        }
+        return run;
+    }
+
+    /**
+     * 各ランの先頭行のうち最も小さい行を順に取り出し、handler に渡します。
+     * 等しい行はランの順序(入力の順序)で渡します。
+     */
+    private static void merge(final List<Path> runList, final Consumer<LogRecord> handler) throws IOException {
+
+        final PriorityQueue<RunReader> queue = new PriorityQueue<>(runList.size(), RunReader::compareTo);
+        try {
+            for (int i = 0; i < runList.size(); i++) {
+                final RunReader reader = new RunReader(runList.get(i), i);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                final RunReader reader = queue.poll();
+                handler.accept(reader.record);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        } finally {
+            for (final RunReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void writeRecord(final DataOutputStream output, final LogRecord record) throws IOException {
+        output.writeLong(record.epochSecond);
+        output.writeInt(record.address);
+        output.writeByte(record.prefixLength);
+        output.writeInt(record.returnTime);
+    }
+
+    /**
+     * 1つのランを先頭から1行ずつ読み込みます。
+     */
+    private static class RunReader implements Comparable<RunReader> {
+
+        private final DataInputStream input;
+
+        private final int runIndex;
+
+        private final LogRecord record = new LogRecord();
+
+        private long textOrder;
+
+        // 未読の行数
+        private long remaining;
+
+        RunReader(final Path run, final int runIndex) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+            this.runIndex = runIndex;
+            this.remaining = Files.size(run) / RECORD_SIZE;
+        }
+
+        /**
+         * 次の行を読み込みます。
+         *
+         * @return 読み込んだ場合はtrue、ランの末尾の場合はfalse
+         */
+        boolean next() throws IOException {
+
+            if (remaining == 0) {
+                return false;
+            }
+
+            remaining--;
+            record.epochSecond = input.readLong();
+            record.address = input.readInt();
+            record.prefixLength = input.readByte();
+            record.returnTime = input.readInt();
+            textOrder = ServerAddress.textOrder(ServerAddress.pack(record.address, record.prefixLength));
+            return true;
+        }
+
+        void close() throws IOException {
+            input.close();
+        }
+
+        @Override
+        public int compareTo(final RunReader other) {
+
+            if (record.epochSecond != other.record.epochSecond) {
+                return Long.compare(record.epochSecond, other.record.epochSecond);
+            }
+            if (textOrder != other.textOrder) {
+                return Long.compare(textOrder, other.textOrder);
+            }
+            return Integer.compare(runIndex, other.runIndex);
+        }
+    }
+
+    /**
+     * メモリ上の行を (日時, サーバーIP, 入力の順序) で並べ替えた添字の配列を求めます。作業領域は使い回します。
+     */
+    private static class RunSorter {
+
+        private int[] indexes = new int[0];
+        private int[] work = new int[0];
+        private long[] epochSeconds = new long[0];
+        private long[] textOrders = new long[0];
+
+        int[] sort(final LogRecordBuffer buffer) {
+
+            final int size = buffer.size();
+            if (indexes.length < size) {
+                indexes = new int[size];
+                work = new int[size];
+                epochSeconds = new long[size];
+                textOrders = new long[size];
+            }
+
+            final LogRecord record = new LogRecord();
+            for (int i = 0; i < size; i++) {
+                buffer.get(i, record);
+                indexes[i] = i;
+                epochSeconds[i] = record.epochSecond;
+                textOrders[i] = ServerAddress.textOrder(ServerAddress.pack(record.address, record.prefixLength));
+            }
+
+            // ボトムアップのマージソート(安定)
+            int[] from = indexes;
+            int[] to = work;
+            for (int width = 1; width < size; width *= 2) {
+                for (int start = 0; start < size; start += 2 * width) {
+                    final int middle = Math.min(start + width, size);
+                    final int end = Math.min(start + 2 * width, size);
+                    int left = start;
+                    int right = middle;
+                    for (int i = start; i < end; i++) {
+                        if (left < middle && (right >= end || compare(from[left], from[right]) <= 0)) {
+                            to[i] = from[left++];
+                        } else {
+                            to[i] = from[right++];
+                        }
+                    }
+                }
+                final int[] swap = from;
+                from = to;
+                to = swap;
+            }
+
+            if (from != indexes) {
+                System.arraycopy(from, 0, indexes, 0, size);
+            }
+            return indexes;
+        }
+
+        private int compare(final int index1, final int index2) {
+
+            if (epochSeconds[index1] != epochSeconds[index2]) {
+                return Long.compare(epochSeconds[index1], epochSeconds[index2]);
+            }
+            return Long.compare(textOrders[index1], textOrders[index2]);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.asukahime.logmonitor;
+
+/**
+ * 各検出器が故障・過負荷の発生と終了を検出した時点で通知を受け取ります。
+ * 追記され続けるログを監視する場合に、ファイル末尾まで待たずに結果を出力するために使用します。
+ *
+ * サーバーのキーは ServerAddress#pack、サブネットのキーは ServerAddress#subnetKey の値です。
+ * 時刻はいずれもエポック秒です。
+ */
+public interface FaultListener {
+
+    /**
+     * サーバーのタイムアウトが故障判定回数だけ連続した時点で呼び出されます。
+     *
+     * @param serverKey サーバーのキー
+     * @param startEpochSecond 連続するタイムアウトの初回の時刻
+     */
+    void onServerFault(long serverKey, long startEpochSecond);
+
+    /**
+     * 故障とみなされたサーバーが復帰した時点で呼び出されます。
+     *
+     * @param serverKey サーバーのキー
+     * @param secondsToReturn 復帰までの秒数
+     */
+    void onServerRecovery(long serverKey, long secondsToReturn);
+
+    /**
+     * タイムアウトしたサーバーが、タイムアウトの回数によらず復帰した時点で呼び出されます。
+     *
+     * @param serverKey サーバーのキー
+     * @param secondsToReturn 復帰までの秒数
+     */
+    void onRecovery(long serverKey, long secondsToReturn);
+
+    /**
+     * サーバーの直近の平均応答時間が許容時間を超えた時点で呼び出されます。
+     *
+     * @param serverKey サーバーのキー
+     * @param startEpochSecond 過負荷期間の開始時刻
+     */
+    void onOverloadStart(long serverKey, long startEpochSecond);
+
+    /**
+     * サーバーの過負荷状態が終了した時点で呼び出されます。
+     *
+     * @param serverKey サーバーのキー
+     * @param period 過負荷期間(yyyyMMddHHmmss-yyyyMMddHHmmss)
+     */
+    void onOverloadEnd(long serverKey, String period);
+
+    /**
+     * サブネットが故障とみなされた時点で呼び出されます。
+     *
+     * @param subnetKey サブネットのキー
+     * @param startEpochSecond 故障期間の開始時刻
+     */
+    void onSubnetFault(long subnetKey, long startEpochSecond);
+
+    /**
+     * サブネットの故障状態が終了した時点で呼び出されます。
+     *
+     * @param subnetKey サブネットのキー
+     * @param period 故障期間(yyyyMMddHHmmss-yyyyMMddHHmmss)
+     */
+    void onSubnetRecovery(long subnetKey, String period);
+}
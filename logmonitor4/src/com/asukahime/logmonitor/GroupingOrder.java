@@ -0,0 +1,55 @@
+package com.asukahime.logmonitor;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Collectors.groupingBy で集計した場合と同じ順に結果を並べ替えます。
+ *
+ * 従来の出力は文字列をキーとする HashMap の反復順であり、キーのハッシュ値から求めたバケット位置の順に並びます。
+ * groupingBy は HashMap#computeIfAbsent でキーを追加し、新しいキーはバケットの先頭に入るため、
+ * 同じバケット内では初出の遅い順に並びます。数値キーで集計した結果を同じ順に出力するために使用します。
+ */
+public final class GroupingOrder {
+
+    private static final int DEFAULT_TABLE_SIZE = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private GroupingOrder() {}
+
+    /**
+     * キーの初出順に並んだ結果のリストを、従来の出力順に並べ替えます。
+     * 同じバケット内は初出の逆順とし、安定ソートによりその順序を保ちます。
+     *
+     * @param list 並べ替える結果のリスト(キーの初出順)
+     * @param keyFunction 結果から出力用のキー文字列を取り出す関数
+     * @param distinctKeyCount 集計したキーの総数(結果が空のキーも含む)
+     */
+    public static <T> void sort(final List<T> list, final Function<T, String> keyFunction, final int distinctKeyCount) {
+
+        final int tableSize = tableSize(distinctKeyCount);
+        Collections.reverse(list);
+        list.sort(Comparator.comparingInt(element -> bucketIndex(keyFunction.apply(element), tableSize)));
+    }
+
+    /**
+     * 既定の初期容量の HashMap にキーを追加した後のテーブルサイズを返却します。
+     */
+    static int tableSize(final int distinctKeyCount) {
+
+        int tableSize = DEFAULT_TABLE_SIZE;
+        while (distinctKeyCount > (int) (tableSize * LOAD_FACTOR)) {
+            tableSize <<= 1;
+        }
+
+        return tableSize;
+    }
+
+    static int bucketIndex(final String key, final int tableSize) {
+
+        final int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (tableSize - 1);
+    }
+}
@@ -0,0 +1,108 @@
+package com.asukahime.logmonitor;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 1件の結果を1行のJSONオブジェクトとして出力します(JSON Lines)。
+ * 例:{"type":"SECONDS_TO_RETURN","ip":"10.20.30.1/16","seconds":20}、
+ * {"type":"FAULT_PERIOD","subnet":"10.20.***.***","start":"20210717101010","end":"20210717101020"}、
+ * {"type":"LATENCY","ip":"10.20.30.1/16","p50":12,"p90":30,"p99":95,"max":120,"timeoutRatio":0.0100}
+ *
+ * 応答した ping がない場合の応答時間は null を出力します。
+ * 時刻が未設定の場合は null を出力します。出力する値はいずれもエスケープが必要な文字を含みません。
+ */
+public class JsonLinesResultSink extends BufferedResultSink {
+
+    private static final byte[] TYPE = "{\"type\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SERVER = "\",\"ip\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUBNET = "\",\"subnet\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SECONDS = "\",\"seconds\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] START = "\",\"start\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END = ",\"end\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PERCENTILE_PREFIX = ",\"p".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_SEPARATOR = "\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAX = ",\"max\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMEOUT_RATIO = ",\"timeoutRatio\":".getBytes(StandardCharsets.US_ASCII);
+
+    public JsonLinesResultSink(final PrintStream out) {
+        super(out);
+    }
+
+    @Override
+    public void writeSeconds(final ResultType type, final CharSequence address, final long seconds) {
+
+        writeHeader(type, address);
+        write(SECONDS);
+        writeDecimal(seconds);
+        write((byte) '}');
+        writeLineSeparator();
+    }
+
+    @Override
+    public void writePeriod(final ResultType type, final CharSequence address, final CharSequence period) {
+
+        final int separator = periodSeparator(period);
+
+        writeHeader(type, address);
+        write(START);
+        writeDate(period, 0, separator);
+        if (separator < period.length()) {
+            write(END);
+            writeDate(period, separator + 1, period.length());
+        }
+        write((byte) '}');
+        writeLineSeparator();
+    }
+
+    @Override
+    public void writeLatency(final CharSequence address, final LatencyHistogram histogram) {
+
+        writeHeader(ResultType.LATENCY, address);
+        write((byte) '"');
+        for (final int percentile : LATENCY_PERCENTILES) {
+            write(PERCENTILE_PREFIX);
+            writeDecimal(percentile);
+            write(VALUE_SEPARATOR);
+            writeMillis(histogram.getPercentile(percentile));
+        }
+        write(MAX);
+        writeMillis(histogram.getMax());
+        write(TIMEOUT_RATIO);
+        writeRatio(histogram.getTimeoutCount(), histogram.getTotalCount());
+        write((byte) '}');
+        writeLineSeparator();
+    }
+
+    private void writeMillis(final int millis) {
+
+        if (millis == LatencyHistogram.NO_VALUE) {
+            write(NULL);
+        } else {
+            writeDecimal(millis);
+        }
+    }
+
+    private void writeHeader(final ResultType type, final CharSequence address) {
+
+        write(TYPE);
+        write(type.getLabel());
+        write(type.isSubnet() ? SUBNET : SERVER);
+        write(address);
+    }
+
+    private void writeDate(final CharSequence period, final int from, final int to) {
+
+        if (isNullDate(period, from, to)) {
+            write(NULL);
+            return;
+        }
+
+        write((byte) '"');
+        write(period, from, to);
+        write((byte) '"');
+    }
+}
@@ -0,0 +1,201 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 1サーバー分の ping の応答時間を、対数で区切ったバケットごとの件数として保持します。
+ * 応答時間そのものは保持しないため、使用メモリは行数によらず一定(最大 BUCKET_COUNT 個の int)です。
+ *
+ * 2のべき乗ごとの範囲を SUB_BUCKET_COUNT 個に等分して数えるため、パーセンタイルの相対誤差は 1/SUB_BUCKET_COUNT 以下です。
+ * SUB_BUCKET_COUNT 未満の応答時間は1ミリ秒ごとに数えます。
+ * 同じ形式のヒストグラム同士は merge で足し合わせられるため、チャンク・スレッドごとに集計してからまとめることもできます。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // int の最大値を含むバケットまでの数
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (Integer.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    // パーセンタイルを求められない(応答した ping がない)場合の値
+    public static final int NO_VALUE = -1;
+
+    // バケットごとの件数。使用した最大のバケットまで拡張する
+    private int[] counts = new int[0];
+
+    // 応答した ping の数
+    private long responseCount = 0;
+
+    private long timeoutCount = 0;
+
+    private int max = NO_VALUE;
+
+    /**
+     * 1行分の応答時間を数えます。
+     *
+     * @param record 解析済みの行
+     */
+    public void accept(final LogRecord record) {
+
+        if (record.isTimeout()) {
+            timeoutCount++;
+            return;
+        }
+
+        record(record.getReturnTime());
+    }
+
+    /**
+     * 応答時間を数えます。
+     *
+     * @param returnTime 応答時間(ミリ秒)
+     */
+    public void record(final int returnTime) {
+
+        final int index = bucketIndex(returnTime);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, index + 1);
+        }
+        counts[index]++;
+        responseCount++;
+        max = Math.max(max, returnTime);
+    }
+
+    /**
+     * 他のヒストグラムの件数を足し合わせます。
+     *
+     * @param other 足し合わせるヒストグラム
+     */
+    public void merge(final LatencyHistogram other) {
+
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        responseCount += other.responseCount;
+        timeoutCount += other.timeoutCount;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 応答した ping のうち、指定した割合の ping がその値以下で応答した応答時間を返却します(nearest-rank 法)。
+     * 値は該当するバケットの上限で、最大値を超えません。
+     *
+     * @param percent 割合(1〜100パーセント)
+     * @return 応答時間(ミリ秒)。応答した ping がない場合は NO_VALUE
+     */
+    public int getPercentile(final int percent) {
+
+        if (responseCount == 0) {
+            return NO_VALUE;
+        }
+
+        // 割合を超える最小の順位(切り上げ)
+        final long rank = (percent * responseCount + 99) / 100;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * @return 応答時間の最大値(ミリ秒)。応答した ping がない場合は NO_VALUE
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return タイムアウトした ping の数
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * @return タイムアウトを含む ping の数
+     */
+    public long getTotalCount() {
+        return responseCount + timeoutCount;
+    }
+
+    /**
+     * 件数を書き込みます。
+     *
+     * @param output 書き込み先
+     */
+    public void writeState(final DataOutput output) throws IOException {
+
+        output.writeLong(responseCount);
+        output.writeLong(timeoutCount);
+        output.writeInt(max);
+        output.writeInt(counts.length);
+        for (final int count : counts) {
+            output.writeInt(count);
+        }
+    }
+
+    /**
+     * writeState で書き込んだ件数を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readState(final DataInput input) throws IOException {
+
+        responseCount = input.readLong();
+        timeoutCount = input.readLong();
+        max = input.readInt();
+        final int length = input.readInt();
+        if (length < 0 || length > BUCKET_COUNT) {
+            throw new LogMonitoringException(MESSAGE_INVALID_CHECKPOINT);
+        }
+        counts = new int[length];
+        for (int i = 0; i < length; i++) {
+            counts[i] = input.readInt();
+        }
+    }
+
+    /**
+     * 応答時間を数えるバケットの添字を返却します。
+     */
+    static int bucketIndex(final int value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return value;
+        }
+
+        // 最上位ビットより下の SUB_BUCKET_BITS ビットで等分する
+        final int exponent = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * バケットに含まれる最大の応答時間を返却します。
+     */
+    static int bucketUpperBound(final int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        final long lowerBound = (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+        return (int) Math.min(lowerBound + (1L << shift) - 1, Integer.MAX_VALUE);
+    }
+}
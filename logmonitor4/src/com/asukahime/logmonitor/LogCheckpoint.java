@@ -0,0 +1,138 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 前回までに読み込んだログファイルの位置と各検出器の状態をチェックポイントファイルに保存し、
+ * 次回は追記された部分のみを解析します。
+ *
+ * チェックポイントには読み込んだバイト数・行数と、ファイル先頭の一部のCRC32を保持します。
+ * ファイルが読み込んだバイト数より小さい場合や先頭が一致しない場合は、ローテーションされた新しいファイルとみなし、
+ * 検出器の状態を引き継いだまま先頭から読み込みます。
+ *
+ * 書きかけの行を解析しないよう、改行文字で終わっている行のみを解析します。
+ */
+public class LogCheckpoint {
+
+    // チェックポイントファイルの識別子("LMCP")とバージョン
+    private static final int MAGIC = 0x4C4D4350;
+    private static final int VERSION = 4;
+
+    // ファイルの同一性の確認に使用する先頭のバイト数
+    private static final int FINGERPRINT_LENGTH = 4096;
+
+    private long offset = 0;
+
+    // 読み込んだ行数(指定のフォーマットではない行の行番号に使用)
+    private long lineNumber = 0;
+
+    private boolean skipLineFeed = false;
+
+    private int fingerprintLength = 0;
+
+    private long fingerprint = 0;
+
+    private LogCheckpoint() {}
+
+    /**
+     * チェックポイントファイルを読み込み、monitor に検出器の状態を復元します。
+     * チェックポイントファイルが存在しない場合は、ファイル先頭から読み込むチェックポイントを返却します。
+     *
+     * @param checkpointPath チェックポイントファイル
+     * @param monitor 状態の復元先
+     * @return 読み込んだチェックポイント
+     */
+    public static LogCheckpoint load(final Path checkpointPath, final StreamingLogMonitor monitor) throws IOException {
+
+        final LogCheckpoint checkpoint = new LogCheckpoint();
+        if (!Files.exists(checkpointPath)) {
+            return checkpoint;
+        }
+
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpointPath)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new LogMonitoringException(MESSAGE_INVALID_CHECKPOINT);
+            }
+
+            checkpoint.offset = input.readLong();
+            checkpoint.lineNumber = input.readLong();
+            checkpoint.skipLineFeed = input.readBoolean();
+            checkpoint.fingerprintLength = input.readInt();
+            checkpoint.fingerprint = input.readLong();
+            monitor.readState(input);
+        } catch (EOFException e) {
+            throw new LogMonitoringException(MESSAGE_INVALID_CHECKPOINT);
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * ログファイルの前回読み込んだ位置以降の行を handler に渡し、読み込んだ位置を更新します。
+     *
+     * @param logPath ログファイル
+     * @param parser 行の受け取り先。前回までに読み込んだ行数から行番号を数えます。
+     */
+    public void read(final Path logPath, final LogLineValidator.LineParser parser) throws IOException {
+
+        if (Files.size(logPath) < offset || LogFiles.calcFingerprint(logPath, fingerprintLength) != fingerprint) {
+            offset = 0;
+            lineNumber = 0;
+            skipLineFeed = false;
+        }
+
+        try (final InputStream inputStream = Files.newInputStream(logPath)) {
+            LogFiles.skipFully(inputStream, offset);
+
+            final LogLineReader reader = new LogLineReader(inputStream, skipLineFeed);
+            parser.setLineNumber(lineNumber);
+            reader.readAvailable(parser);
+            offset += reader.getConsumedBytes();
+            lineNumber = parser.getLineNumber();
+            skipLineFeed = reader.isSkipLineFeed();
+        }
+
+        fingerprintLength = (int) Math.min(offset, FINGERPRINT_LENGTH);
+        fingerprint = LogFiles.calcFingerprint(logPath, fingerprintLength);
+    }
+
+    /**
+     * チェックポイントファイルに読み込んだ位置と monitor の状態を書き込みます。
+     * 書き込み途中で中断しても前回のチェックポイントが壊れないよう、一時ファイルに書き込んでから置き換えます。
+     *
+     * @param checkpointPath チェックポイントファイル
+     * @param monitor 状態を保存する検出器
+     */
+    public void save(final Path checkpointPath, final StreamingLogMonitor monitor) throws IOException {
+
+        final Path absolutePath = checkpointPath.toAbsolutePath();
+        final Path tempPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        try {
+            try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(offset);
+                output.writeLong(lineNumber);
+                output.writeBoolean(skipLineFeed);
+                output.writeInt(fingerprintLength);
+                output.writeLong(fingerprint);
+                monitor.writeState(output);
+            }
+
+            Files.move(tempPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.asukahime.logmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * それぞれ時系列順に並んだ複数のログファイルを、1つの時系列順の行の並びとして handler に渡します。
+ *
+ * 各ファイルを少しずつ読み込んで解析し、各ファイルの先頭行のうち最も古い行をヒープで選んで渡します(k-way マージ)。
+ * ファイルの連結や全行の読み込みを行わないため、使用メモリはファイル数に比例し、行数には依存しません。
+ * 日時が等しい行は、指定したファイルの順序で渡します。
+ */
+public class LogFileMerger {
+
+    private final List<Path> pathList;
+
+    private final LogLineValidator validator;
+
+    /**
+     * @param pathList ログファイルのリスト
+     */
+    public LogFileMerger(final List<Path> pathList) {
+        this(pathList, LogLineValidator.strict());
+    }
+
+    /**
+     * @param pathList ログファイルのリスト
+     * @param validator 指定のフォーマットではない行の扱い
+     */
+    public LogFileMerger(final List<Path> pathList, final LogLineValidator validator) {
+        this.pathList = pathList;
+        this.validator = validator;
+    }
+
+    /**
+     * 全ファイルの全行を解析し、時系列順に handler に渡します。
+     *
+     * @param handler 解析済みの行の受け取り先
+     */
+    public void read(final Consumer<LogRecord> handler) throws IOException {
+
+        final PriorityQueue<Source> queue = new PriorityQueue<>(Math.max(pathList.size(), 1), Source::compareTo);
+        try {
+            for (int i = 0; i < pathList.size(); i++) {
+                final Source source = new Source(pathList.get(i), validator, i);
+                if (source.next()) {
+                    queue.add(source);
+                } else {
+                    source.close();
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                final Source source = queue.poll();
+                handler.accept(source.record);
+                if (source.next()) {
+                    queue.add(source);
+                } else {
+                    source.close();
+                }
+            }
+        } finally {
+            for (final Source source : queue) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * 1ファイル分の行を、読み込んだバッファ単位で解析しながら1行ずつ取り出します。
+     */
+    private static class Source implements Comparable<Source> {
+
+        private final InputStream inputStream;
+
+        private final LogLineReader reader;
+
+        private final LogLineValidator.LineParser parser;
+
+        private final int fileIndex;
+
+        // 解析済みで未取り出しの行
+        private final LogRecordBuffer buffer = new LogRecordBuffer();
+
+        private int position = 0;
+
+        private boolean endOfFile = false;
+
+        private final LogRecord record = new LogRecord();
+
+        Source(final Path path, final LogLineValidator validator, final int fileIndex) throws IOException {
+            this.inputStream = LogFiles.open(path);
+            this.reader = new LogLineReader(inputStream);
+            this.parser = validator.parser(path, buffer::add);
+            this.fileIndex = fileIndex;
+            // 初回の比較で時系列順の確認を通過させる
+            this.record.epochSecond = Long.MIN_VALUE;
+        }
+
+        /**
+         * 次の行を record に取り出します。
+         *
+         * @return 取り出した場合はtrue、ファイルの末尾の場合はfalse
+         */
+        boolean next() throws IOException {
+
+            while (position == buffer.size()) {
+                if (endOfFile) {
+                    return false;
+                }
+
+                buffer.clear();
+                position = 0;
+                endOfFile = !reader.readChunk(parser);
+            }
+
+            final long previousEpochSecond = record.epochSecond;
+            buffer.get(position++, record);
+            if (record.epochSecond < previousEpochSecond) {
+                throw new LogMonitoringException(MESSAGE_NOT_CHRONOLOGICAL);
+            }
+            return true;
+        }
+
+        void close() throws IOException {
+            inputStream.close();
+        }
+
+        @Override
+        public int compareTo(final Source other) {
+
+            if (record.epochSecond != other.record.epochSecond) {
+                return Long.compare(record.epochSecond, other.record.epochSecond);
+            }
+            return Integer.compare(fileIndex, other.fileIndex);
+        }
+    }
+}
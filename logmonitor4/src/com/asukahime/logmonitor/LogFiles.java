@@ -0,0 +1,265 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 第一引数に指定されたログファイルの指定を、解析するファイルのリストに展開します。
+ *
+ * 以下の指定を、パス区切り文字(Linux では ":"、Windows では ";")で区切って複数指定できます。
+ * <ul>
+ *     <li>ファイル:そのファイル</li>
+ *     <li>ディレクトリ:直下のファイルをファイル名順に</li>
+ *     <li>グロブ(*、?、[]、{} を含むパス。例:logs/2021-07-17/*.log):一致するファイルをパス順に</li>
+ * </ul>
+ *
+ * また、gzip・zstd で圧縮されたファイルを先頭のマジックナンバーで判別し、展開しながら読み込みます。
+ */
+public final class LogFiles {
+
+    private static final String GLOB_SYNTAX = "glob:";
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1F, (byte) 0x8B};
+
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD};
+
+    private static final int MAGIC_LENGTH = ZSTD_MAGIC.length;
+
+    // zstd の展開には zstd-jni を使用する(クラスパスにある場合のみ)
+    private static final String ZSTD_INPUT_STREAM_CLASS = "com.github.luben.zstd.ZstdInputStream";
+
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private LogFiles() {}
+
+    /**
+     * ディレクトリ・グロブに解析対象のファイルが存在しない場合は NoSuchFileException とします。
+     *
+     * @param argument ログファイルの指定
+     * @return 解析するファイルのリスト(指定の順序)
+     */
+    public static List<Path> resolve(final String argument) throws IOException {
+
+        final List<Path> pathList = new ArrayList<>();
+        for (final String element : argument.split(File.pathSeparator)) {
+            if (isGlob(element)) {
+                pathList.addAll(resolveGlob(element));
+            } else if (Files.isDirectory(Paths.get(element))) {
+                final List<Path> children;
+                try (final Stream<Path> paths = Files.list(Paths.get(element))) {
+                    children = paths.filter(LogFiles::isLogFile).sorted().collect(Collectors.toList());
+                }
+                if (children.isEmpty()) {
+                    throw new NoSuchFileException(element);
+                }
+                pathList.addAll(children);
+            } else {
+                pathList.add(Paths.get(element));
+            }
+        }
+
+        return pathList;
+    }
+
+    /**
+     * ディレクトリ・グロブで指定した場合に解析対象とするファイルかを判定します。
+     * 以前のバージョンがログファイルと同じディレクトリに作成した索引ファイルは除外します。
+     */
+    private static boolean isLogFile(final Path path) {
+        return Files.isRegularFile(path) && !path.getFileName().toString().endsWith(LogTimeIndex.INDEX_SUFFIX);
+    }
+
+    private static boolean isGlob(final String element) {
+        return element.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0);
+    }
+
+    /**
+     * グロブに一致するファイルを返却します。
+     * グロブを含まない先頭のディレクトリから、グロブの階層数の範囲(** を含む場合はすべての階層)を探索します。
+     */
+    private static List<Path> resolveGlob(final String glob) throws IOException {
+
+        // 最初のグロブ文字を含む階層より前を探索の起点とする
+        int firstGlobIndex = 0;
+        while (GLOB_CHARACTERS.indexOf(glob.charAt(firstGlobIndex)) < 0) {
+            firstGlobIndex++;
+        }
+        final String base = glob.substring(0, lastSeparatorIndex(glob, firstGlobIndex) + 1);
+        final String rest = glob.substring(base.length());
+        final int maxDepth = rest.contains("**") ? Integer.MAX_VALUE : (int) rest.chars().filter(LogFiles::isSeparator).count() + 1;
+
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(GLOB_SYNTAX + glob);
+        final Path searchRoot = Paths.get(base.isEmpty() ? "." : base);
+        final List<Path> pathList;
+        try (final Stream<Path> paths = Files.walk(searchRoot, maxDepth)) {
+            pathList = paths
+                    .filter(LogFiles::isLogFile)
+                    .map(path -> base.isEmpty() ? searchRoot.relativize(path) : path)
+                    .filter(matcher::matches)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        if (pathList.isEmpty()) {
+            throw new NoSuchFileException(glob);
+        }
+        return pathList;
+    }
+
+    private static int lastSeparatorIndex(final String text, final int to) {
+
+        for (int i = to - 1; i >= 0; i--) {
+            if (isSeparator(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSeparator(final int c) {
+        return c == '/' || c == File.separatorChar;
+    }
+
+    /**
+     * ファイルを開きます。圧縮されたファイルは、別スレッドで展開した内容を読み込むストリームを返却します。
+     *
+     * @param path ログファイル
+     * @return 展開後の内容を読み込むストリーム
+     */
+    public static InputStream open(final Path path) throws IOException {
+
+        final InputStream raw = new BufferedInputStream(Files.newInputStream(path), INPUT_BUFFER_SIZE);
+        try {
+            raw.mark(MAGIC_LENGTH);
+            final byte[] magic = raw.readNBytes(MAGIC_LENGTH);
+            raw.reset();
+
+            if (startsWith(magic, GZIP_MAGIC)) {
+                return new BackgroundInputStream(new GZIPInputStream(raw, INPUT_BUFFER_SIZE));
+            }
+            if (startsWith(magic, ZSTD_MAGIC)) {
+                return new BackgroundInputStream(openZstd(raw));
+            }
+            return raw;
+        } catch (IOException | RuntimeException e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param path ログファイル
+     * @return gzip・zstd で圧縮されている場合はtrue
+     */
+    public static boolean isCompressed(final Path path) throws IOException {
+
+        try (final InputStream inputStream = Files.newInputStream(path)) {
+            final byte[] magic = inputStream.readNBytes(MAGIC_LENGTH);
+            return startsWith(magic, GZIP_MAGIC) || startsWith(magic, ZSTD_MAGIC);
+        }
+    }
+
+    /**
+     * @param path ログファイル
+     * @return ColumnarLogWriter で書き出した列指向形式のファイルの場合はtrue
+     */
+    public static boolean isColumnar(final Path path) throws IOException {
+
+        try (final InputStream inputStream = Files.newInputStream(path)) {
+            final byte[] magic = inputStream.readNBytes(Integer.BYTES);
+            return magic.length == Integer.BYTES && ByteBuffer.wrap(magic).getInt() == ColumnarLogWriter.MAGIC;
+        }
+    }
+
+    /**
+     * ファイルの同一性の確認に使用する、先頭の指定したバイト数のCRC32を返却します。
+     *
+     * @param path ファイル
+     * @param length 先頭のバイト数
+     * @return CRC32。ファイルが指定のバイト数に満たない場合は-1
+     */
+    static long calcFingerprint(final Path logPath, final int length) throws IOException {
+
+        final byte[] head = new byte[length];
+        try (final InputStream inputStream = Files.newInputStream(logPath)) {
+            int read = 0;
+            while (read < length) {
+                final int count = inputStream.read(head, read, length - read);
+                if (count == -1) {
+                    // 先頭が指定のバイト数に満たない場合は一致しないものとする
+                    return -1;
+                }
+                read += count;
+            }
+        }
+
+        final CRC32 crc32 = new CRC32();
+        crc32.update(head);
+        return crc32.getValue();
+    }
+
+    /**
+     * 指定したバイト数を読み飛ばします。
+     */
+    static void skipFully(final InputStream inputStream, final long length) throws IOException {
+
+        long remaining = length;
+        while (remaining > 0) {
+            final long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static InputStream openZstd(final InputStream raw) throws IOException {
+
+        try {
+            return (InputStream) Class.forName(ZSTD_INPUT_STREAM_CLASS).getConstructor(InputStream.class).newInstance(raw);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new LogMonitoringException(MESSAGE_ZSTD_NOT_AVAILABLE);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.asukahime.logmonitor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * tail -f と同様に、ファイルを開いたまま追記されたバイト列を読み込み続けます。
+ *
+ * ファイル先頭から読み込みを開始し、ファイル末尾に到達するたびに idleHandler を呼び出したうえで
+ * 一定間隔で追記を確認します。書きかけの行は改行文字が追記されるまで handler に渡しません。
+ * ファイルサイズが直前より小さくなった場合(切り詰めによるローテーション)は、先頭から読み直します。
+ * 呼び出し元のスレッドが割り込まれた時点で終了します。
+ * 割り込みでストリームが閉じられないよう、FileChannel ではなく FileInputStream で読み込みます。
+ */
+public class LogFollower {
+
+    private final Path path;
+
+    private final long pollMillis;
+
+    /**
+     * @param path 監視するファイル
+     * @param pollMillis 追記を確認する間隔(ミリ秒)
+     */
+    public LogFollower(final Path path, final long pollMillis) {
+        this.path = path;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * 割り込まれるまでファイルを読み込み続けます。
+     *
+     * @param handler 行の受け取り先
+     * @param idleHandler 追記された行をすべて handler に渡し終えた時点で呼び出す処理
+     */
+    public void follow(final LogLineReader.LineHandler handler, final Runnable idleHandler) throws IOException {
+
+        InputStream inputStream = new FileInputStream(path.toFile());
+        try {
+            LogLineReader reader = new LogLineReader(inputStream);
+            long previousSize = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                final long size = Files.size(path);
+                if (size < previousSize) {
+                    inputStream.close();
+                    inputStream = new FileInputStream(path.toFile());
+                    reader = new LogLineReader(inputStream);
+                }
+                previousSize = size;
+
+                if (reader.readAvailable(handler)) {
+                    idleHandler.run();
+                }
+
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+}
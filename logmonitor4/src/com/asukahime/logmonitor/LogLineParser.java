@@ -0,0 +1,157 @@
+package com.asukahime.logmonitor;
+
+/**
+ * ログファイル1行分のバイト列を検証し、LogRecord に数値として展開します。
+ *
+ * LINE_REGEXP による照合と区切り文字による分割を1回の走査で行い、途中で String や配列を生成しません。
+ * LINE_REGEXP の書式に加え、日時が暦として正しいこと、各オクテットが255以下であること、
+ * プレフィックス長が32以下であること、オクテットとプレフィックス長が0以外で0から始まらないこと、応答時間がintに収まることを確認します。
+ * 0から始まるオクテット(010.1.1.1 など)は数値に展開すると 10.1.1.1 と区別できないため、フォーマット不正とします。
+ */
+public final class LogLineParser {
+
+    private static final int DATE_LENGTH = 14;
+    private static final int MAX_FIELD_DIGITS = 3;
+    private static final long INVALID_DATE = Long.MIN_VALUE;
+
+    private LogLineParser() {}
+
+    /**
+     * 1行分のバイト列を解析します。
+     *
+     * @param buf 行を含むバイト列
+     * @param from 行の開始位置
+     * @param to 行の終了位置(改行文字を含まない)
+     * @param record 解析結果の格納先
+     * @return 指定のフォーマットの場合はtrue
+     */
+    public static boolean parse(final byte[] buf, final int from, final int to, final LogRecord record) {
+
+        int pos = from;
+
+        // 確認日時
+        if (to - pos < DATE_LENGTH) {
+            return false;
+        }
+        long date = 0;
+        for (final int end = pos + DATE_LENGTH; pos < end; pos++) {
+            final int digit = buf[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            date = date * 10 + digit;
+        }
+        final long epochSecond = toEpochSecond(date, record);
+        if (epochSecond == INVALID_DATE || pos >= to || buf[pos++] != ',') {
+            return false;
+        }
+
+        // サーバーIP
+        int address = 0;
+        for (int octetIndex = 0; octetIndex < 4; octetIndex++) {
+            final int start = pos;
+            int octet = 0;
+            while (pos < to && pos - start < MAX_FIELD_DIGITS && isDigit(buf[pos])) {
+                octet = octet * 10 + buf[pos++] - '0';
+            }
+            if (pos == start || hasLeadingZero(buf, start, pos) || octet > ServerAddress.MAX_OCTET || pos >= to) {
+                return false;
+            }
+            if (buf[pos++] != (octetIndex < 3 ? '.' : '/')) {
+                return false;
+            }
+            address = address << 8 | octet;
+        }
+
+        // ネットワークプレフィックス長
+        final int prefixStart = pos;
+        int prefixLength = 0;
+        while (pos < to && pos - prefixStart < MAX_FIELD_DIGITS && isDigit(buf[pos])) {
+            prefixLength = prefixLength * 10 + buf[pos++] - '0';
+        }
+        if (pos == prefixStart || hasLeadingZero(buf, prefixStart, pos) || prefixLength > ServerAddress.MAX_PREFIX_LENGTH
+                || pos >= to || buf[pos++] != ',') {
+            return false;
+        }
+
+        // 応答時間
+        if (pos >= to) {
+            return false;
+        }
+        int returnTime;
+        if (buf[pos] == '-') {
+            returnTime = LogRecord.TIMEOUT;
+            pos++;
+        } else {
+            returnTime = 0;
+            while (pos < to && isDigit(buf[pos])) {
+                final int digit = buf[pos++] - '0';
+                if (returnTime > (Integer.MAX_VALUE - digit) / 10) {
+                    return false;
+                }
+                returnTime = returnTime * 10 + digit;
+            }
+        }
+        if (pos != to) {
+            return false;
+        }
+
+        record.epochSecond = epochSecond;
+        record.address = address;
+        record.prefixLength = prefixLength;
+        record.returnTime = returnTime;
+        return true;
+    }
+
+    private static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * 2桁以上の数字が0から始まるかを判定します。
+     */
+    private static boolean hasLeadingZero(final byte[] buf, final int start, final int end) {
+        return end - start > 1 && buf[start] == '0';
+    }
+
+    /**
+     * yyyyMMddHHmmss を数値化した値を検証し、エポック秒に変換します。
+     * 日付部分の検証とエポック日は record に保持し、同じ日付の行が続く間は再計算しません。
+     *
+     * @return エポック秒。暦として正しくない場合は INVALID_DATE
+     */
+    private static long toEpochSecond(final long date, final LogRecord record) {
+
+        final int timeOfDay = (int) (date % 1000000);
+        if (timeOfDay % 100 > 59 || timeOfDay / 100 % 100 > 59 || timeOfDay / 10000 > 23) {
+            return INVALID_DATE;
+        }
+
+        final long yearMonthDay = date / 1000000;
+        if (yearMonthDay != record.cachedDay) {
+            final int day = (int) (yearMonthDay % 100);
+            final int month = (int) (yearMonthDay / 100 % 100);
+            final int year = (int) (yearMonthDay / 10000);
+            if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+                return INVALID_DATE;
+            }
+
+            record.cachedDay = yearMonthDay;
+            record.cachedDayEpochSecond = LogTimestamp.toEpochDay(year, month, day) * LogTimestamp.SECONDS_PER_DAY;
+        }
+
+        return record.cachedDayEpochSecond + LogTimestamp.secondOfDay(timeOfDay);
+    }
+
+    private static int lengthOfMonth(final int year, final int month) {
+
+        switch (month) {
+            case 2: return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11: return 30;
+            default: return 31;
+        }
+    }
+}
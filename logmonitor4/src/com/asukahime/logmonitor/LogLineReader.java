@@ -0,0 +1,225 @@
+package com.asukahime.logmonitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 入力ストリームをバイト列のまま行単位に分割します。
+ * 文字コードの変換や行ごとの String 生成を行わず、バッファ上の範囲をそのまま LineHandler に渡します。
+ *
+ * 行の区切りは BufferedReader#readLine と同じく "\n"、"\r"、"\r\n" のいずれかです。
+ */
+public class LogLineReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 1行分のバイト列を受け取ります。
+     */
+    @FunctionalInterface
+    public interface LineHandler {
+
+        /**
+         * @param buf 行を含むバイト列。呼び出し後に上書きされるため、保持しないでください。
+         * @param from 行の開始位置
+         * @param to 行の終了位置(改行文字を含まない)
+         */
+        void accept(byte[] buf, int from, int to);
+    }
+
+    private final InputStream inputStream;
+
+    private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+
+    // バッファ先頭に残っている、改行文字で終わっていない行のバイト数
+    private int length = 0;
+
+    // 直前のバッファが "\r" で終わっていた場合はtrue
+    private boolean skipLineFeed;
+
+    // handler に渡し終えた行の改行文字を含むバイト数
+    private long consumedBytes = 0;
+
+    // handler に渡している行の、読み込み開始位置からのバイト数
+    private long lineStartOffset = 0;
+
+    public LogLineReader(final InputStream inputStream) {
+        this(inputStream, false);
+    }
+
+    /**
+     * @param inputStream 入力ストリーム
+     * @param skipLineFeed 直前に読み込んだ部分が "\r" で終わっていた場合はtrue。先頭の "\n" を読み飛ばします。
+     */
+    public LogLineReader(final InputStream inputStream, final boolean skipLineFeed) {
+        this.inputStream = inputStream;
+        this.skipLineFeed = skipLineFeed;
+    }
+
+    /**
+     * ストリームの末尾まで読み込み、各行を handler に渡します。
+     *
+     * @param handler 行の受け取り先
+     */
+    public void readLines(final LineHandler handler) throws IOException {
+
+        readAvailable(handler);
+
+        if (length > 0) {
+            lineStartOffset = consumedBytes;
+            handler.accept(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    /**
+     * 現時点のストリームの末尾まで読み込み、改行文字で終わっている行のみ handler に渡します。
+     * 末尾の書きかけの行は保持し、次回の呼び出しで追記された続きと合わせて渡します。
+     * 追記され続けるファイルを繰り返し読み込む場合に使用します。
+     *
+     * @param handler 行の受け取り先
+     * @return 1バイト以上読み込んだ場合はtrue
+     */
+    public boolean readAvailable(final LineHandler handler) throws IOException {
+
+        boolean readAny = false;
+        while (readOnce(handler)) {
+            readAny = true;
+        }
+
+        return readAny;
+    }
+
+    /**
+     * ストリームからバッファ1回分を読み込み、改行文字で終わっている行を handler に渡します。
+     * ストリームの末尾に達した場合は、改行文字で終わっていない最後の行を渡します。
+     * 複数のストリームから少しずつ読み込む場合に使用します。
+     *
+     * @param handler 行の受け取り先
+     * @return ストリームの末尾に達した場合はfalse
+     */
+    public boolean readChunk(final LineHandler handler) throws IOException {
+
+        if (readOnce(handler)) {
+            return true;
+        }
+
+        if (length > 0) {
+            lineStartOffset = consumedBytes;
+            handler.accept(buffer, 0, length);
+            length = 0;
+        }
+        return false;
+    }
+
+    private boolean readOnce(final LineHandler handler) throws IOException {
+
+        final int read = inputStream.read(buffer, length, buffer.length - length);
+        if (read == -1) {
+            return false;
+        }
+
+        length += read;
+        final int consumed = dispatch(buffer, length, handler);
+        consumedBytes += consumed;
+
+        // 行の途中を先頭に詰める。1行がバッファに収まらない場合は拡張する
+        length -= consumed;
+        System.arraycopy(buffer, consumed, buffer, 0, length);
+        if (length == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return readAvailable で handler に渡し終えた行の、改行文字を含むバイト数
+     */
+    public long getConsumedBytes() {
+        return consumedBytes;
+    }
+
+    /**
+     * handler の呼び出し中に、渡している行の位置を返却します。
+     *
+     * @return 渡している行の先頭の、読み込み開始位置からのバイト数
+     */
+    public long getLineStartOffset() {
+        return lineStartOffset;
+    }
+
+    /**
+     * @return 読み込んだ部分が "\r" で終わっている場合はtrue
+     */
+    public boolean isSkipLineFeed() {
+        return skipLineFeed;
+    }
+
+    /**
+     * 行単位に区切られたバイト列の範囲を分割し、各行を handler に渡します。
+     * 範囲の末尾が改行文字で終わっていない場合は、最後の行として渡します。
+     *
+     * @param buf バイト列
+     * @param from 範囲の開始位置(行頭)
+     * @param to 範囲の終了位置
+     * @param handler 行の受け取り先
+     */
+    public static void splitLines(final byte[] buf, final int from, final int to, final LineHandler handler) {
+
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            final byte b = buf[i];
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+
+            handler.accept(buf, lineStart, i);
+
+            if (b == '\r' && i + 1 < to && buf[i + 1] == '\n') {
+                i++;
+            }
+            lineStart = i + 1;
+        }
+
+        if (lineStart < to) {
+            handler.accept(buf, lineStart, to);
+        }
+    }
+
+    /**
+     * バッファ中の完結した行を handler に渡し、処理済みのバイト数を返却します。
+     */
+    private int dispatch(final byte[] buf, final int length, final LineHandler handler) {
+
+        int lineStart = 0;
+        if (skipLineFeed && length > 0) {
+            skipLineFeed = false;
+            if (buf[0] == '\n') {
+                lineStart = 1;
+            }
+        }
+
+        for (int i = lineStart; i < length; i++) {
+            final byte b = buf[i];
+            if (b != '\n' && b != '\r') {
+                continue;
+            }
+
+            lineStartOffset = consumedBytes + lineStart;
+            handler.accept(buf, lineStart, i);
+
+            if (b == '\r') {
+                if (i + 1 == length) {
+                    skipLineFeed = true;
+                } else if (buf[i + 1] == '\n') {
+                    i++;
+                }
+            }
+            lineStart = i + 1;
+        }
+
+        return lineStart;
+    }
+}
@@ -0,0 +1,187 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 行の解析と同時にフォーマットを検証し、指定のフォーマットではない行を扱います。
+ *
+ * 厳格モード(既定)では、最初に見つかった不正な行で MESSAGE_INVALID_FORMAT を送出します。
+ * 寛容モードでは不正な行を数えて解析を続け、隔離ファイルを指定した場合は
+ * "ファイルパス:行番号:行の内容" の形式で書き出します。行番号は1から数えます。
+ */
+public class LogLineValidator implements Closeable {
+
+    private static final byte[] QUARANTINE_DELIMITER = ":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] QUARANTINE_LINE_SEPARATOR = "\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final boolean lenient;
+
+    // 隔離ファイルへの出力先(指定しない場合はnull)
+    private final OutputStream quarantine;
+
+    private long rejectedCount = 0;
+
+    private LogLineValidator(final boolean lenient, final OutputStream quarantine) {
+        this.lenient = lenient;
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * @return 最初の不正な行で処理を中断するバリデータ
+     */
+    public static LogLineValidator strict() {
+        return new LogLineValidator(false, null);
+    }
+
+    /**
+     * @param quarantinePath 不正な行を書き出す隔離ファイル。書き出さない場合はnull
+     * @return 不正な行を除外して処理を続けるバリデータ
+     */
+    public static LogLineValidator lenient(final Path quarantinePath) throws IOException {
+
+        final OutputStream quarantine = quarantinePath != null ? new BufferedOutputStream(Files.newOutputStream(quarantinePath)) : null;
+        return new LogLineValidator(true, quarantine);
+    }
+
+    /**
+     * @return 不正な行を除外して処理を続ける場合はtrue
+     */
+    public boolean isLenient() {
+        return lenient;
+    }
+
+    /**
+     * 各行を解析し、指定のフォーマットの行のみを handler に渡す LineHandler を返却します。
+     *
+     * @param path 行を読み込むファイル(隔離ファイルへの出力に使用)
+     * @param handler 解析済みの行の受け取り先
+     * @return 行の受け取り先
+     */
+    public LineParser parser(final Path path, final Consumer<LogRecord> handler) {
+        return new LineParser(path, handler);
+    }
+
+    /**
+     * 指定のフォーマットではない行を扱います。厳格モードの場合は MESSAGE_INVALID_FORMAT を送出します。
+     *
+     * @param path 行を読み込んだファイル
+     * @param lineNumber 行番号
+     * @param buf 行を含むバイト列
+     * @param from 行の開始位置
+     * @param to 行の終了位置(改行文字を含まない)
+     */
+    public synchronized void reject(final Path path, final long lineNumber, final byte[] buf, final int from, final int to) {
+
+        if (!lenient) {
+            throw new LogMonitoringException(MESSAGE_INVALID_FORMAT);
+        }
+
+        rejectedCount++;
+        if (quarantine == null) {
+            return;
+        }
+        try {
+            quarantine.write(path.toString().getBytes(StandardCharsets.UTF_8));
+            quarantine.write(QUARANTINE_DELIMITER);
+            quarantine.write(Long.toString(lineNumber).getBytes(StandardCharsets.US_ASCII));
+            quarantine.write(QUARANTINE_DELIMITER);
+            quarantine.write(buf, from, to - from);
+            quarantine.write(QUARANTINE_LINE_SEPARATOR);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @see #reject(Path, long, byte[], int, int)
+     */
+    public void reject(final Path path, final long lineNumber, final String line) {
+
+        final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        reject(path, lineNumber, bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return 除外した行数
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * 隔離ファイルに書き出していない行を書き出します。
+     */
+    public synchronized void flush() throws IOException {
+
+        if (quarantine != null) {
+            quarantine.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        if (quarantine != null) {
+            quarantine.close();
+        }
+    }
+
+    /**
+     * 1ファイル分の行を解析し、行番号を数えながら検証します。
+     */
+    public class LineParser implements LogLineReader.LineHandler {
+
+        private final Path path;
+
+        private final Consumer<LogRecord> handler;
+
+        private final LogRecord record = new LogRecord();
+
+        // 直前に受け取った行の行番号
+        private long lineNumber = 0;
+
+        private LineParser(final Path path, final Consumer<LogRecord> handler) {
+            this.path = path;
+            this.handler = handler;
+        }
+
+        @Override
+        public void accept(final byte[] buf, final int from, final int to) {
+
+            lineNumber++;
+            if (!LogLineParser.parse(buf, from, to, record)) {
+                reject(path, lineNumber, buf, from, to);
+                return;
+            }
+
+            handler.accept(record);
+        }
+
+        /**
+         * @return 受け取った行数
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * ファイルの途中から読み込む場合に、それまでの行数を設定します。
+         *
+         * @param lineNumber 読み込み済みの行数
+         */
+        public void setLineNumber(final long lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+    }
+}
@@ -10,10 +10,56 @@ public class LogMonitorConstant {
     public static final int INDEX_SERVER_IP = 1;
     public static final int INDEX_RETURN_TIME = 2;
     public static final int VALID_NUMBER_OF_ARGS = 2;
+    public static final String OPTION_PREFIX = "--";
+    public static final String OPTION_STREAM = "--stream";
+    public static final String OPTION_MMAP = "--mmap";
+    public static final String OPTION_THREADS = "--threads=";
+    public static final String OPTION_SUBNET_FAULT_PERCENT = "--subnet-fault-percent=";
+    public static final int MAX_SUBNET_FAULT_PERCENT = 100;
+    public static final String OPTION_FOLLOW = "--follow";
+    public static final String OPTION_OVERLOAD_COUNT = "--overload-count=";
+    public static final String OPTION_OVERLOAD_MILLIS = "--overload-millis=";
+    public static final int OVERLOAD_DISABLED = 0;
+    public static final long FOLLOW_POLL_MILLIS = 10;
+    public static final String OPTION_CHECKPOINT = "--checkpoint=";
+    public static final String OPTION_PARALLEL = "--parallel";
+    public static final String OPTION_SORT = "--sort";
+    public static final String OPTION_FORMAT = "--format=";
+    public static final String FORMAT_TEXT = "text";
+    public static final String FORMAT_JSON_LINES = "jsonl";
+    public static final String FORMAT_CSV = "csv";
+    public static final String OPTION_DETECTORS = "--detectors=";
+    public static final String DETECTOR_DELIMITER = ",";
+    public static final String OPTION_EXTERNAL_SORT = "--external-sort";
+    public static final String OPTION_SORT_MEMORY = "--sort-memory=";
+    public static final String OPTION_SORT_TEMP_DIR = "--sort-temp-dir=";
+    public static final int DEFAULT_SORT_MEMORY_MEGABYTES = 64;
+    public static final int[] LATENCY_PERCENTILES = {50, 90, 99};
+    public static final String OPTION_LENIENT = "--lenient";
+    public static final String OPTION_QUARANTINE = "--quarantine=";
+    public static final String OPTION_ROLLUP = "--rollup=";
+    public static final String OPTION_GRANULARITY = "--granularity=";
+    public static final String OPTION_SUBNET = "--subnet";
+    public static final String OPTION_FROM = "--from=";
+    public static final String OPTION_TO = "--to=";
+    public static final String OPTION_INDEX_DIR = "--index-dir=";
+    public static final String OPTION_OFF_HEAP = "--off-heap";
 
     public static final String MESSAGE_FILE_CAN_NOT_READ = "ファイルの読み込みに失敗しました。";
     public static final String MESSAGE_FILE_NOT_SPECIFIED = "ファイルを指定してください。";
     public static final String MESSAGE_INVALID_ARGS = "引数の数が不正です。";
     public static final String MESSAGE_INVALID_ARG_1 = "第二引数は数値を入力してください。";
     public static final String MESSAGE_INVALID_FORMAT = "指定のフォーマットではない行が存在します。";
+    public static final String MESSAGE_INVALID_OPTION = "不正なオプションが指定されています。";
+    public static final String MESSAGE_NOT_CHRONOLOGICAL = "時系列順に並んでいない行が存在します。";
+    public static final String MESSAGE_INVALID_CHECKPOINT = "チェックポイントファイルが不正です。";
+    public static final String MESSAGE_MULTIPLE_FILES_NOT_SUPPORTED = "複数のファイルを解析する場合に指定できないオプションが指定されています。";
+    public static final String MESSAGE_CHECKPOINT_MISMATCH = "チェックポイントの作成時と解析条件が異なります。";
+    public static final String MESSAGE_COMPRESSED_FILE_NOT_SUPPORTED = "圧縮されたファイルを解析する場合に指定できないオプションが指定されています。";
+    public static final String MESSAGE_LINES_REJECTED = "指定のフォーマットではない%d行を除外しました。";
+    public static final String MESSAGE_INVALID_ROLLUP = "ロールアップのファイルが不正です。";
+    public static final String MESSAGE_INVALID_INDEX = "索引ファイルが不正です。";
+    public static final String MESSAGE_INVALID_COLUMNAR = "列指向形式のファイルが不正です。";
+    public static final String MESSAGE_COLUMNAR_FILE_NOT_SUPPORTED = "列指向形式のファイルを解析する場合に指定できないオプションが指定されています。";
+    public static final String MESSAGE_ZSTD_NOT_AVAILABLE = "zstd形式のファイルを解析するには zstd-jni をクラスパスに追加してください。";
 }
@@ -0,0 +1,404 @@
+package com.asukahime.logmonitor;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * コマンドライン引数を位置引数とオプション(--で始まる引数)に振り分けて保持します。
+ */
+public class LogMonitorOptions {
+
+    private final String[] arguments;
+
+    private boolean stream;
+
+    private boolean mmap;
+
+    private boolean follow;
+
+    private boolean parallel;
+
+    private boolean sort;
+
+    private boolean externalSort;
+
+    // 並べ替えに使用するメモリ量(未指定の場合は-1)
+    private int sortMemoryMegabytes = -1;
+
+    private Path sortTempDirectory;
+
+    private boolean lenient;
+
+    private Path quarantinePath;
+
+    // ロールアップを書き出すストアのディレクトリ(指定しない場合はnull)
+    private Path rollupDirectory;
+
+    // 解析する期間(エポック秒。未指定の場合は制限なし)
+    private long fromEpochSecond = Long.MIN_VALUE;
+    private long toEpochSecond = Long.MAX_VALUE;
+
+    // 索引ファイルの作成先(未指定の場合はnull)
+    private Path indexDirectory;
+
+    // サーバーごとの状態をヒープ外に保持する場合はtrue
+    private boolean offHeap;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private int subnetFaultPercent = MAX_SUBNET_FAULT_PERCENT;
+
+    private int overloadCount = OVERLOAD_DISABLED;
+
+    // 過負荷とみなされるミリ秒数(未指定の場合は-1)
+    private int overloadMillis = -1;
+
+    private Path checkpointPath;
+
+    private String format = FORMAT_TEXT;
+
+    // 実行する検出器(未指定の場合はnull)
+    private Set<DetectorType> detectors;
+
+    private LogMonitorOptions(final String[] arguments) {
+        this.arguments = arguments;
+    }
+
+    /**
+     * コマンドライン引数を解析します。
+     *
+     * @param args コマンドライン引数
+     * @return 解析結果
+     */
+    public static LogMonitorOptions parse(final String[] args) {
+
+        final List<String> argumentList = new ArrayList<>();
+        final List<String> optionList = new ArrayList<>();
+        for (final String arg : args) {
+            if (arg.startsWith(OPTION_PREFIX)) {
+                optionList.add(arg);
+            } else {
+                argumentList.add(arg);
+            }
+        }
+
+        final LogMonitorOptions options = new LogMonitorOptions(argumentList.toArray(new String[0]));
+        for (final String option : optionList) {
+            if (OPTION_STREAM.equals(option)) {
+                options.stream = true;
+            } else if (OPTION_MMAP.equals(option)) {
+                options.mmap = true;
+            } else if (OPTION_FOLLOW.equals(option)) {
+                options.follow = true;
+            } else if (OPTION_PARALLEL.equals(option)) {
+                options.parallel = true;
+            } else if (OPTION_SORT.equals(option)) {
+                options.sort = true;
+            } else if (OPTION_EXTERNAL_SORT.equals(option)) {
+                options.externalSort = true;
+            } else if (option.startsWith(OPTION_SORT_MEMORY)) {
+                options.sortMemoryMegabytes = parsePositiveInt(option.substring(OPTION_SORT_MEMORY.length()));
+            } else if (option.startsWith(OPTION_SORT_TEMP_DIR) && option.length() > OPTION_SORT_TEMP_DIR.length()) {
+                options.sortTempDirectory = Paths.get(option.substring(OPTION_SORT_TEMP_DIR.length()));
+            } else if (OPTION_LENIENT.equals(option)) {
+                options.lenient = true;
+            } else if (option.startsWith(OPTION_QUARANTINE) && option.length() > OPTION_QUARANTINE.length()) {
+                options.quarantinePath = Paths.get(option.substring(OPTION_QUARANTINE.length()));
+            } else if (option.startsWith(OPTION_ROLLUP) && option.length() > OPTION_ROLLUP.length()) {
+                options.rollupDirectory = Paths.get(option.substring(OPTION_ROLLUP.length()));
+            } else if (option.startsWith(OPTION_FROM)) {
+                options.fromEpochSecond = parseDate(option.substring(OPTION_FROM.length()));
+            } else if (option.startsWith(OPTION_TO)) {
+                options.toEpochSecond = parseDate(option.substring(OPTION_TO.length()));
+            } else if (option.startsWith(OPTION_INDEX_DIR) && option.length() > OPTION_INDEX_DIR.length()) {
+                options.indexDirectory = Paths.get(option.substring(OPTION_INDEX_DIR.length()));
+            } else if (OPTION_OFF_HEAP.equals(option)) {
+                options.offHeap = true;
+            } else if (option.startsWith(OPTION_THREADS)) {
+                options.threadCount = parsePositiveInt(option.substring(OPTION_THREADS.length()));
+            } else if (option.startsWith(OPTION_SUBNET_FAULT_PERCENT)) {
+                options.subnetFaultPercent = parsePositiveInt(option.substring(OPTION_SUBNET_FAULT_PERCENT.length()));
+                if (options.subnetFaultPercent > MAX_SUBNET_FAULT_PERCENT) {
+                    throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+                }
+            } else if (option.startsWith(OPTION_OVERLOAD_COUNT)) {
+                options.overloadCount = parsePositiveInt(option.substring(OPTION_OVERLOAD_COUNT.length()));
+            } else if (option.startsWith(OPTION_OVERLOAD_MILLIS)) {
+                options.overloadMillis = parseInt(option.substring(OPTION_OVERLOAD_MILLIS.length()));
+            } else if (option.startsWith(OPTION_FORMAT)) {
+                options.format = option.substring(OPTION_FORMAT.length());
+                if (!FORMAT_TEXT.equals(options.format) && !FORMAT_JSON_LINES.equals(options.format) && !FORMAT_CSV.equals(options.format)) {
+                    throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+                }
+            } else if (option.startsWith(OPTION_DETECTORS)) {
+                options.detectors = EnumSet.noneOf(DetectorType.class);
+                for (final String name : option.substring(OPTION_DETECTORS.length()).split(DETECTOR_DELIMITER, -1)) {
+                    options.detectors.add(DetectorType.fromOptionName(name));
+                }
+            } else if (option.startsWith(OPTION_CHECKPOINT) && option.length() > OPTION_CHECKPOINT.length()) {
+                options.checkpointPath = Paths.get(option.substring(OPTION_CHECKPOINT.length()));
+            } else {
+                throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+            }
+        }
+
+        // 過負荷判定の指定平均回数とミリ秒数は両方指定し、検出器を指定する場合は過負荷の検出器も指定する。
+        // 応答時間のパーセンタイルは全行の集計結果のため、追記の監視とは併用できない。
+        // ロールアップは解析の完了時に確定するため、追記の監視とは併用できない。
+        // 期間の指定は追記の監視・チェックポイントと併用できず、期間の開始は終了より前とする。索引の作成先は期間を指定する場合のみ指定できる。
+        // 追記の監視・チェックポイントはメモリマップと併用できず、追記の監視とチェックポイントも併用できない。
+        // 並べ替えてから解析する場合は、メモリマップ・追記の監視・チェックポイントと併用できず、
+        // 並べ替えのメモリ量と一時ファイルの作成先は並べ替える場合のみ指定できる。
+        // グループごとの並列計算はファイル全体を読み込む場合のみ、出力順の指定は追記の監視以外の場合のみ、
+        // 隔離ファイルは不正な行を除外する場合のみ指定できる
+        if ((options.overloadCount == OVERLOAD_DISABLED) != (options.overloadMillis < 0)
+                || (options.detectors != null && options.detectors.contains(DetectorType.OVERLOAD) != options.isOverload())
+                || (options.follow && options.getDetectors().contains(DetectorType.LATENCY))
+                || (options.follow && options.rollupDirectory != null)
+                || (options.isTimeRange() && (options.follow || options.checkpointPath != null))
+                || options.fromEpochSecond >= options.toEpochSecond
+                || (!options.isTimeRange() && options.indexDirectory != null)
+                || (options.mmap && (options.follow || options.checkpointPath != null))
+                || (options.follow && options.checkpointPath != null)
+                || (options.externalSort && (options.mmap || options.follow || options.checkpointPath != null))
+                || (!options.externalSort && (options.sortMemoryMegabytes >= 0 || options.sortTempDirectory != null))
+                || (options.parallel && options.isStream())
+                || (options.sort && options.follow)
+                || (!options.lenient && options.quarantinePath != null)) {
+            throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+        }
+
+        return options;
+    }
+
+    /**
+     * yyyyMMddHHmmss 形式の日時をエポック秒に変換します。
+     *
+     * @param text yyyyMMddHHmmss 形式の日時
+     * @return エポック秒
+     */
+    static long parseDate(final String text) {
+
+        if (text.length() != DATE_PATTERN.length() || !text.chars().allMatch(Character::isDigit)) {
+            throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+        }
+
+        // 暦として存在しない日時は、変換して戻した値が一致しない
+        final long epochSecond = LogTimestamp.toEpochSecond(Long.parseLong(text));
+        if (!LogTimestamp.format(epochSecond).equals(text)) {
+            throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+        }
+
+        return epochSecond;
+    }
+
+    private static int parsePositiveInt(final String value) {
+
+        final int parsed = parseInt(value);
+        if (parsed == 0) {
+            throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+        }
+
+        return parsed;
+    }
+
+    private static int parseInt(final String value) {
+
+        if (value.isEmpty() || value.length() > 9 || !value.chars().allMatch(Character::isDigit)) {
+            throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+        }
+
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * @return オプションを除いた位置引数
+     */
+    public String[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * @return ストリーミングモードで解析する場合はtrue
+     */
+    public boolean isStream() {
+        return stream || mmap || follow || isOverload() || checkpointPath != null || detectors != null || externalSort
+                || rollupDirectory != null || isTimeRange() || offHeap;
+    }
+
+    /**
+     * @return メモリマップしたファイルを並列に解析する場合はtrue
+     */
+    public boolean isMmap() {
+        return mmap;
+    }
+
+    /**
+     * @return 追記され続けるファイルを監視し、検出した時点で出力する場合はtrue
+     */
+    public boolean isFollow() {
+        return follow;
+    }
+
+    /**
+     * @return サーバー・サブネットごとの計算を並列に行う場合はtrue
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @return サーバーIP・サブネットのアドレスの数値順に出力する場合はtrue
+     */
+    public boolean isSort() {
+        return sort;
+    }
+
+    /**
+     * @return 時系列順に並んでいないログを、一時ファイルを使用して並べ替えてから解析する場合はtrue
+     */
+    public boolean isExternalSort() {
+        return externalSort;
+    }
+
+    /**
+     * @return 並べ替えに使用するメモリ量(バイト)
+     */
+    public long getSortMemoryBytes() {
+        return (sortMemoryMegabytes < 0 ? DEFAULT_SORT_MEMORY_MEGABYTES : sortMemoryMegabytes) * 1024L * 1024L;
+    }
+
+    /**
+     * @return 並べ替えの一時ファイルの作成先。指定しない場合はシステムの一時ディレクトリ
+     */
+    public Path getSortTempDirectory() {
+        return sortTempDirectory != null ? sortTempDirectory : Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * @return 指定のフォーマットではない行を除外して解析を続ける場合はtrue
+     */
+    public boolean isLenient() {
+        return lenient;
+    }
+
+    /**
+     * @return 指定のフォーマットではない行を書き出す隔離ファイル。指定しない場合はnull
+     */
+    public Path getQuarantinePath() {
+        return quarantinePath;
+    }
+
+    /**
+     * @return 1分ごと・1時間ごとのロールアップを書き出すストアのディレクトリ。書き出さない場合はnull
+     */
+    public Path getRollupDirectory() {
+        return rollupDirectory;
+    }
+
+    /**
+     * @return 解析する期間を指定した場合はtrue
+     */
+    public boolean isTimeRange() {
+        return fromEpochSecond != Long.MIN_VALUE || toEpochSecond != Long.MAX_VALUE;
+    }
+
+    /**
+     * @return 解析する期間の開始(この日時以降の行を解析する)。指定しない場合は Long.MIN_VALUE
+     */
+    public long getFromEpochSecond() {
+        return fromEpochSecond;
+    }
+
+    /**
+     * @return 解析する期間の終了(この日時より前の行を解析する)。指定しない場合は Long.MAX_VALUE
+     */
+    public long getToEpochSecond() {
+        return toEpochSecond;
+    }
+
+    /**
+     * @return 索引ファイルの作成先。指定しない場合は一時ディレクトリ内の索引ディレクトリ
+     */
+    public Path getIndexDirectory() {
+        return indexDirectory != null ? indexDirectory : LogTimeIndex.defaultIndexDirectory();
+    }
+
+    /**
+     * @return サーバーごとの状態をヒープ外に保持する場合はtrue
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @return 過負荷期間を求める場合はtrue
+     */
+    public boolean isOverload() {
+        return overloadCount != OVERLOAD_DISABLED;
+    }
+
+    /**
+     * @return 過負荷判定の指定平均回数。指定しない場合は OVERLOAD_DISABLED
+     */
+    public int getOverloadCount() {
+        return overloadCount;
+    }
+
+    /**
+     * @return 過負荷とみなされるミリ秒数
+     */
+    public int getOverloadMillis() {
+        return overloadMillis;
+    }
+
+    /**
+     * @return 実行する検出器。指定しない場合は、故障サーバー・サブネットの検出器と、過負荷期間を求める場合は過負荷の検出器
+     */
+    public Set<DetectorType> getDetectors() {
+
+        if (detectors != null) {
+            return detectors;
+        }
+
+        final Set<DetectorType> defaultDetectors = EnumSet.of(DetectorType.TIMEOUT, DetectorType.SUBNET);
+        if (isOverload()) {
+            defaultDetectors.add(DetectorType.OVERLOAD);
+        }
+        return defaultDetectors;
+    }
+
+    /**
+     * @return チェックポイントファイル。指定しない場合はnull
+     */
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * @return 出力形式(FORMAT_TEXT、FORMAT_JSON_LINES、FORMAT_CSV)
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return 並列処理に使用するスレッド数
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return サブネットの故障とみなす故障サーバーの割合(パーセント)
+     */
+    public int getSubnetFaultPercent() {
+        return subnetFaultPercent;
+    }
+}
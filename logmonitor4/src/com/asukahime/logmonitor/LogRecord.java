@@ -0,0 +1,60 @@
+package com.asukahime.logmonitor;
+
+/**
+ * ログファイル1行分の解析結果を保持します。
+ * 行ごとに生成せず、LogLineParser で同じインスタンスに上書きして使い回します。
+ */
+public class LogRecord {
+
+    /** pingがタイムアウトした場合の応答時間 */
+    public static final int TIMEOUT = -1;
+
+    // 確認日時のエポック秒
+    long epochSecond;
+
+    int address;
+
+    int prefixLength;
+
+    int returnTime;
+
+    // 直前に解析した日付(yyyyMMdd を数値化した値)とその0時のエポック秒。
+    // 同じ日付の行が続く間は暦の検証とエポック日の計算を省略する
+    long cachedDay = -1;
+    long cachedDayEpochSecond;
+
+    /**
+     * @return 確認日時のエポック秒
+     */
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    /**
+     * @return IPv4アドレス(上位オクテットから順に詰めた値)
+     */
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * @return ネットワークプレフィックス長
+     */
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    /**
+     * @return pingの応答時間(ミリ秒)。タイムアウトした場合は TIMEOUT
+     */
+    public int getReturnTime() {
+        return returnTime;
+    }
+
+    /**
+     * @return pingがタイムアウトした場合はtrue
+     */
+    public boolean isTimeout() {
+        return returnTime == TIMEOUT;
+    }
+}
@@ -0,0 +1,80 @@
+package com.asukahime.logmonitor;
+
+import java.util.Arrays;
+
+/**
+ * 解析済みの行を項目ごとのプリミティブ配列に詰めて保持します。
+ * LogRecord を行ごとに生成せずに、複数行の解析結果をスレッド間で受け渡すために使用します。
+ */
+public class LogRecordBuffer {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] epochSeconds;
+    private int[] addresses;
+    private byte[] prefixLengths;
+    private int[] returnTimes;
+    private int size = 0;
+
+    public LogRecordBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LogRecordBuffer(final int initialCapacity) {
+        final int capacity = Math.max(initialCapacity, 1);
+        epochSeconds = new long[capacity];
+        addresses = new int[capacity];
+        prefixLengths = new byte[capacity];
+        returnTimes = new int[capacity];
+    }
+
+    /**
+     * 1行分の解析結果を末尾に追加します。
+     *
+     * @param record 解析済みの行
+     */
+    public void add(final LogRecord record) {
+
+        if (size == epochSeconds.length) {
+            final int capacity = size * 2;
+            epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            prefixLengths = Arrays.copyOf(prefixLengths, capacity);
+            returnTimes = Arrays.copyOf(returnTimes, capacity);
+        }
+
+        epochSeconds[size] = record.epochSecond;
+        addresses[size] = record.address;
+        prefixLengths[size] = (byte) record.prefixLength;
+        returnTimes[size] = record.returnTime;
+        size++;
+    }
+
+    /**
+     * 指定位置の行を record に展開します。
+     *
+     * @param index 位置
+     * @param record 展開先
+     */
+    public void get(final int index, final LogRecord record) {
+
+        record.epochSecond = epochSeconds[index];
+        record.address = addresses[index];
+        record.prefixLength = prefixLengths[index];
+        record.returnTime = returnTimes[index];
+    }
+
+    /**
+     * 保持している行をすべて削除します。確保済みの領域は使い回します。
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return 保持している行数
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,310 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * ログファイルの確認日時とファイル上の位置の対応(疎な索引)を、索引ディレクトリの索引ファイルに保持します。
+ * 指定した期間の行を解析する場合に、期間を含む範囲のみを読み込むために使用します。
+ *
+ * 索引ファイルはログファイルのディレクトリには作成しません(ディレクトリ指定の解析対象に含まれないよう、また書き込み権限を要しないようにするため)。
+ * 索引ファイル名はログファイル名とログファイルの絶対パスの CRC32 から求め、異なるディレクトリの同名のファイルを区別します。
+ *
+ * 索引には、INDEX_INTERVAL バイトごとに最初の指定のフォーマットの行の確認日時・位置・それまでの行数を記録します。
+ * 索引ファイルには索引を作成したバイト数とファイル先頭の一部のCRC32を保持し、追記された場合は追記された部分のみを索引に加えます。
+ * ファイルが索引を作成したバイト数より小さい場合や先頭が一致しない場合は、ローテーションされた新しいファイルとみなし、索引を作成し直します。
+ * 書きかけの行は索引に含めません。
+ */
+public class LogTimeIndex {
+
+    // 索引ファイルの識別子("LMTI")とバージョン
+    private static final int MAGIC = 0x4C4D5449;
+    private static final int VERSION = 1;
+
+    // 索引ファイルの拡張子
+    static final String INDEX_SUFFIX = ".tsidx";
+
+    // 索引ディレクトリを指定しない場合の、一時ディレクトリ内の索引ディレクトリ名
+    private static final String DEFAULT_INDEX_DIRECTORY_NAME = "logmonitor-index";
+
+    // 索引を記録する間隔(バイト数)
+    private static final int INDEX_INTERVAL = 256 * 1024;
+
+    // ファイルの同一性の確認に使用する先頭のバイト数
+    private static final int FINGERPRINT_LENGTH = 4096;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    // 索引を作成したバイト数と行数
+    private long indexedBytes = 0;
+    private long lineCount = 0;
+    private boolean skipLineFeed = false;
+
+    private int fingerprintLength = 0;
+    private long fingerprint = 0;
+
+    // 指定のフォーマットの行がすべて時系列順に並んでいる場合はtrue
+    private boolean chronological = true;
+
+    private long lastEpochSecond = Long.MIN_VALUE;
+
+    // 索引(確認日時、行の位置、その行より前の行数)
+    private long[] epochSeconds = new long[DEFAULT_CAPACITY];
+    private long[] offsets = new long[DEFAULT_CAPACITY];
+    private long[] lineNumbers = new long[DEFAULT_CAPACITY];
+    private int size = 0;
+
+    private LogTimeIndex() {}
+
+    /**
+     * @return 索引ディレクトリを指定しない場合の索引ディレクトリ
+     */
+    public static Path defaultIndexDirectory() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_INDEX_DIRECTORY_NAME);
+    }
+
+    /**
+     * @param indexDirectory 索引ディレクトリ
+     * @param logPath ログファイル
+     * @return 索引ファイル
+     */
+    public static Path indexPath(final Path indexDirectory, final Path logPath) {
+
+        final CRC32 crc = new CRC32();
+        crc.update(logPath.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        return indexDirectory.resolve(logPath.getFileName() + "." + Long.toHexString(crc.getValue()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * 索引ファイルを読み込み、前回から追記された部分を索引に加えて保存します。
+     * 索引ファイルが存在しない場合は、ファイル全体の索引を作成します。
+     *
+     * @param indexDirectory 索引ディレクトリ。存在しない場合は作成します。
+     * @param logPath ログファイル
+     * @return 最新の索引
+     */
+    public static LogTimeIndex update(final Path indexDirectory, final Path logPath) throws IOException {
+
+        Files.createDirectories(indexDirectory);
+        final Path indexPath = indexPath(indexDirectory, logPath);
+        LogTimeIndex index = Files.exists(indexPath) ? load(indexPath) : new LogTimeIndex();
+        if (Files.size(logPath) < index.indexedBytes || LogFiles.calcFingerprint(logPath, index.fingerprintLength) != index.fingerprint) {
+            index = new LogTimeIndex();
+        }
+
+        final long previousIndexedBytes = index.indexedBytes;
+        index.append(logPath);
+        if (index.indexedBytes != previousIndexedBytes || !Files.exists(indexPath)) {
+            index.save(indexPath);
+        }
+
+        return index;
+    }
+
+    /**
+     * 確認日時が from 以上 to 未満の行を含む範囲のみを読み込み、各行を parser に渡します。
+     * 範囲の前後の期間外の行も渡すため、期間外の行は受け取り先で除外してください。
+     *
+     * @param logPath ログファイル
+     * @param from 期間の開始(エポック秒)
+     * @param to 期間の終了(エポック秒)
+     * @param parser 行の受け取り先。範囲の先頭までの行数から行番号を数えます。
+     */
+    public void read(final Path logPath, final long from, final long to, final LogLineValidator.LineParser parser) throws IOException {
+
+        if (!chronological) {
+            throw new LogMonitoringException(MESSAGE_NOT_CHRONOLOGICAL);
+        }
+
+        // 期間の開始より前の最後の索引から読み込む(同じ確認日時の行が索引の前にもある場合があるため)
+        long startOffset = 0;
+        long startLineNumber = 0;
+        long endOffset = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (epochSeconds[i] < from) {
+                startOffset = offsets[i];
+                startLineNumber = lineNumbers[i];
+            } else if (epochSeconds[i] >= to) {
+                // 以降の行はすべて期間の終了以降
+                endOffset = offsets[i];
+                break;
+            }
+        }
+
+        try (final FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            channel.position(startOffset);
+            final InputStream inputStream = new RangeInputStream(Channels.newInputStream(channel), endOffset - startOffset);
+            parser.setLineNumber(startLineNumber);
+            new LogLineReader(inputStream).readLines(parser);
+        }
+    }
+
+    /**
+     * @return 索引の件数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 索引を作成したバイト数以降の、改行文字で終わっている行を索引に加えます。
+     */
+    private void append(final Path logPath) throws IOException {
+
+        final long baseOffset = indexedBytes;
+        final LogRecord record = new LogRecord();
+        try (final InputStream inputStream = Files.newInputStream(logPath)) {
+            LogFiles.skipFully(inputStream, baseOffset);
+            final LogLineReader reader = new LogLineReader(inputStream, skipLineFeed);
+            reader.readAvailable((buf, from, to) -> {
+                lineCount++;
+                if (!LogLineParser.parse(buf, from, to, record)) {
+                    return;
+                }
+
+                if (record.getEpochSecond() < lastEpochSecond) {
+                    chronological = false;
+                }
+                lastEpochSecond = Math.max(lastEpochSecond, record.getEpochSecond());
+
+                final long offset = baseOffset + reader.getLineStartOffset();
+                if (size == 0 || offset >= offsets[size - 1] + INDEX_INTERVAL) {
+                    add(record.getEpochSecond(), offset, lineCount - 1);
+                }
+            });
+            indexedBytes += reader.getConsumedBytes();
+            skipLineFeed = reader.isSkipLineFeed();
+        }
+
+        fingerprintLength = (int) Math.min(indexedBytes, FINGERPRINT_LENGTH);
+        fingerprint = LogFiles.calcFingerprint(logPath, fingerprintLength);
+    }
+
+    private void add(final long epochSecond, final long offset, final long lineNumber) {
+
+        if (size == offsets.length) {
+            epochSeconds = Arrays.copyOf(epochSeconds, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lineNumbers = Arrays.copyOf(lineNumbers, size * 2);
+        }
+        epochSeconds[size] = epochSecond;
+        offsets[size] = offset;
+        lineNumbers[size] = lineNumber;
+        size++;
+    }
+
+    private static LogTimeIndex load(final Path indexPath) throws IOException {
+
+        final LogTimeIndex index = new LogTimeIndex();
+        try (final DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new LogMonitoringException(MESSAGE_INVALID_INDEX);
+            }
+            index.indexedBytes = input.readLong();
+            index.lineCount = input.readLong();
+            index.skipLineFeed = input.readBoolean();
+            index.fingerprintLength = input.readInt();
+            index.fingerprint = input.readLong();
+            index.chronological = input.readBoolean();
+            index.lastEpochSecond = input.readLong();
+            final int size = input.readInt();
+            if (size < 0) {
+                throw new LogMonitoringException(MESSAGE_INVALID_INDEX);
+            }
+            for (int i = 0; i < size; i++) {
+                index.add(input.readLong(), input.readLong(), input.readLong());
+            }
+        } catch (EOFException e) {
+            throw new LogMonitoringException(MESSAGE_INVALID_INDEX);
+        }
+        return index;
+    }
+
+    /**
+     * 書き込み途中で中断しても前回の索引が壊れないよう、一時ファイルに書き込んでから置き換えます。
+     */
+    private void save(final Path indexPath) throws IOException {
+
+        final Path absolutePath = indexPath.toAbsolutePath();
+        final Path tempPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        try {
+            try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(indexedBytes);
+                output.writeLong(lineCount);
+                output.writeBoolean(skipLineFeed);
+                output.writeInt(fingerprintLength);
+                output.writeLong(fingerprint);
+                output.writeBoolean(chronological);
+                output.writeLong(lastEpochSecond);
+                output.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    output.writeLong(epochSeconds[i]);
+                    output.writeLong(offsets[i]);
+                    output.writeLong(lineNumbers[i]);
+                }
+            }
+            Files.move(tempPath, absolutePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * 指定したバイト数までを読み込むストリームです。
+     */
+    private static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(final InputStream in, final long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.asukahime.logmonitor;
+
+/**
+ * yyyyMMddHHmmss 形式の日時とエポック秒(1970-01-01T00:00:00 からの秒数)を相互に変換します。
+ *
+ * LocalDateTime と同じくタイムゾーンを考慮しない暦計算で、DateTimeFormatter やオブジェクトの生成を伴いません。
+ */
+public final class LogTimestamp {
+
+    public static final int SECONDS_PER_DAY = 86400;
+
+    // 0000-03-01 から 1970-01-01 までの日数
+    private static final long DAYS_0000_03_01_TO_1970 = 719468;
+
+    private static final int DAYS_PER_ERA = 146097;
+
+    private LogTimestamp() {}
+
+    /**
+     * 日付をエポック日(1970-01-01 からの日数)に変換します。
+     *
+     * @param year 年
+     * @param month 月(1-12)
+     * @param day 日(1-31)
+     * @return エポック日
+     */
+    public static long toEpochDay(final int year, final int month, final int day) {
+
+        // 3月始まりの年として計算し、閏日を年末に置く
+        final int shiftedYear = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(shiftedYear, 400);
+        final int yearOfEra = shiftedYear - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return (long) era * DAYS_PER_ERA + dayOfEra - DAYS_0000_03_01_TO_1970;
+    }
+
+    /**
+     * yyyyMMddHHmmss を数値化した値をエポック秒に変換します。
+     *
+     * @param date yyyyMMddHHmmss を数値化した値
+     * @return エポック秒
+     */
+    public static long toEpochSecond(final long date) {
+
+        final long epochDay = toEpochDay(
+                (int) (date / 10000000000L),
+                (int) (date / 100000000 % 100),
+                (int) (date / 1000000 % 100));
+        final int timeOfDay = (int) (date % 1000000);
+
+        return epochDay * SECONDS_PER_DAY + secondOfDay(timeOfDay);
+    }
+
+    /**
+     * HHmmss を数値化した値をその日の0時からの秒数に変換します。
+     *
+     * @param timeOfDay HHmmss を数値化した値
+     * @return 0時からの秒数
+     */
+    public static int secondOfDay(final int timeOfDay) {
+        return timeOfDay / 10000 * 3600 + timeOfDay / 100 % 100 * 60 + timeOfDay % 100;
+    }
+
+    /**
+     * エポック秒を yyyyMMddHHmmss 形式の文字列に変換します。
+     *
+     * @param epochSecond エポック秒
+     * @return yyyyMMddHHmmss 形式の文字列
+     */
+    public static String format(final long epochSecond) {
+
+        final char[] chars = new char[14];
+        write(epochSecond, chars);
+        return new String(chars);
+    }
+
+    /**
+     * エポック秒を yyyyMMddHHmmss 形式で書き込みます。
+     *
+     * @param epochSecond エポック秒
+     * @param dest 書き込み先(14文字以上)
+     */
+    public static void write(final long epochSecond, final char[] dest) {
+
+        final long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        final int secondOfDay = Math.floorMod(epochSecond, SECONDS_PER_DAY);
+
+        // toEpochDay の逆変換
+        final long shiftedDay = epochDay + DAYS_0000_03_01_TO_1970;
+        final long era = Math.floorDiv(shiftedDay, DAYS_PER_ERA);
+        final int dayOfEra = (int) (shiftedDay - era * DAYS_PER_ERA);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        final int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        writeDigits(year, 4, dest, 0);
+        writeDigits(month, 2, dest, 4);
+        writeDigits(day, 2, dest, 6);
+        writeDigits(secondOfDay / 3600, 2, dest, 8);
+        writeDigits(secondOfDay / 60 % 60, 2, dest, 10);
+        writeDigits(secondOfDay % 60, 2, dest, 12);
+    }
+
+    private static void writeDigits(final int value, final int digits, final char[] dest, final int offset) {
+
+        int remaining = value;
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            dest[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.asukahime.logmonitor;
+
+import java.util.Arrays;
+
+/**
+ * long をキー、int を値とするオープンアドレス法のハッシュマップです。
+ * キー・値ともにボクシングせず、エントリオブジェクトも生成しません。
+ *
+ * LongObjectMap と同様に、キーと値は追加順に配列へ詰めて保持するため、インデックスを指定して追加順に参照できます。削除はできません。
+ */
+public class LongIntMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // 追加順のキーと値
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    // ハッシュ位置ごとの (キーのインデックス + 1)。0は空き
+    private int[] table;
+    private int mask;
+
+    public LongIntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongIntMap(final int expectedSize) {
+        final int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+        keys = new long[capacity];
+        values = new int[capacity];
+        table = new int[tableSizeFor(capacity)];
+        mask = table.length - 1;
+    }
+
+    /**
+     * @param key キー
+     * @param defaultValue キーが存在しない場合の値
+     * @return キーに対応する値。存在しない場合は defaultValue
+     */
+    public int get(final long key, final int defaultValue) {
+
+        final int index = indexOf(key);
+        return index < 0 ? defaultValue : values[index];
+    }
+
+    /**
+     * キーに値を設定します。キーが存在しない場合は追加します。
+     *
+     * @param key キー
+     * @param value 値
+     */
+    public void put(final long key, final int value) {
+
+        final int slot = findSlot(key);
+        if (table[slot] != 0) {
+            values[table[slot] - 1] = value;
+            return;
+        }
+
+        add(slot, key, value);
+    }
+
+    /**
+     * キーが存在しない場合のみ値を追加します。
+     *
+     * @param key キー
+     * @param value 値
+     * @return 追加した場合はtrue
+     */
+    public boolean putIfAbsent(final long key, final int value) {
+
+        final int slot = findSlot(key);
+        if (table[slot] != 0) {
+            return false;
+        }
+
+        add(slot, key, value);
+        return true;
+    }
+
+    /**
+     * キーの追加順のインデックスを返却します。存在しない場合は値を0として追加します。
+     * キーに連番を割り当てる場合に、値を参照せずに使用します。
+     *
+     * @param key キー
+     * @return 追加順のインデックス
+     */
+    public int indexOfOrAdd(final long key) {
+
+        final int slot = findSlot(key);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+
+        add(slot, key, 0);
+        return size - 1;
+    }
+
+    /**
+     * @return 保持しているキーの数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 追加順のインデックス
+     * @return キー
+     */
+    public long keyAt(final int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index 追加順のインデックス
+     * @return 値
+     */
+    public int valueAt(final int index) {
+        return values[index];
+    }
+
+    private int indexOf(final long key) {
+
+        final int entry = table[findSlot(key)];
+        return entry - 1;
+    }
+
+    /**
+     * キーが存在する場合はそのハッシュ位置を、存在しない場合は追加先の空きのハッシュ位置を返却します。
+     */
+    private int findSlot(final long key) {
+
+        int slot = slot(key);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (keys[entry - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void add(final int slot, final long key, final int value) {
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        table[slot] = ++size;
+
+        if (size > table.length / 2) {
+            rehash(table.length * 2);
+        }
+    }
+
+    private int slot(final long key) {
+
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(final int tableSize) {
+
+        table = new int[tableSize];
+        mask = tableSize - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = slot(keys[i]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    private static int tableSizeFor(final int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) * 2;
+    }
+}
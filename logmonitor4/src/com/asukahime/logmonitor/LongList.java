@@ -0,0 +1,77 @@
+package com.asukahime.logmonitor;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * long の値をプリミティブ配列に保持する、可変長のリストです。
+ * add(long)・getLong で追加・参照する場合は値をボクシングしません。
+ *
+ * 検出結果を List&lt;Long&gt; として受け渡すため List を実装していますが、get など List のメソッドでの参照は値をボクシングします。
+ */
+public class LongList extends AbstractList<Long> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private long[] values;
+    private int size = 0;
+
+    public LongList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongList(final int capacity) {
+        values = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * 末尾に値を追加します。
+     *
+     * @param value 値
+     */
+    public void add(final long value) {
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+        modCount++;
+    }
+
+    @Override
+    public boolean add(final Long value) {
+
+        add(value.longValue());
+        return true;
+    }
+
+    /**
+     * @param index インデックス
+     * @return 値
+     */
+    public long getLong(final int index) {
+
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return values[index];
+    }
+
+    @Override
+    public Long get(final int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+
+        size = 0;
+        modCount++;
+    }
+}
@@ -0,0 +1,143 @@
+package com.asukahime.logmonitor;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * long をキーとするオープンアドレス法のハッシュマップです。
+ * キーをボクシングせず、エントリオブジェクトも生成しません。
+ *
+ * キーと値は追加順に配列へ詰めて保持するため、インデックスを指定して追加順に参照できます。削除はできません。
+ */
+public class LongObjectMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // 追加順のキーと値
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    // ハッシュ位置ごとの (キーのインデックス + 1)。0は空き
+    private int[] table;
+    private int mask;
+
+    public LongObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectMap(final int expectedSize) {
+        final int capacity = Math.max(expectedSize, DEFAULT_CAPACITY);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        table = new int[tableSizeFor(capacity)];
+        mask = table.length - 1;
+    }
+
+    /**
+     * @param key キー
+     * @return キーに対応する値。存在しない場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+
+        final int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    /**
+     * キーに対応する値を返却します。存在しない場合は mappingFunction で生成して追加します。
+     *
+     * @param key キー
+     * @param mappingFunction 値の生成関数
+     * @return キーに対応する値
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(final long key, final LongFunction<V> mappingFunction) {
+
+        int slot = slot(key);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (keys[entry - 1] == key) {
+                return (V) values[entry - 1];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        final V value = mappingFunction.apply(key);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        table[slot] = ++size;
+
+        if (size > table.length / 2) {
+            rehash(table.length * 2);
+        }
+
+        return value;
+    }
+
+    /**
+     * @return 保持しているキーの数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index 追加順のインデックス
+     * @return キー
+     */
+    public long keyAt(final int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index 追加順のインデックス
+     * @return 値
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(final int index) {
+        return (V) values[index];
+    }
+
+    private int indexOf(final long key) {
+
+        int slot = slot(key);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (keys[entry - 1] == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private int slot(final long key) {
+
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(final int tableSize) {
+
+        table = new int[tableSize];
+        mask = tableSize - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = slot(keys[i]);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    private static int tableSizeFor(final int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) * 2;
+    }
+}
@@ -1,13 +1,18 @@
 package com.asukahime.logmonitor;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -22,7 +27,7 @@ public class Main {
 
     private static final Pattern pattern = Pattern.compile(LINE_REGEXP);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_PATTERN);
-    private static final Predicate<String> predicate = (arg) -> {
+    static final Predicate<String> predicate = (arg) -> {
         Matcher matcher = pattern.matcher(arg);
         return matcher.matches();
     };
@@ -37,7 +42,20 @@ public class Main {
             case 8: subnet = ipArray[0] + ".***.***.***";break;
             case 16: subnet = ipArray[0] + "." + ipArray[1] + ".***.***";break;
             case 24: subnet = ipArray[0] + "." + ipArray[1] + "." + ipArray[2] + ".***";break;
-            default : subnet = "";
+            default : {
+                // LINE_REGEXP が許容する範囲外のオクテット・プレフィックス長はアドレスに変換できないため、空のサブネットとする
+                if (prefixLength > ServerAddress.MAX_PREFIX_LENGTH
+                        || Arrays.stream(ipArray).anyMatch(octet -> Integer.parseInt(octet) > ServerAddress.MAX_OCTET)) {
+                    subnet = "";
+                    break;
+                }
+                // 8,16,24以外はビットマスクでホスト部を0にしたネットワークアドレスとする
+                int address = 0;
+                for (final String octet : ipArray) {
+                    address = address << 8 | Integer.parseInt(octet);
+                }
+                subnet = ServerAddress.formatSubnet(ServerAddress.subnetKey(address, prefixLength));
+            }
         }
 
         return subnet;
@@ -57,33 +75,202 @@ public class Main {
     public void doProcess(String[] args) throws LogMonitoringException{
 
         try {
-            checkArgs(args);
-            final Path path = Paths.get(args[0]);
-
-            final List<String> lineList = Files.lines(path).collect(Collectors.toList());
-            checkFileFormat(lineList);
-
-            createTimeoutServerIPAndReturnTimePairList(lineList, Integer.parseInt(args[1]))
-                    .forEach(pair -> pair.getRight().forEach(seconds ->
-                        System.out.println("IP : "
-                                + pair.getLeft()
-                                + ", SECONDS_TO_RETURN : "
-                                + seconds)
-                    ));
-            createTimeoutSubnetAndReturnTimePairList(lineList, Integer.parseInt(args[1]))
-                    .forEach(pair -> pair.getRight().forEach(periods ->
-                        System.out.println("SUBNET_IP : "
-                                + pair.getLeft()
-                                + ", FAULT_PERIOD : "
-                                + periods)
-                    ));
-        } catch (IOException e) {
+            final LogMonitorOptions options = LogMonitorOptions.parse(args);
+            final String[] arguments = options.getArguments();
+            checkArgs(arguments);
+            // 複数のファイルはそれぞれ時系列順に並んでいるものとして、マージしながら1行ずつ解析する
+            // 1行ずつ解析するため、全行を読み込む場合のグループごとの並列計算とは併用できない
+            final List<Path> pathList = LogFiles.resolve(arguments[0]);
+            final boolean multipleFiles = pathList.size() > 1;
+            if (multipleFiles && (options.isFollow() || options.isMmap() || options.getCheckpointPath() != null || options.isParallel())) {
+                throw new LogMonitoringException(MESSAGE_MULTIPLE_FILES_NOT_SUPPORTED);
+            }
+            final Path path = pathList.get(0);
+            // 圧縮されたファイルはファイル上の位置を扱えないため、展開しながら先頭から読み込む
+            final boolean compressed = !multipleFiles && LogFiles.isCompressed(path);
+            if (compressed && (options.isFollow() || options.getCheckpointPath() != null)) {
+                throw new LogMonitoringException(MESSAGE_COMPRESSED_FILE_NOT_SUPPORTED);
+            }
+            // 列指向形式のファイルは変換時に検証・解析済みのため、メモリマップして行の検証を行わずに読み込む
+            final boolean columnar = !multipleFiles && !compressed && LogFiles.isColumnar(path);
+            if (columnar && (options.isFollow() || options.getCheckpointPath() != null || options.isExternalSort() || options.isParallel())) {
+                throw new LogMonitoringException(MESSAGE_COLUMNAR_FILE_NOT_SUPPORTED);
+            }
+            final int notAcceptableCount = Integer.parseInt(arguments[1]);
+
+            // 結果はバッファにまとめて書き込み、エラーメッセージより前に書き出す
+            final ResultSink sink = ResultSink.create(options.getFormat(), System.out, options.getDetectors().contains(DetectorType.LATENCY));
+            // 行の検証は解析と同時に行い、指定された場合は不正な行を除外して解析を続ける
+            final LogLineValidator validator = options.isLenient() ? LogLineValidator.lenient(options.getQuarantinePath()) : LogLineValidator.strict();
+            try (validator) {
+                if (options.isFollow()) {
+                    // 追記された行を解析し、故障・過負荷を検出した時点で出力する
+                    final StreamingLogMonitor monitor = new StreamingLogMonitor(
+                            options.getDetectors(),
+                            notAcceptableCount,
+                            options.getSubnetFaultPercent(),
+                            options.getOverloadCount(),
+                            options.getOverloadMillis(),
+                            sink,
+                            options.isOffHeap());
+                    new LogFollower(path, FOLLOW_POLL_MILLIS).follow(validator.parser(path, monitor::accept), () -> {
+                        monitor.flushPending();
+                        sink.flush();
+                        flushQuarantine(validator);
+                    });
+                    return;
+                }
+
+                if (options.isStream() || multipleFiles || columnar) {
+                    // 1回の読み込み・解析で、指定されたすべての検出器を実行する
+                    final StreamingLogMonitor monitor = new StreamingLogMonitor(
+                            options.getDetectors(),
+                            notAcceptableCount,
+                            options.getSubnetFaultPercent(),
+                            options.getOverloadCount(),
+                            options.getOverloadMillis(),
+                            null,
+                            options.isOffHeap());
+                    // 指定された場合は、解析と同時に1分ごと・1時間ごとのロールアップを書き出す
+                    final RollupWriter rollup = options.getRollupDirectory() != null ? new RollupWriter(options.getRollupDirectory()) : null;
+                    final Consumer<LogRecord> monitorHandler = monitor::accept;
+                    final Consumer<LogRecord> handler = filterTimeRange(rollup != null ? monitorHandler.andThen(rollup) : monitorHandler, options);
+                    LogCheckpoint checkpoint = null;
+                    try {
+                        if (options.getCheckpointPath() != null) {
+                            // 前回の状態を引き継ぎ、前回から追記された行のみを解析する
+                            checkpoint = LogCheckpoint.load(options.getCheckpointPath(), monitor);
+                            checkpoint.read(path, validator.parser(path, handler));
+                        } else if (columnar) {
+                            new ColumnarLogReader().read(path, handler);
+                        } else if (options.isExternalSort()) {
+                            // 時系列順に並べ替えながら解析する
+                            new ExternalLogSorter(options.getSortMemoryBytes(), options.getSortTempDirectory())
+                                    .sort(pathList, validator, handler);
+                        } else if (options.isTimeRange() && !multipleFiles && !compressed) {
+                            // 索引から期間を含む範囲を求め、その範囲のみを読み込む
+                            LogTimeIndex.update(options.getIndexDirectory(), path)
+                                    .read(path, options.getFromEpochSecond(), options.getToEpochSecond(), validator.parser(path, handler));
+                        } else if (multipleFiles) {
+                            new LogFileMerger(pathList, validator).read(handler);
+                        } else if (options.isMmap() && !compressed) {
+                            new MappedLogReader(options.getThreadCount()).read(path, validator, handler);
+                        } else {
+                            try (final InputStream inputStream = LogFiles.open(path)) {
+                                new LogLineReader(inputStream).readLines(validator.parser(path, handler));
+                            }
+                        }
+                        if (rollup != null) {
+                            rollup.commit();
+                        }
+                    } finally {
+                        if (rollup != null) {
+                            rollup.close();
+                        }
+                    }
+
+                    writeRecoveryServer(sink, order(monitor.createRecoveryServerIPAndReturnTimePairList(), options));
+                    writeTimeoutServer(sink, order(monitor.createTimeoutServerIPAndReturnTimePairList(), options));
+                    writeOverloadServer(sink, order(monitor.createOverloadServerIPAndPeriodPairList(), options));
+                    writeTimeoutSubnet(sink, order(monitor.createTimeoutSubnetAndReturnTimePairList(), options));
+                    writeLatencyServer(sink, order(monitor.createLatencyServerIPAndHistogramPairList(), options));
+
+                    if (checkpoint != null) {
+                        checkpoint.save(options.getCheckpointPath(), monitor);
+                    }
+                    return;
+                }
+
+                final List<String> lineList = readValidLines(path, validator);
+
+                // グループごとの計算は互いに独立しているため、指定された場合は並列に行う
+                final ForkJoinPool pool = options.isParallel() ? new ForkJoinPool(options.getThreadCount()) : null;
+                try {
+                    writeTimeoutServer(sink, order(createTimeoutServerIPAndReturnTimePairList(lineList, notAcceptableCount, pool), options));
+                    writeTimeoutSubnet(sink, order(createTimeoutSubnetAndReturnTimePairList(lineList, notAcceptableCount, options.getSubnetFaultPercent(), pool), options));
+                } finally {
+                    if (pool != null) {
+                        pool.shutdown();
+                    }
+                }
+            } finally {
+                sink.flush();
+                if (validator.getRejectedCount() > 0) {
+                    System.err.println(String.format(MESSAGE_LINES_REJECTED, validator.getRejectedCount()));
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
             System.out.println(MESSAGE_FILE_CAN_NOT_READ);
         } catch (LogMonitoringException e) {
             System.out.println(e.getMessage());
         }
     }
 
+    /**
+     * 解析する期間の指定がある場合は、期間内の行のみを handler に渡す受け取り先を返却します。
+     * 指定がない場合は handler をそのまま返却します。
+     */
+    private static Consumer<LogRecord> filterTimeRange(final Consumer<LogRecord> handler, final LogMonitorOptions options) {
+
+        if (!options.isTimeRange()) {
+            return handler;
+        }
+
+        final long from = options.getFromEpochSecond();
+        final long to = options.getToEpochSecond();
+        return record -> {
+            if (record.getEpochSecond() >= from && record.getEpochSecond() < to) {
+                handler.accept(record);
+            }
+        };
+    }
+
+    /**
+     * 出力順の指定がある場合は、サーバーIP・サブネットのアドレスの数値順に並べ替えます。
+     * 指定がない場合は集計した順のまま返却します。
+     */
+    private <T> List<Pair<String, T>> order(final List<Pair<String, T>> pairList, final LogMonitorOptions options) {
+
+        if (options.isSort()) {
+            pairList.sort(Comparator.comparing(Pair::getLeft, ServerAddress.ADDRESS_ORDER));
+        }
+
+        return pairList;
+    }
+
+    private void writeRecoveryServer(final ResultSink sink, final List<Pair<String, List<Long>>> pairList) {
+
+        pairList.forEach(pair -> pair.getRight().forEach(seconds ->
+            sink.writeSeconds(ResultType.RECOVERY_SECONDS, pair.getLeft(), seconds)
+        ));
+    }
+
+    private void writeTimeoutServer(final ResultSink sink, final List<Pair<String, List<Long>>> pairList) {
+
+        pairList.forEach(pair -> pair.getRight().forEach(seconds ->
+            sink.writeSeconds(ResultType.SECONDS_TO_RETURN, pair.getLeft(), seconds)
+        ));
+    }
+
+    private void writeOverloadServer(final ResultSink sink, final List<Pair<String, List<String>>> pairList) {
+
+        pairList.forEach(pair -> pair.getRight().forEach(period ->
+            sink.writePeriod(ResultType.OVERLOAD_PERIOD, pair.getLeft(), period)
+        ));
+    }
+
+    private void writeTimeoutSubnet(final ResultSink sink, final List<Pair<String, List<String>>> pairList) {
+
+        pairList.forEach(pair -> pair.getRight().forEach(periods ->
+            sink.writePeriod(ResultType.SUBNET_FAULT_PERIOD, pair.getLeft(), periods)
+        ));
+    }
+
+    private void writeLatencyServer(final ResultSink sink, final List<Pair<String, LatencyHistogram>> pairList) {
+
+        pairList.forEach(pair -> sink.writeLatency(pair.getLeft(), pair.getRight()));
+    }
+
     private void checkArgs(final String[] args) {
         if (args.length != VALID_NUMBER_OF_ARGS) {
             throw new LogMonitoringException(MESSAGE_INVALID_ARGS);
@@ -95,14 +282,40 @@ public class Main {
     }
 
     /**
-     * ファイルの全行が指定のフォーマットであることを確認します。
+     * ファイルの全行を読み込みながら、各行が指定のフォーマットであることを確認します。
+     * 指定のフォーマットではない行は validator に渡し、返却するリストには含めません。
      *
-     * @param lineList ファイルの各行を要素とするリスト
+     * @param path ログファイル
+     * @param validator 指定のフォーマットではない行の扱い
+     * @return ファイルの指定のフォーマットの各行を要素とするリスト
      */
-    private void checkFileFormat(final List<String> lineList) {
+    private List<String> readValidLines(final Path path, final LogLineValidator validator) throws IOException {
+
+        final List<String> lineList = new ArrayList<>();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(LogFiles.open(path), StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (predicate.test(line)) {
+                    lineList.add(line);
+                } else {
+                    validator.reject(path, lineNumber, line);
+                }
+            }
+        }
+
+        return lineList;
+    }
+
+    /**
+     * 追記を監視する場合に、それまでに除外した行を隔離ファイルに書き出します。
+     */
+    private static void flushQuarantine(final LogLineValidator validator) {
 
-        if (!lineList.stream().allMatch(predicate)) {
-            throw new LogMonitoringException(MESSAGE_INVALID_FORMAT);
+        try {
+            validator.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
@@ -113,30 +326,65 @@ public class Main {
      * @param notAcceptableCount 故障とみなされるタイムアウト回数
      * @return left:サーバーIP,right:復帰までの秒数
      */
-    private List<Pair<String, List<Long>>> createTimeoutServerIPAndReturnTimePairList(final List<String> lineList, final int notAcceptableCount) {
+    List<Pair<String, List<Long>>> createTimeoutServerIPAndReturnTimePairList(
+            final List<String> lineList,
+            final int notAcceptableCount,
+            final ForkJoinPool pool) {
 
-        return lineList
+        final Map<String, List<String[]>> groupMap = lineList
                 .stream()
                 .map(line -> line.split(LINE_DELIMITER))
-                .collect(Collectors.groupingBy(line -> line[1]))
-                .entrySet()
-                .stream()
-                .map(entry -> new Pair<>(entry.getKey(), calcBetweenTimeout(entry.getValue(), notAcceptableCount)))
-                .filter(pair -> !pair.getRight().isEmpty())
-                .collect(Collectors.toList());
+                .collect(Collectors.groupingBy(line -> line[1]));
+
+        return calcEachGroup(groupMap, group -> calcBetweenTimeout(group, notAcceptableCount), pool);
     }
 
-    private List<Pair<String, List<String>>> createTimeoutSubnetAndReturnTimePairList(final List<String> lineList, final int notAcceptableCount) {
+    List<Pair<String, List<String>>> createTimeoutSubnetAndReturnTimePairList(
+            final List<String> lineList,
+            final int notAcceptableCount,
+            final int faultPercent,
+            final ForkJoinPool pool) {
 
-        return lineList
+        final Map<String, List<String[]>> groupMap = lineList
             .stream()
             .map(line -> line.split(LINE_DELIMITER))
-            .collect(Collectors.groupingBy(extractSubnet))
-            .entrySet()
-            .stream()
-            .map(entry -> new Pair<>(entry.getKey(), calcBetweenTimeoutBySubnet(entry.getValue(), notAcceptableCount)))
-            .filter(pair -> !pair.getRight().isEmpty())
-            .collect(Collectors.toList());
+            .collect(Collectors.groupingBy(extractSubnet));
+
+        return calcEachGroup(groupMap, group -> calcBetweenTimeoutBySubnet(group, notAcceptableCount, faultPercent), pool);
+    }
+
+    /**
+     * グループごとに計算し、結果が空でないグループのキーと結果のPairのリストを返却します。
+     *
+     * pool を指定した場合は、グループを pool のワークスティーリングにより並列に計算します。
+     * グループ分けは逐次に行い、結果はグループの並び順のまま集めるため、並び順は逐次に計算した場合と同一です。
+     *
+     * @param groupMap キーごとの行のリスト
+     * @param calculator グループごとの計算
+     * @param pool 並列に計算する場合のスレッドプール。null の場合は逐次に計算する
+     * @return left:キー,right:計算結果
+     */
+    private <R> List<Pair<String, List<R>>> calcEachGroup(
+            final Map<String, List<String[]>> groupMap,
+            final Function<List<String[]>, List<R>> calculator,
+            final ForkJoinPool pool) {
+
+        if (pool == null) {
+            return groupMap
+                    .entrySet()
+                    .stream()
+                    .map(entry -> new Pair<>(entry.getKey(), calculator.apply(entry.getValue())))
+                    .filter(pair -> !pair.getRight().isEmpty())
+                    .collect(Collectors.toList());
+        }
+
+        return pool.submit(() -> groupMap
+                .entrySet()
+                .parallelStream()
+                .map(entry -> new Pair<>(entry.getKey(), calculator.apply(entry.getValue())))
+                .filter(pair -> !pair.getRight().isEmpty())
+                .collect(Collectors.toList()))
+                .join();
     }
 
     /**
@@ -145,9 +393,9 @@ public class Main {
      * @param lineList 各行
      * @return 各サーバーがタイムアウトから復帰するまでの秒数をリストで返却。タイムアウトしていない場合は空のリスト。
      */
-    private List<Long> calcBetweenTimeout(final List<String[]> lineList, final int notAcceptableCount) {
+    List<Long> calcBetweenTimeout(final List<String[]> lineList, final int notAcceptableCount) {
 
-        final List<Long> timeoutSeconds = new ArrayList<>();
+        final LongList timeoutSeconds = new LongList();
 
         LocalDateTime timeoutDateTime = null;
         boolean isTimeout = false;
@@ -185,7 +433,19 @@ public class Main {
         return timeoutSeconds;
     }
 
-    private List<String> calcBetweenTimeoutBySubnet(final List<String[]> lineList, final int notAcceptableCount) {
+    /**
+     * サブネット内のサーバーのうち faultPercent パーセント以上が故障とみなされていた期間を返却します。
+     *
+     * 故障とみなされているサーバー数は、サーバーのタイムアウト回数が故障判定回数をまたいだ時のみ更新し、
+     * 各行での判定はサブネットのサーバー数によらず一定時間で行います。
+     * faultPercent が100の場合はファイル全体に現れるサーバーを、100未満の場合はその行までに現れたサーバーを母数とします。
+     *
+     * @param lineList サブネットに属する各行
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param faultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     * @return 故障期間を文字列化したリスト(yyyyMMddHHmmss-yyyyMMddHHmmss)
+     */
+    List<String> calcBetweenTimeoutBySubnet(final List<String[]> lineList, final int notAcceptableCount, final int faultPercent) {
 
         final List<String> timeoutPeriods = new ArrayList<>();
 
@@ -196,13 +456,18 @@ public class Main {
                 .sorted(com1.thenComparing(com2))
                 .collect(Collectors.toList());
 
-        final List<String> ipList = lineList
-                .stream()
-                .map(line -> line[INDEX_SERVER_IP])
-                .collect(Collectors.toList());
+        // サーバーIPごとの番号(初出順)と、番号ごとのタイムアウト回数
+        // 番号の割り当てはサーバーの初出時のみとし、各行ではタイムアウト回数の配列のみを更新する
+        final Map<String, Integer> serverIndexMap = new HashMap<>();
+        if (faultPercent == MAX_SUBNET_FAULT_PERCENT) {
+            for (final String[] line : lineList) {
+                serverIndexMap.putIfAbsent(line[INDEX_SERVER_IP], serverIndexMap.size());
+            }
+        }
+        int[] timeoutCounts = new int[Math.max(serverIndexMap.size(), 16)];
 
-        final Map<String, Integer> ipTimeoutStatusMap = new HashMap<>();
-        ipList.forEach(ip -> ipTimeoutStatusMap.put(ip, 0));
+        // タイムアウト回数が故障判定回数以上のサーバー数
+        int faultServerCount = notAcceptableCount == 0 ? serverIndexMap.size() : 0;
 
         // 最新タイムアウト時刻
         String latestTimeoutStartDate = null;
@@ -210,32 +475,49 @@ public class Main {
         boolean isFault = false;
         for (int i = 0; i < sortedList.size(); i++) {
             final String[] tmp = sortedList.get(i);
+            Integer serverIndex = serverIndexMap.get(tmp[INDEX_SERVER_IP]);
+            if (serverIndex == null) {
+                serverIndex = serverIndexMap.size();
+                serverIndexMap.put(tmp[INDEX_SERVER_IP], serverIndex);
+                if (serverIndex == timeoutCounts.length) {
+                    timeoutCounts = Arrays.copyOf(timeoutCounts, serverIndex * 2);
+                }
+                if (notAcceptableCount == 0) {
+                    faultServerCount++;
+                }
+            }
+
             // タイムアウトの場合、最新タイムアウト時刻を記録
             // 各IPごとのタイムアウト回数をインクリメント
+            final int timeoutCount = timeoutCounts[serverIndex];
             if (TIMEOUT_LETTER.equals(tmp[INDEX_RETURN_TIME])) {
-                final int timeoutCount = ipTimeoutStatusMap.get(tmp[INDEX_SERVER_IP]);
-                if (timeoutCount == 0) {
+                // 一部のサーバーの故障を条件とする場合、故障期間中は開始時刻を更新しない
+                if (timeoutCount == 0 && (faultPercent == MAX_SUBNET_FAULT_PERCENT || !isFault)) {
                     latestTimeoutStartDate = tmp[INDEX_CONFIRM_DATE];
                 }
 
-                ipTimeoutStatusMap.put(tmp[INDEX_SERVER_IP], timeoutCount + 1);
-
-                // タイムアウトしていない場合、各IPごとのタイムアウト回数を0にリセット
-                // 故障フラグがtrue の場合は最新タイムアウト時刻から現在行の時刻までの期間を記録し、故障フラグをfalseにする
-            } else {
-                ipTimeoutStatusMap.put(tmp[INDEX_SERVER_IP], 0);
-                if (isFault) {
-                    timeoutPeriods.add(latestTimeoutStartDate + "-" + sortedList.get(i - 1)[INDEX_CONFIRM_DATE]);
-                    latestTimeoutStartDate = null;
+                timeoutCounts[serverIndex] = timeoutCount + 1;
+                if (timeoutCount < notAcceptableCount && timeoutCount + 1 >= notAcceptableCount) {
+                    faultServerCount++;
                 }
 
-                isFault = false;
+                isFault = SubnetTimeoutDetector.isSubnetFault(faultServerCount, serverIndexMap.size(), faultPercent);
                 continue;
             }
 
-            isFault = ipTimeoutStatusMap.entrySet()
-                    .stream()
-                    .allMatch(entry -> entry.getValue() >= notAcceptableCount);
+            // タイムアウトしていない場合、各IPごとのタイムアウト回数を0にリセット
+            // 故障フラグがtrue の場合は最新タイムアウト時刻から現在行の時刻までの期間を記録し、故障フラグをfalseにする
+            // 一部のサーバーの故障を条件とする場合は、故障サーバーの割合が条件を下回った時点で故障期間を終了する
+            timeoutCounts[serverIndex] = 0;
+            if (timeoutCount >= notAcceptableCount && notAcceptableCount > 0) {
+                faultServerCount--;
+            }
+            if (isFault && (faultPercent == MAX_SUBNET_FAULT_PERCENT
+                    || !SubnetTimeoutDetector.isSubnetFault(faultServerCount, serverIndexMap.size(), faultPercent))) {
+                timeoutPeriods.add(latestTimeoutStartDate + "-" + sortedList.get(i - 1)[INDEX_CONFIRM_DATE]);
+                latestTimeoutStartDate = null;
+                isFault = false;
+            }
         }
 
         return timeoutPeriods;
@@ -0,0 +1,200 @@
+package com.asukahime.logmonitor;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * ログファイルをメモリマップし、改行位置で区切ったチャンクごとに別スレッドで検証・解析します。
+ *
+ * 各チャンクの解析結果はファイル上の順序(時系列順)で呼び出し元スレッドに戻し、1行ずつ handler に渡します。
+ * 指定のフォーマットではない行を除外する場合は、各チャンクの行数からファイル先頭からの行番号を求めて扱います。
+ * 同時に解析するチャンク数を制限しているため、使用メモリはファイルサイズに依存しません。
+ */
+public class MappedLogReader {
+
+    private static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    // チャンク境界の改行を探す際にマップする範囲
+    private static final int BOUNDARY_SEARCH_SIZE = 4096;
+
+    private final int threadCount;
+
+    private final int chunkSize;
+
+    // チャンクの読み込み先(スレッドごとに使い回す)
+    private final ThreadLocal<byte[]> chunkBuffer;
+
+    public MappedLogReader(final int threadCount) {
+        this(threadCount, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedLogReader(final int threadCount, final int chunkSize) {
+        this.threadCount = threadCount;
+        this.chunkSize = chunkSize;
+        this.chunkBuffer = ThreadLocal.withInitial(() -> new byte[0]);
+    }
+
+    /**
+     * 1チャンク分の解析結果です。
+     */
+    private static class ParsedChunk {
+
+        private final LogRecordBuffer buffer;
+
+        // チャンク内の行数
+        private long lineCount = 0;
+
+        // 指定のフォーマットではない行のチャンク内の行番号と内容
+        private final LongList rejectedLineNumberList = new LongList();
+
+        private final List<byte[]> rejectedLineList = new ArrayList<>();
+
+        ParsedChunk(final int capacity) {
+            this.buffer = new LogRecordBuffer(capacity);
+        }
+    }
+
+    /**
+     * ファイルの全行を解析し、ファイル上の順序で handler に渡します。
+     *
+     * @param path ログファイルのパス
+     * @param handler 解析済みの行の受け取り先
+     */
+    public void read(final Path path, final Consumer<LogRecord> handler) throws IOException {
+        read(path, LogLineValidator.strict(), handler);
+    }
+
+    /**
+     * ファイルの全行を解析し、ファイル上の順序で handler に渡します。
+     *
+     * @param path ログファイルのパス
+     * @param validator 指定のフォーマットではない行の扱い
+     * @param handler 解析済みの行の受け取り先
+     */
+    public void read(final Path path, final LogLineValidator validator, final Consumer<LogRecord> handler) throws IOException {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            final Deque<Future<ParsedChunk>> futures = new ArrayDeque<>();
+            final LogRecord record = new LogRecord();
+            long lineNumber = 0;
+
+            long chunkStart = 0;
+            while (chunkStart < fileSize || !futures.isEmpty()) {
+                // 解析中のチャンクがスレッド数の2倍になるまで投入する
+                while (chunkStart < fileSize && futures.size() < threadCount * 2) {
+                    final long start = chunkStart;
+                    final long end = findChunkEnd(channel, start, fileSize);
+                    futures.addLast(executor.submit(() -> parseChunk(channel, start, end, validator.isLenient())));
+                    chunkStart = end;
+                }
+
+                final ParsedChunk chunk = await(futures.removeFirst());
+                for (int i = 0; i < chunk.rejectedLineList.size(); i++) {
+                    final byte[] line = chunk.rejectedLineList.get(i);
+                    validator.reject(path, lineNumber + chunk.rejectedLineNumberList.getLong(i), line, 0, line.length);
+                }
+                lineNumber += chunk.lineCount;
+
+                for (int i = 0; i < chunk.buffer.size(); i++) {
+                    chunk.buffer.get(i, record);
+                    handler.accept(record);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * start から chunkSize 進んだ位置以降で最初の行末(改行文字の直後)を返却します。
+     */
+    private long findChunkEnd(final FileChannel channel, final long start, final long fileSize) throws IOException {
+
+        long position = start + chunkSize;
+        while (position < fileSize) {
+            final int size = (int) Math.min(BOUNDARY_SEARCH_SIZE, fileSize - position);
+            // "\r" の直後を確認できるよう1バイト多くマップする
+            final int mappedSize = (int) Math.min(size + 1L, fileSize - position);
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, mappedSize);
+            for (int i = 0; i < size; i++) {
+                final byte b = mapped.get(i);
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                if (b == '\r') {
+                    // "\r\n" の間では区切らない
+                    return position + i + (i + 1 < mappedSize && mapped.get(i + 1) == '\n' ? 2 : 1);
+                }
+            }
+            position += size;
+        }
+
+        return fileSize;
+    }
+
+    /**
+     * チャンクを解析します。lenient がfalseの場合は、最初の不正な行で MESSAGE_INVALID_FORMAT を送出します。
+     */
+    private ParsedChunk parseChunk(final FileChannel channel, final long start, final long end, final boolean lenient) throws IOException {
+
+        final int length = (int) (end - start);
+        byte[] bytes = chunkBuffer.get();
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            chunkBuffer.set(bytes);
+        }
+        channel.map(FileChannel.MapMode.READ_ONLY, start, length).get(bytes, 0, length);
+
+        final ParsedChunk chunk = new ParsedChunk(length / 32);
+        final LogRecord record = new LogRecord();
+        LogLineReader.splitLines(bytes, 0, length, (buf, from, to) -> {
+            chunk.lineCount++;
+            if (LogLineParser.parse(buf, from, to, record)) {
+                chunk.buffer.add(record);
+            } else if (lenient) {
+                chunk.rejectedLineNumberList.add(chunk.lineCount);
+                chunk.rejectedLineList.add(Arrays.copyOfRange(buf, from, to));
+            } else {
+                throw new LogMonitoringException(MESSAGE_INVALID_FORMAT);
+            }
+        });
+
+        return chunk;
+    }
+
+    private static ParsedChunk await(final Future<ParsedChunk> future) throws IOException {
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof LogMonitoringException) {
+                throw (LogMonitoringException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
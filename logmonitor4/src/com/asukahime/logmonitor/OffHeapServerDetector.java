@@ -0,0 +1,456 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 全サーバーの行を1行ずつ受け取り、RecoveryDetector・TimeoutDetector・OverloadDetector と同じ判定を行います。
+ * サーバーごとの状態(連続タイムアウト回数、タイムアウトの初回の時刻、直近の応答時間と合計など)は
+ * ServerStateStore の固定長のレコードに保持し、サーバーごとのオブジェクトを生成しません。
+ *
+ * 結果と通知は各検出器と同一で、状態の書き込み形式も各検出器の writeState と同一です。
+ * 検出した結果はサーバーのレコード番号と値の組として検出した順に保持し、結果を返却する時点でサーバーごとにまとめます。
+ */
+public class OffHeapServerDetector {
+
+    // 使用しない検出器の項目を表す位置
+    private static final int UNUSED = -1;
+
+    private final int notAcceptableCount;
+
+    private final int averageCount;
+
+    private final int notAcceptableMillis;
+
+    private final FaultListener listener;
+
+    private final boolean detectRecovery;
+    private final boolean detectTimeout;
+    private final boolean detectOverload;
+
+    // 直近の応答時間を保持する件数(ResponseTimeWindow の容量と同じ)
+    private final int windowCapacity;
+
+    // レコード内の各項目の位置。long の項目を先に配置する
+    private final int recoveryEpochSecondOffset;
+    private final int timeoutEpochSecondOffset;
+    private final int overloadStartOffset;
+    private final int previousEpochSecondOffset;
+    private final int windowSumOffset;
+    // 直近の応答時間(確認日時と応答時間の組 × windowCapacity)
+    private final int windowOffset;
+    private final int timeoutCountOffset;
+    private final int windowHeadOffset;
+    private final int windowSizeOffset;
+    private final int recoveryFlagOffset;
+    private final int overloadFlagOffset;
+
+    private final ServerStateStore store;
+
+    // 検出した結果(サーバーのレコード番号と値)
+    private final LongList recoveryServers = new LongList();
+    private final LongList recoverySeconds = new LongList();
+    private final LongList timeoutServers = new LongList();
+    private final LongList timeoutSeconds = new LongList();
+    private final LongList overloadServers = new LongList();
+    private final LongList overloadStarts = new LongList();
+    private final LongList overloadEnds = new LongList();
+
+    /**
+     * @param detectRecovery タイムアウトの回数によらない復帰までの秒数を求める場合はtrue
+     * @param detectTimeout 故障判定回数以上連続したタイムアウトの復帰までの秒数を求める場合はtrue
+     * @param detectOverload 過負荷期間を求める場合はtrue
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param averageCount 指定平均回数
+     * @param notAcceptableMillis 過負荷とみなされるミリ秒数
+     * @param listener 通知先。null の場合は通知しない
+     */
+    public OffHeapServerDetector(
+            final boolean detectRecovery,
+            final boolean detectTimeout,
+            final boolean detectOverload,
+            final int notAcceptableCount,
+            final int averageCount,
+            final int notAcceptableMillis,
+            final FaultListener listener) {
+        this.detectRecovery = detectRecovery;
+        this.detectTimeout = detectTimeout;
+        this.detectOverload = detectOverload;
+        this.notAcceptableCount = notAcceptableCount;
+        this.averageCount = averageCount;
+        this.notAcceptableMillis = notAcceptableMillis;
+        this.listener = listener;
+        this.windowCapacity = detectOverload ? Math.max(averageCount, 1) : 0;
+
+        // 有効な検出器の項目のみを確保する
+        int offset = 0;
+        recoveryEpochSecondOffset = detectRecovery ? offset : UNUSED;
+        offset += detectRecovery ? Long.BYTES : 0;
+        timeoutEpochSecondOffset = detectTimeout ? offset : UNUSED;
+        offset += detectTimeout ? Long.BYTES : 0;
+        overloadStartOffset = detectOverload ? offset : UNUSED;
+        previousEpochSecondOffset = detectOverload ? offset + Long.BYTES : UNUSED;
+        windowSumOffset = detectOverload ? offset + Long.BYTES * 2 : UNUSED;
+        windowOffset = detectOverload ? offset + Long.BYTES * 3 : UNUSED;
+        offset += detectOverload ? Long.BYTES * 3 + Long.BYTES * 2 * windowCapacity : 0;
+        timeoutCountOffset = detectTimeout ? offset : UNUSED;
+        offset += detectTimeout ? Integer.BYTES : 0;
+        windowHeadOffset = detectOverload ? offset : UNUSED;
+        windowSizeOffset = detectOverload ? offset + Integer.BYTES : UNUSED;
+        offset += detectOverload ? Integer.BYTES * 2 : 0;
+        recoveryFlagOffset = detectRecovery ? offset : UNUSED;
+        offset += detectRecovery ? 1 : 0;
+        overloadFlagOffset = detectOverload ? offset : UNUSED;
+        offset += detectOverload ? 1 : 0;
+
+        this.store = new ServerStateStore(offset);
+    }
+
+    /**
+     * 1行分の状態を反映します。
+     *
+     * @param record 解析済みの行
+     */
+    public void accept(final LogRecord record) {
+
+        if (!detectRecovery && !detectTimeout && !detectOverload) {
+            return;
+        }
+
+        final long serverKey = ServerAddress.pack(record.getAddress(), record.getPrefixLength());
+        final int index = store.computeIfAbsent(serverKey);
+        if (detectRecovery) {
+            acceptRecovery(index, serverKey, record);
+        }
+        if (detectTimeout) {
+            acceptTimeout(index, serverKey, record);
+        }
+        if (detectOverload) {
+            acceptOverload(index, serverKey, record);
+        }
+    }
+
+    /**
+     * RecoveryDetector#accept と同じ判定を行います。
+     */
+    private void acceptRecovery(final int index, final long serverKey, final LogRecord record) {
+
+        final boolean isTimeout = store.getByte(index, recoveryFlagOffset) != 0;
+
+        // 連続するタイムアウトの初回のみ時刻を記録
+        if (record.isTimeout()) {
+            if (!isTimeout) {
+                store.putLong(index, recoveryEpochSecondOffset, record.getEpochSecond());
+                store.putByte(index, recoveryFlagOffset, (byte) 1);
+            }
+            return;
+        }
+
+        if (!isTimeout) {
+            return;
+        }
+
+        // タイムアウトから復帰した場合、復帰までの秒数を記録
+        final long seconds = record.getEpochSecond() - store.getLong(index, recoveryEpochSecondOffset);
+        recoveryServers.add(index);
+        recoverySeconds.add(seconds);
+        if (listener != null) {
+            listener.onRecovery(serverKey, seconds);
+        }
+
+        // 記録用変数を初期化
+        store.putByte(index, recoveryFlagOffset, (byte) 0);
+    }
+
+    /**
+     * TimeoutDetector#accept と同じ判定を行います。
+     */
+    private void acceptTimeout(final int index, final long serverKey, final LogRecord record) {
+
+        final int timeoutCount = store.getInt(index, timeoutCountOffset);
+
+        // 連続するタイムアウトの初回のみ時刻を記録
+        // 連続するタイムアウト回数をインクリメント
+        if (record.isTimeout()) {
+            if (timeoutCount == 0) {
+                store.putLong(index, timeoutEpochSecondOffset, record.getEpochSecond());
+            }
+
+            store.putInt(index, timeoutCountOffset, timeoutCount + 1);
+            if (listener != null && timeoutCount + 1 == Math.max(notAcceptableCount, 1)) {
+                listener.onServerFault(serverKey, store.getLong(index, timeoutEpochSecondOffset));
+            }
+            return;
+        }
+
+        if (timeoutCount == 0) {
+            return;
+        }
+
+        // タイムアウトから復帰するまでの連続タイムアウト回数が非許容回数以上の場合、復帰までの秒数を記録
+        if (timeoutCount >= notAcceptableCount) {
+            final long seconds = record.getEpochSecond() - store.getLong(index, timeoutEpochSecondOffset);
+            timeoutServers.add(index);
+            timeoutSeconds.add(seconds);
+            if (listener != null) {
+                listener.onServerRecovery(serverKey, seconds);
+            }
+        }
+
+        // 記録用変数を初期化
+        store.putInt(index, timeoutCountOffset, 0);
+    }
+
+    /**
+     * OverloadDetector#accept と同じ判定を行います。
+     */
+    private void acceptOverload(final int index, final long serverKey, final LogRecord record) {
+
+        if (!record.isTimeout()) {
+            evaluateOverload(index, serverKey, record.getEpochSecond(), record.getReturnTime());
+        }
+
+        store.putLong(index, previousEpochSecondOffset, record.getEpochSecond());
+    }
+
+    private void evaluateOverload(final int index, final long serverKey, final long epochSecond, final int responseTime) {
+
+        addLast(index, epochSecond, responseTime);
+
+        // 指定された回数に到達
+        final int windowSize = store.getInt(index, windowSizeOffset);
+        if (windowSize < averageCount) {
+            return;
+        }
+
+        final boolean isOverload = store.getByte(index, overloadFlagOffset) != 0;
+
+        // 平均が許容秒数を超えている場合
+        if ((double) store.getLong(index, windowSumOffset) / windowSize > (double) notAcceptableMillis) {
+            if (!isOverload) {
+                final long overloadStartEpochSecond = store.getLong(index, windowOffset + store.getInt(index, windowHeadOffset) * Long.BYTES * 2);
+                store.putLong(index, overloadStartOffset, overloadStartEpochSecond);
+                store.putByte(index, overloadFlagOffset, (byte) 1);
+                if (listener != null) {
+                    listener.onOverloadStart(serverKey, overloadStartEpochSecond);
+                }
+            }
+        } else {
+            // 過負荷状態が終了
+            if (isOverload) {
+                final long overloadStartEpochSecond = store.getLong(index, overloadStartOffset);
+                final long previousEpochSecond = store.getLong(index, previousEpochSecondOffset);
+                overloadServers.add(index);
+                overloadStarts.add(overloadStartEpochSecond);
+                overloadEnds.add(previousEpochSecond);
+                if (listener != null) {
+                    listener.onOverloadEnd(serverKey, formatPeriod(overloadStartEpochSecond, previousEpochSecond));
+                }
+                store.putByte(index, overloadFlagOffset, (byte) 0);
+            }
+        }
+
+        removeFirst(index);
+    }
+
+    /**
+     * ResponseTimeWindow#addLast と同様に、直近の応答時間の末尾に追加します。
+     */
+    private void addLast(final int index, final long epochSecond, final long responseTime) {
+
+        final int windowSize = store.getInt(index, windowSizeOffset);
+        final int tail = (store.getInt(index, windowHeadOffset) + windowSize) % windowCapacity;
+        store.putLong(index, windowOffset + tail * Long.BYTES * 2, epochSecond);
+        store.putLong(index, windowOffset + tail * Long.BYTES * 2 + Long.BYTES, responseTime);
+        store.putLong(index, windowSumOffset, store.getLong(index, windowSumOffset) + responseTime);
+        store.putInt(index, windowSizeOffset, windowSize + 1);
+    }
+
+    /**
+     * ResponseTimeWindow#removeFirst と同様に、直近の応答時間の先頭を削除します。
+     */
+    private void removeFirst(final int index) {
+
+        final int head = store.getInt(index, windowHeadOffset);
+        final long responseTime = store.getLong(index, windowOffset + head * Long.BYTES * 2 + Long.BYTES);
+        store.putLong(index, windowSumOffset, store.getLong(index, windowSumOffset) - responseTime);
+        store.putInt(index, windowHeadOffset, (head + 1) % windowCapacity);
+        store.putInt(index, windowSizeOffset, store.getInt(index, windowSizeOffset) - 1);
+    }
+
+    /**
+     * RecoveryDetector#writeState と同じ形式で、サーバー数とサーバーごとのキー・状態を初出順に書き込みます。
+     *
+     * @param output 書き込み先
+     */
+    public void writeRecoveryState(final DataOutput output) throws IOException {
+
+        output.writeInt(detectRecovery ? store.size() : 0);
+        for (int i = 0; detectRecovery && i < store.size(); i++) {
+            output.writeLong(store.keyAt(i));
+            output.writeBoolean(store.getByte(i, recoveryFlagOffset) != 0);
+            output.writeLong(store.getLong(i, recoveryEpochSecondOffset));
+        }
+    }
+
+    /**
+     * TimeoutDetector#writeState と同じ形式で、サーバー数とサーバーごとのキー・状態を初出順に書き込みます。
+     *
+     * @param output 書き込み先
+     */
+    public void writeTimeoutState(final DataOutput output) throws IOException {
+
+        output.writeInt(detectTimeout ? store.size() : 0);
+        for (int i = 0; detectTimeout && i < store.size(); i++) {
+            output.writeLong(store.keyAt(i));
+            output.writeInt(store.getInt(i, timeoutCountOffset));
+            output.writeLong(store.getLong(i, timeoutEpochSecondOffset));
+        }
+    }
+
+    /**
+     * OverloadDetector#writeState と同じ形式で、サーバー数とサーバーごとのキー・状態を初出順に書き込みます。
+     *
+     * @param output 書き込み先
+     */
+    public void writeOverloadState(final DataOutput output) throws IOException {
+
+        output.writeInt(detectOverload ? store.size() : 0);
+        for (int i = 0; detectOverload && i < store.size(); i++) {
+            output.writeLong(store.keyAt(i));
+            output.writeBoolean(store.getByte(i, overloadFlagOffset) != 0);
+            output.writeLong(store.getLong(i, overloadStartOffset));
+            output.writeLong(store.getLong(i, previousEpochSecondOffset));
+            final int head = store.getInt(i, windowHeadOffset);
+            final int windowSize = store.getInt(i, windowSizeOffset);
+            output.writeInt(windowSize);
+            for (int j = 0; j < windowSize; j++) {
+                final int position = windowOffset + (head + j) % windowCapacity * Long.BYTES * 2;
+                output.writeLong(store.getLong(i, position));
+                output.writeLong(store.getLong(i, position + Long.BYTES));
+            }
+        }
+    }
+
+    /**
+     * writeRecoveryState で書き込んだ状態を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readRecoveryState(final DataInput input) throws IOException {
+
+        final int serverCount = readServerCount(input, detectRecovery);
+        for (int i = 0; i < serverCount; i++) {
+            final int index = store.computeIfAbsent(input.readLong());
+            store.putByte(index, recoveryFlagOffset, (byte) (input.readBoolean() ? 1 : 0));
+            store.putLong(index, recoveryEpochSecondOffset, input.readLong());
+        }
+    }
+
+    /**
+     * writeTimeoutState で書き込んだ状態を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readTimeoutState(final DataInput input) throws IOException {
+
+        final int serverCount = readServerCount(input, detectTimeout);
+        for (int i = 0; i < serverCount; i++) {
+            final int index = store.computeIfAbsent(input.readLong());
+            store.putInt(index, timeoutCountOffset, input.readInt());
+            store.putLong(index, timeoutEpochSecondOffset, input.readLong());
+        }
+    }
+
+    /**
+     * writeOverloadState で書き込んだ状態を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readOverloadState(final DataInput input) throws IOException {
+
+        final int serverCount = readServerCount(input, detectOverload);
+        for (int i = 0; i < serverCount; i++) {
+            final int index = store.computeIfAbsent(input.readLong());
+            store.putByte(index, overloadFlagOffset, (byte) (input.readBoolean() ? 1 : 0));
+            store.putLong(index, overloadStartOffset, input.readLong());
+            store.putLong(index, previousEpochSecondOffset, input.readLong());
+            final int count = input.readInt();
+            if (count < 0 || store.getInt(index, windowSizeOffset) + count > windowCapacity) {
+                throw new LogMonitoringException(LogMonitorConstant.MESSAGE_INVALID_CHECKPOINT);
+            }
+            for (int j = 0; j < count; j++) {
+                final long epochSecond = input.readLong();
+                addLast(index, epochSecond, input.readLong());
+            }
+        }
+    }
+
+    /**
+     * 無効な検出器の状態は書き込まないため、サーバー数が0以外の場合は不正なチェックポイントとします。
+     */
+    private static int readServerCount(final DataInput input, final boolean enabled) throws IOException {
+
+        final int serverCount = input.readInt();
+        if (serverCount < 0 || (!enabled && serverCount != 0)) {
+            throw new LogMonitoringException(LogMonitorConstant.MESSAGE_INVALID_CHECKPOINT);
+        }
+        return serverCount;
+    }
+
+    /**
+     * @return left:サーバーIP,right:タイムアウトの回数によらない復帰までの秒数
+     */
+    public List<Pair<String, List<Long>>> createRecoveryPairList() {
+        return createPairList(recoveryServers, recoverySeconds::get);
+    }
+
+    /**
+     * @return left:サーバーIP,right:故障判定回数以上連続したタイムアウトの復帰までの秒数
+     */
+    public List<Pair<String, List<Long>>> createTimeoutPairList() {
+        return createPairList(timeoutServers, timeoutSeconds::get);
+    }
+
+    /**
+     * @return left:サーバーIP,right:過負荷期間
+     */
+    public List<Pair<String, List<String>>> createOverloadPairList() {
+        return createPairList(overloadServers, i -> formatPeriod(overloadStarts.getLong(i), overloadEnds.getLong(i)));
+    }
+
+    /**
+     * 検出した順の結果をサーバーごとにまとめ、各検出器の結果と同じ順(サーバーの初出順を従来の出力順に並べ替えた順)で返却します。
+     */
+    private <R> List<Pair<String, List<R>>> createPairList(final LongList servers, final IntFunction<R> resultFunction) {
+
+        final LongObjectMap<List<R>> resultMap = new LongObjectMap<>();
+        for (int i = 0; i < servers.size(); i++) {
+            resultMap.computeIfAbsent(servers.getLong(i), key -> new ArrayList<>()).add(resultFunction.apply(i));
+        }
+
+        // レコード番号はサーバーの初出順
+        final long[] indexes = new long[resultMap.size()];
+        for (int i = 0; i < resultMap.size(); i++) {
+            indexes[i] = resultMap.keyAt(i);
+        }
+        Arrays.sort(indexes);
+
+        final List<Pair<String, List<R>>> pairList = new ArrayList<>(indexes.length);
+        for (final long index : indexes) {
+            pairList.add(new Pair<>(ServerAddress.format(store.keyAt((int) index)), resultMap.get(index)));
+        }
+
+        GroupingOrder.sort(pairList, Pair::getLeft, store.size());
+        return pairList;
+    }
+
+    private static String formatPeriod(final long startEpochSecond, final long endEpochSecond) {
+        return LogTimestamp.format(startEpochSecond) + "-" + LogTimestamp.format(endEpochSecond);
+    }
+}
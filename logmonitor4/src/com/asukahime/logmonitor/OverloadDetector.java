@@ -0,0 +1,131 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 1サーバー分の行を1行ずつ受け取り、直近の平均応答時間が許容時間を超えていた過負荷期間を求めます。
+ * logmonitor3 の Main#calcOverloadPeriod を逐次処理に置き換えたもので、結果は同一です。
+ *
+ * listener を指定した場合は、過負荷状態になった時点と過負荷状態が終了した時点で通知します。
+ */
+public class OverloadDetector {
+
+    private final int averageCount;
+
+    private final int notAcceptableMillis;
+
+    private final long serverKey;
+
+    private final FaultListener listener;
+
+    private final List<String> overloadPeriods = new ArrayList<>();
+
+    private final ResponseTimeWindow latestResponseTimes;
+
+    private boolean isOverload = false;
+
+    // 過負荷期間の開始時刻(エポック秒)
+    private long overloadStartEpochSecond = 0;
+
+    // 直前の行の時刻(タイムアウトした行を含む)
+    private long previousEpochSecond = 0;
+
+    /**
+     * @param averageCount 指定平均回数
+     * @param notAcceptableMillis 過負荷とみなされるミリ秒数
+     * @param serverKey 通知に使用するサーバーのキー
+     * @param listener 通知先。null の場合は通知しない
+     */
+    public OverloadDetector(final int averageCount, final int notAcceptableMillis, final long serverKey, final FaultListener listener) {
+        this.averageCount = averageCount;
+        this.notAcceptableMillis = notAcceptableMillis;
+        this.serverKey = serverKey;
+        this.listener = listener;
+        this.latestResponseTimes = new ResponseTimeWindow(averageCount);
+    }
+
+    /**
+     * 1行分の状態を反映します。
+     *
+     * @param record 解析済みの行
+     */
+    public void accept(final LogRecord record) {
+
+        if (!record.isTimeout()) {
+            evaluate(record.getEpochSecond(), record.getReturnTime());
+        }
+
+        previousEpochSecond = record.getEpochSecond();
+    }
+
+    private void evaluate(final long epochSecond, final int responseTime) {
+
+        latestResponseTimes.addLast(epochSecond, responseTime);
+
+        // 指定された回数に到達
+        if (latestResponseTimes.size() < averageCount) {
+            return;
+        }
+
+        // 平均が許容秒数を超えている場合
+        if (latestResponseTimes.average() > (double) notAcceptableMillis) {
+            if (!isOverload) {
+                overloadStartEpochSecond = latestResponseTimes.firstEpochSecond();
+                if (listener != null) {
+                    listener.onOverloadStart(serverKey, overloadStartEpochSecond);
+                }
+            }
+
+            isOverload = true;
+        } else {
+            // 過負荷状態が終了
+            if (isOverload) {
+                final String period = LogTimestamp.format(overloadStartEpochSecond) + "-" + LogTimestamp.format(previousEpochSecond);
+                overloadPeriods.add(period);
+                if (listener != null) {
+                    listener.onOverloadEnd(serverKey, period);
+                }
+            }
+
+            isOverload = false;
+        }
+
+        latestResponseTimes.removeFirst();
+    }
+
+    /**
+     * 行をまたいで保持している状態(過負荷状態と直近の応答時間)を書き込みます。
+     * 結果のリストは含みません。
+     *
+     * @param output 書き込み先
+     */
+    public void writeState(final DataOutput output) throws IOException {
+        output.writeBoolean(isOverload);
+        output.writeLong(overloadStartEpochSecond);
+        output.writeLong(previousEpochSecond);
+        latestResponseTimes.writeState(output);
+    }
+
+    /**
+     * writeState で書き込んだ状態を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readState(final DataInput input) throws IOException {
+        isOverload = input.readBoolean();
+        overloadStartEpochSecond = input.readLong();
+        previousEpochSecond = input.readLong();
+        latestResponseTimes.readState(input);
+    }
+
+    /**
+     * @return 過負荷になっていた期間を文字列化したリスト(yyyyMMddHHmmss-yyyyMMddHHmmss)
+     */
+    public List<String> getOverloadPeriods() {
+        return overloadPeriods;
+    }
+}
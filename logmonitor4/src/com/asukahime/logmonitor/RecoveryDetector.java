@@ -0,0 +1,95 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 1サーバー分の行を1行ずつ受け取り、タイムアウトの回数によらず、復帰するまでの秒数を求めます。
+ * logmonitor1 の Main#calcBetweenTimeout を逐次処理に置き換えたもので、結果は同一です。
+ *
+ * listener を指定した場合は、復帰した時点で通知します。
+ */
+public class RecoveryDetector {
+
+    private final long serverKey;
+
+    private final FaultListener listener;
+
+    private final LongList recoverySeconds = new LongList();
+
+    // 連続するタイムアウトの初回の時刻(エポック秒)
+    private long timeoutEpochSecond = 0;
+
+    private boolean isTimeout = false;
+
+    /**
+     * @param serverKey 通知に使用するサーバーのキー
+     * @param listener 通知先。null の場合は通知しない
+     */
+    public RecoveryDetector(final long serverKey, final FaultListener listener) {
+        this.serverKey = serverKey;
+        this.listener = listener;
+    }
+
+    /**
+     * 1行分の状態を反映します。
+     *
+     * @param record 解析済みの行
+     */
+    public void accept(final LogRecord record) {
+
+        // 連続するタイムアウトの初回のみ時刻を記録
+        if (record.isTimeout()) {
+            if (!isTimeout) {
+                timeoutEpochSecond = record.getEpochSecond();
+            }
+
+            isTimeout = true;
+            return;
+        }
+
+        if (!isTimeout) {
+            return;
+        }
+
+        // タイムアウトから復帰した場合、復帰までの秒数を記録
+        final long seconds = record.getEpochSecond() - timeoutEpochSecond;
+        recoverySeconds.add(seconds);
+        if (listener != null) {
+            listener.onRecovery(serverKey, seconds);
+        }
+
+        // 記録用変数を初期化
+        isTimeout = false;
+    }
+
+    /**
+     * 行をまたいで保持している状態(タイムアウト中かどうかと初回の時刻)を書き込みます。
+     * 結果のリストは含みません。
+     *
+     * @param output 書き込み先
+     */
+    public void writeState(final DataOutput output) throws IOException {
+        output.writeBoolean(isTimeout);
+        output.writeLong(timeoutEpochSecond);
+    }
+
+    /**
+     * writeState で書き込んだ状態を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readState(final DataInput input) throws IOException {
+        isTimeout = input.readBoolean();
+        timeoutEpochSecond = input.readLong();
+    }
+
+    /**
+     * @return タイムアウトから復帰するまでの秒数のリスト。タイムアウトしていない場合は空のリスト。
+     */
+    public List<Long> getRecoverySeconds() {
+        return recoverySeconds;
+    }
+}
@@ -0,0 +1,108 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 直近の応答時間を指定回数分だけ保持するリングバッファです。
+ *
+ * 応答時間の合計を追加・削除のたびに更新するため、平均の算出は保持件数によらず O(1) です。
+ * 値はプリミティブ配列に保持し、追加時にオブジェクトを生成しません。
+ */
+public class ResponseTimeWindow {
+
+    // 応答時間と、その応答時間が記録された時刻(エポック秒)
+    private final long[] responseTimes;
+    private final long[] epochSeconds;
+
+    private int head = 0;
+    private int size = 0;
+    private long sum = 0;
+
+    /**
+     * @param capacity 保持する応答時間の最大件数
+     */
+    public ResponseTimeWindow(final int capacity) {
+        responseTimes = new long[Math.max(capacity, 1)];
+        epochSeconds = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * 末尾に応答時間を追加します。
+     *
+     * @param epochSecond 応答時間が記録された時刻(エポック秒)
+     * @param responseTime 応答時間
+     */
+    public void addLast(final long epochSecond, final long responseTime) {
+
+        final int tail = (head + size) % responseTimes.length;
+        responseTimes[tail] = responseTime;
+        epochSeconds[tail] = epochSecond;
+        sum += responseTime;
+        size++;
+    }
+
+    /**
+     * 先頭の応答時間を削除します。
+     */
+    public void removeFirst() {
+
+        sum -= responseTimes[head];
+        head = (head + 1) % responseTimes.length;
+        size--;
+    }
+
+    /**
+     * @return 保持している応答時間の平均
+     */
+    public double average() {
+        return size == 0 ? 0.0d : (double) sum / size;
+    }
+
+    /**
+     * @return 先頭の応答時間が記録された時刻(エポック秒)
+     */
+    public long firstEpochSecond() {
+        return epochSeconds[head];
+    }
+
+    /**
+     * @return 保持している件数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 保持している応答時間を先頭から順に書き込みます。
+     *
+     * @param output 書き込み先
+     */
+    public void writeState(final DataOutput output) throws IOException {
+
+        output.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            final int index = (head + i) % responseTimes.length;
+            output.writeLong(epochSeconds[index]);
+            output.writeLong(responseTimes[index]);
+        }
+    }
+
+    /**
+     * writeState で書き込んだ応答時間を末尾に追加します。
+     *
+     * @param input 読み込み元
+     */
+    public void readState(final DataInput input) throws IOException {
+
+        final int count = input.readInt();
+        if (count < 0 || size + count > responseTimes.length) {
+            throw new LogMonitoringException(LogMonitorConstant.MESSAGE_INVALID_CHECKPOINT);
+        }
+        for (int i = 0; i < count; i++) {
+            final long epochSecond = input.readLong();
+            addLast(epochSecond, input.readLong());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.asukahime.logmonitor;
+
+import java.io.PrintStream;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 解析結果の出力先です。
+ * 出力形式ごとの実装があり、FaultListener として検出器から直接通知を受け取ることもできます。
+ */
+public interface ResultSink extends FaultListener {
+
+    /**
+     * 秒数の結果を出力します。
+     *
+     * @param type 結果の種類
+     * @param address サーバーIPまたはサブネット
+     * @param seconds 秒数
+     */
+    void writeSeconds(ResultType type, CharSequence address, long seconds);
+
+    /**
+     * 期間の結果を出力します。
+     *
+     * @param type 結果の種類
+     * @param address サーバーIPまたはサブネット
+     * @param period 期間(yyyyMMddHHmmss-yyyyMMddHHmmss)。開始の結果の場合は開始時刻(yyyyMMddHHmmss)のみ
+     */
+    void writePeriod(ResultType type, CharSequence address, CharSequence period);
+
+    /**
+     * サーバーの応答時間のパーセンタイル(LATENCY_PERCENTILES)・最大値と、タイムアウトの割合を出力します。
+     *
+     * @param address サーバーIP
+     * @param histogram サーバーの応答時間のヒストグラム
+     */
+    void writeLatency(CharSequence address, LatencyHistogram histogram);
+
+    /**
+     * 出力しきれていない結果を出力先に書き出します。
+     */
+    void flush();
+
+    /**
+     * 出力形式に対応する出力先を生成します。
+     *
+     * @param format 出力形式(FORMAT_TEXT、FORMAT_JSON_LINES、FORMAT_CSV)
+     * @param out 書き出し先
+     * @return 出力先
+     */
+    static ResultSink create(final String format, final PrintStream out) {
+        return create(format, out, false);
+    }
+
+    /**
+     * 出力形式に対応する出力先を生成します。
+     *
+     * @param format 出力形式(FORMAT_TEXT、FORMAT_JSON_LINES、FORMAT_CSV)
+     * @param out 書き出し先
+     * @param latency 応答時間のパーセンタイルを出力する場合はtrue(CSVの場合に列を追加します)
+     * @return 出力先
+     */
+    static ResultSink create(final String format, final PrintStream out, final boolean latency) {
+
+        switch (format) {
+            case FORMAT_TEXT: return new TextResultSink(out);
+            case FORMAT_JSON_LINES: return new JsonLinesResultSink(out);
+            case FORMAT_CSV: return new CsvResultSink(out, latency);
+            default: throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+        }
+    }
+}
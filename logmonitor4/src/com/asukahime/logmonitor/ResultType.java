@@ -0,0 +1,58 @@
+package com.asukahime.logmonitor;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 出力する結果の種類です。
+ * 出力形式によらず、対象(サーバーIPまたはサブネット)と、秒数または期間の組み合わせで表します。
+ */
+public enum ResultType {
+
+    /** サーバーの故障の開始(期間は開始時刻のみ) */
+    SERVER_FAULT_START(false, "FAULT_START"),
+
+    /** サーバーの復帰までの秒数 */
+    SECONDS_TO_RETURN(false, "SECONDS_TO_RETURN"),
+
+    /** タイムアウトの回数によらない、サーバーの復帰までの秒数 */
+    RECOVERY_SECONDS(false, "RECOVERY_SECONDS"),
+
+    /** サーバーの過負荷の開始(期間は開始時刻のみ) */
+    OVERLOAD_START(false, "OVERLOAD_START"),
+
+    /** サーバーの過負荷期間 */
+    OVERLOAD_PERIOD(false, "OVERLOAD_PERIOD"),
+
+    /** サーバーの応答時間のパーセンタイル・最大値とタイムアウトの割合 */
+    LATENCY(false, "LATENCY"),
+
+    /** サブネットの故障の開始(期間は開始時刻のみ) */
+    SUBNET_FAULT_START(true, "FAULT_START"),
+
+    /** サブネットの故障期間 */
+    SUBNET_FAULT_PERIOD(true, "FAULT_PERIOD");
+
+    private final boolean subnet;
+
+    // 出力時に毎回変換しないよう、ラベルはバイト列で保持する
+    private final byte[] label;
+
+    ResultType(final boolean subnet, final String label) {
+        this.subnet = subnet;
+        this.label = label.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return 対象がサブネットの場合はtrue、サーバーの場合はfalse
+     */
+    public boolean isSubnet() {
+        return subnet;
+    }
+
+    /**
+     * @return 従来の出力形式で使用するラベル(例:SECONDS_TO_RETURN)
+     */
+    byte[] getLabel() {
+        return label;
+    }
+}
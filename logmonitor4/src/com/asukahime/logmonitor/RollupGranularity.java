@@ -0,0 +1,47 @@
+package com.asukahime.logmonitor;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * ロールアップを集計する時間の単位です。
+ */
+public enum RollupGranularity {
+
+    /** 1分ごと */
+    MINUTE(60, "minute"),
+
+    /** 1時間ごと */
+    HOUR(3600, "hour");
+
+    private final int seconds;
+
+    private final String optionName;
+
+    RollupGranularity(final int seconds, final String optionName) {
+        this.seconds = seconds;
+        this.optionName = optionName;
+    }
+
+    /**
+     * @param epochSecond エポック秒
+     * @return エポック秒を含む集計単位の開始時刻(エポック秒)
+     */
+    public long bucketStart(final long epochSecond) {
+        return epochSecond - Math.floorMod(epochSecond, seconds);
+    }
+
+    /**
+     * @param optionName --granularity オプションで指定する名前
+     * @return 名前に対応する集計単位
+     */
+    public static RollupGranularity fromOptionName(final String optionName) {
+
+        for (final RollupGranularity granularity : values()) {
+            if (granularity.optionName.equals(optionName)) {
+                return granularity;
+            }
+        }
+
+        throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+    }
+}
@@ -0,0 +1,264 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * RollupWriter で書き出したロールアップのストアから、指定した期間の集計単位ごと・サーバー(またはサブネット)ごとの
+ * ping の数、タイムアウトの割合、平均応答時間、最大応答時間を出力します。
+ *
+ * 各セグメントファイルの索引から期間に含まれるブロックのみを読み込むため、ログファイルを解析し直しません。
+ * 同じ集計単位・キーの値が複数のブロック・セグメントにある場合(複数回の解析に分かれた場合など)は足し合わせます。
+ *
+ * 実行方法:java -cp logmonitor4.jar com.asukahime.logmonitor.RollupQuery ストアのディレクトリ [オプション]
+ */
+public class RollupQuery {
+
+    // 集計値の添字
+    private static final int COUNT = 0;
+    private static final int TIMEOUT_COUNT = 1;
+    private static final int RETURN_TIME_SUM = 2;
+    private static final int RETURN_TIME_MAX = 3;
+
+    private final RollupGranularity granularity;
+
+    private final boolean subnet;
+
+    private final long fromEpochSecond;
+
+    private final long toEpochSecond;
+
+    // 集計単位の開始時刻ごと、キーごとの集計値
+    private final TreeMap<Long, LongObjectMap<long[]>> bucketMap = new TreeMap<>();
+
+    // ブロックの読み込み先(使い回す)
+    private ByteBuffer blockBuffer = ByteBuffer.allocate(0);
+
+    /**
+     * @param granularity 集計単位
+     * @param subnet サブネットごとに集計する場合はtrue、サーバーごとの場合はfalse
+     * @param fromEpochSecond 期間の開始(この時刻以降に始まる集計単位を含む)
+     * @param toEpochSecond 期間の終了(この時刻より前に始まる集計単位を含む)
+     */
+    public RollupQuery(final RollupGranularity granularity, final boolean subnet, final long fromEpochSecond, final long toEpochSecond) {
+        this.granularity = granularity;
+        this.subnet = subnet;
+        this.fromEpochSecond = fromEpochSecond;
+        this.toEpochSecond = toEpochSecond;
+    }
+
+    public static void main(final String[] args) {
+        doProcess(args);
+    }
+
+    /**
+     * 主処理
+     *
+     * @param args コマンドライン引数(ストアのディレクトリとオプション)
+     */
+    public static void doProcess(final String[] args) {
+
+        try {
+            Path storeDirectory = null;
+            RollupGranularity granularity = RollupGranularity.HOUR;
+            boolean subnet = false;
+            long fromEpochSecond = Long.MIN_VALUE;
+            long toEpochSecond = Long.MAX_VALUE;
+            for (final String arg : args) {
+                if (!arg.startsWith(OPTION_PREFIX)) {
+                    if (storeDirectory != null) {
+                        throw new LogMonitoringException(MESSAGE_INVALID_ARGS);
+                    }
+                    storeDirectory = Paths.get(arg);
+                } else if (arg.startsWith(OPTION_GRANULARITY)) {
+                    granularity = RollupGranularity.fromOptionName(arg.substring(OPTION_GRANULARITY.length()));
+                } else if (OPTION_SUBNET.equals(arg)) {
+                    subnet = true;
+                } else if (arg.startsWith(OPTION_FROM)) {
+                    fromEpochSecond = LogMonitorOptions.parseDate(arg.substring(OPTION_FROM.length()));
+                } else if (arg.startsWith(OPTION_TO)) {
+                    toEpochSecond = LogMonitorOptions.parseDate(arg.substring(OPTION_TO.length()));
+                } else {
+                    throw new LogMonitoringException(MESSAGE_INVALID_OPTION);
+                }
+            }
+            if (storeDirectory == null) {
+                throw new LogMonitoringException(MESSAGE_INVALID_ARGS);
+            }
+
+            final RollupQuery query = new RollupQuery(granularity, subnet, fromEpochSecond, toEpochSecond);
+            query.read(storeDirectory);
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII));
+            query.write(writer);
+            writer.flush();
+        } catch (IOException e) {
+            System.out.println(MESSAGE_FILE_CAN_NOT_READ);
+        } catch (LogMonitoringException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * ストアのすべてのセグメントファイルから、期間に含まれるブロックを読み込んで集計します。
+     *
+     * @param storeDirectory ストアのディレクトリ
+     */
+    public void read(final Path storeDirectory) throws IOException {
+
+        final List<Path> segmentList;
+        try (final Stream<Path> paths = Files.list(storeDirectory)) {
+            segmentList = paths
+                    .filter(path -> path.getFileName().toString().endsWith(RollupWriter.SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        for (final Path segment : segmentList) {
+            readSegment(segment);
+        }
+    }
+
+    private void readSegment(final Path segment) throws IOException {
+
+        try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < RollupWriter.FOOTER_SIZE) {
+                throw new LogMonitoringException(MESSAGE_INVALID_ROLLUP);
+            }
+
+            final ByteBuffer footer = readFully(channel, size - RollupWriter.FOOTER_SIZE, RollupWriter.FOOTER_SIZE, ByteBuffer.allocate(RollupWriter.FOOTER_SIZE));
+            final long indexPosition = footer.getLong();
+            final int indexSize = footer.getInt();
+            if (footer.getInt() != RollupWriter.MAGIC
+                    || indexPosition < 0
+                    || indexPosition + (long) indexSize * RollupWriter.INDEX_ENTRY_SIZE != size - RollupWriter.FOOTER_SIZE) {
+                throw new LogMonitoringException(MESSAGE_INVALID_ROLLUP);
+            }
+
+            final int seriesId = RollupWriter.seriesId(granularity, subnet);
+            final ByteBuffer index = readFully(channel, indexPosition, indexSize * RollupWriter.INDEX_ENTRY_SIZE,
+                    ByteBuffer.allocate(indexSize * RollupWriter.INDEX_ENTRY_SIZE));
+            for (int i = 0; i < indexSize; i++) {
+                final int entrySeriesId = index.get();
+                final long bucketStart = index.getLong();
+                final long blockPosition = index.getLong();
+                if (entrySeriesId == seriesId && bucketStart >= fromEpochSecond && bucketStart < toEpochSecond) {
+                    readBlock(channel, blockPosition, indexPosition, bucketStart);
+                }
+            }
+        }
+    }
+
+    /**
+     * 1ブロック分の値を、集計単位・キーごとの集計値に足し合わせます。
+     */
+    private void readBlock(final FileChannel channel, final long position, final long limit, final long bucketStart) throws IOException {
+
+        final ByteBuffer header = readFully(channel, position, RollupWriter.BLOCK_HEADER_SIZE, ByteBuffer.allocate(RollupWriter.BLOCK_HEADER_SIZE));
+        header.get();
+        if (header.getLong() != bucketStart) {
+            throw new LogMonitoringException(MESSAGE_INVALID_ROLLUP);
+        }
+        final int size = header.getInt();
+        final long length = (long) size * RollupWriter.BYTES_PER_ENTRY;
+        if (size < 0 || position + RollupWriter.BLOCK_HEADER_SIZE + length > limit) {
+            throw new LogMonitoringException(MESSAGE_INVALID_ROLLUP);
+        }
+
+        if (blockBuffer.capacity() < length) {
+            blockBuffer = ByteBuffer.allocate((int) length);
+        }
+        final ByteBuffer block = readFully(channel, position + RollupWriter.BLOCK_HEADER_SIZE, (int) length, blockBuffer);
+
+        // 列ごとの開始位置
+        final int countOffset = size * Long.BYTES;
+        final int timeoutOffset = countOffset + size * Integer.BYTES;
+        final int sumOffset = timeoutOffset + size * Integer.BYTES;
+        final int maxOffset = sumOffset + size * Long.BYTES;
+
+        final LongObjectMap<long[]> valueMap = bucketMap.computeIfAbsent(bucketStart, key -> new LongObjectMap<>());
+        for (int i = 0; i < size; i++) {
+            final long[] values = valueMap.computeIfAbsent(block.getLong(i * Long.BYTES), key -> new long[4]);
+            values[COUNT] += block.getInt(countOffset + i * Integer.BYTES);
+            values[TIMEOUT_COUNT] += block.getInt(timeoutOffset + i * Integer.BYTES);
+            values[RETURN_TIME_SUM] += block.getLong(sumOffset + i * Long.BYTES);
+            values[RETURN_TIME_MAX] = Math.max(values[RETURN_TIME_MAX], block.getInt(maxOffset + i * Integer.BYTES));
+        }
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length, final ByteBuffer buffer) throws IOException {
+
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new LogMonitoringException(MESSAGE_INVALID_ROLLUP);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 集計単位の開始時刻順、サーバーIP(またはサブネット)のアドレスの数値順に出力します。
+     * 例:SUBNET_IP : 10.20.***.***, START : 20210717100000, COUNT : 3600, TIMEOUT_RATIO : 0.0100, AVERAGE : 12.5, MAX : 120
+     * 応答した ping がない場合の平均応答時間・最大応答時間は "-" とします。
+     *
+     * @param writer 書き出し先
+     */
+    public void write(final Writer writer) throws IOException {
+
+        final StringBuilder line = new StringBuilder();
+        for (final Map.Entry<Long, LongObjectMap<long[]>> entry : bucketMap.entrySet()) {
+            final String start = LogTimestamp.format(entry.getKey());
+            final LongObjectMap<long[]> valueMap = entry.getValue();
+
+            final long[] keys = new long[valueMap.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = valueMap.keyAt(i);
+            }
+            Arrays.sort(keys);
+
+            for (final long key : keys) {
+                final long[] values = valueMap.get(key);
+                final long responseCount = values[COUNT] - values[TIMEOUT_COUNT];
+
+                line.setLength(0);
+                if (subnet) {
+                    ServerAddress.appendSubnetText(key, line.append("SUBNET_IP : "));
+                } else {
+                    ServerAddress.appendText(key, line.append("IP : "));
+                }
+                line.append(", START : ").append(start);
+                line.append(", COUNT : ").append(values[COUNT]);
+                line.append(", TIMEOUT_RATIO : ").append(String.format("%.4f", (double) values[TIMEOUT_COUNT] / values[COUNT]));
+                if (responseCount > 0) {
+                    line.append(", AVERAGE : ").append(String.format("%.1f", (double) values[RETURN_TIME_SUM] / responseCount));
+                    line.append(", MAX : ").append(values[RETURN_TIME_MAX]);
+                } else {
+                    line.append(", AVERAGE : ").append(TIMEOUT_LETTER);
+                    line.append(", MAX : ").append(TIMEOUT_LETTER);
+                }
+                writer.write(line.toString());
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+}
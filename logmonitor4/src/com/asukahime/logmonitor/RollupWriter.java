@@ -0,0 +1,281 @@
+package com.asukahime.logmonitor;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 解析した行を1分ごと・1時間ごとに、サーバー・サブネット単位で集計(ロールアップ)し、ストアのディレクトリに書き出します。
+ * 集計する値は ping の数、タイムアウトの数、応答時間の合計と最大値です。
+ *
+ * 1回の解析ごとに1つのセグメントファイルを作成し、解析が完了した時点で一時ファイルから名前を変更して確定します。
+ * セグメントファイルの形式は以下のとおりで、数値はいずれもビッグエンディアンです。
+ * <pre>
+ * ヘッダ : MAGIC(int) VERSION(int)
+ * ブロック : 系列(byte) 集計単位の開始時刻(long) 件数 n(int)
+ *            キー(long × n) ping の数(int × n) タイムアウトの数(int × n) 応答時間の合計(long × n) 応答時間の最大値(int × n)
+ * 索引 : (系列(byte) 集計単位の開始時刻(long) ブロックの位置(long)) × ブロック数
+ * フッタ : 索引の位置(long) ブロック数(int) MAGIC(int)
+ * </pre>
+ * 値は列ごとに連続して格納するため、参照時は必要な列のみを読み込めます。
+ * 系列は集計単位とサーバー・サブネットの組み合わせ(seriesId)です。
+ * 時系列順に並んでいない行は、同じ集計単位の別のブロックとして書き出し、参照時に足し合わせます。
+ */
+public class RollupWriter implements Consumer<LogRecord>, Closeable {
+
+    // セグメントファイルの識別子("LMRU")とバージョン
+    static final int MAGIC = 0x4C4D5255;
+    static final int VERSION = 1;
+
+    static final String SEGMENT_PREFIX = "rollup-";
+    static final String SEGMENT_SUFFIX = ".rollup";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // 索引の1件のバイト数
+    static final int INDEX_ENTRY_SIZE = 17;
+
+    // フッタのバイト数
+    static final int FOOTER_SIZE = 16;
+
+    // ブロックのヘッダと、1件分の列のバイト数
+    static final int BLOCK_HEADER_SIZE = 13;
+    static final int BYTES_PER_ENTRY = 28;
+
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final Path tempPath;
+
+    private final DataOutputStream output;
+
+    // 書き込んだバイト数(ブロックの位置)
+    private long position = 0;
+
+    // 系列ごとの集計中の値
+    private final Series[] seriesList = new Series[RollupGranularity.values().length * 2];
+
+    // 書き込んだブロックの索引
+    private byte[] indexSeries = new byte[DEFAULT_CAPACITY];
+    private long[] indexBucketStarts = new long[DEFAULT_CAPACITY];
+    private long[] indexPositions = new long[DEFAULT_CAPACITY];
+    private int indexSize = 0;
+
+    private boolean committed = false;
+
+    /**
+     * @param storeDirectory ストアのディレクトリ。存在しない場合は作成します。
+     */
+    public RollupWriter(final Path storeDirectory) throws IOException {
+
+        Files.createDirectories(storeDirectory);
+        this.tempPath = Files.createTempFile(storeDirectory, SEGMENT_PREFIX, TEMP_SUFFIX);
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), OUTPUT_BUFFER_SIZE));
+
+        for (final RollupGranularity granularity : RollupGranularity.values()) {
+            seriesList[seriesId(granularity, false)] = new Series(granularity, false);
+            seriesList[seriesId(granularity, true)] = new Series(granularity, true);
+        }
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        position += Integer.BYTES * 2;
+    }
+
+    /**
+     * @param granularity 集計単位
+     * @param subnet サブネット単位の場合はtrue、サーバー単位の場合はfalse
+     * @return 系列の番号
+     */
+    static int seriesId(final RollupGranularity granularity, final boolean subnet) {
+        return granularity.ordinal() * 2 + (subnet ? 1 : 0);
+    }
+
+    /**
+     * 1行分を集計します。
+     * 行の受け取り先として呼び出すため、書き込みの失敗は UncheckedIOException とします。
+     *
+     * @param record 解析済みの行
+     */
+    @Override
+    public void accept(final LogRecord record) {
+
+        final long serverKey = ServerAddress.pack(record.getAddress(), record.getPrefixLength());
+        final long subnetKey = ServerAddress.subnetKey(record.getAddress(), record.getPrefixLength());
+        try {
+            for (final Series series : seriesList) {
+                series.accept(series.subnet ? subnetKey : serverKey, record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 集計中の値と索引を書き込み、セグメントファイルを確定します。
+     */
+    public void commit() throws IOException {
+
+        for (final Series series : seriesList) {
+            series.flush();
+        }
+
+        final long indexPosition = position;
+        for (int i = 0; i < indexSize; i++) {
+            output.writeByte(indexSeries[i]);
+            output.writeLong(indexBucketStarts[i]);
+            output.writeLong(indexPositions[i]);
+        }
+        output.writeLong(indexPosition);
+        output.writeInt(indexSize);
+        output.writeInt(MAGIC);
+        output.close();
+
+        final String fileName = tempPath.getFileName().toString();
+        final Path segmentPath = tempPath.resolveSibling(fileName.substring(0, fileName.length() - TEMP_SUFFIX.length()) + SEGMENT_SUFFIX);
+        Files.move(tempPath, segmentPath, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /**
+     * 確定していない場合は一時ファイルを削除します。
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (committed) {
+            return;
+        }
+        try {
+            output.close();
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private void addIndex(final int seriesId, final long bucketStart, final long blockPosition) {
+
+        if (indexSize == indexPositions.length) {
+            indexSeries = Arrays.copyOf(indexSeries, indexSize * 2);
+            indexBucketStarts = Arrays.copyOf(indexBucketStarts, indexSize * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+        }
+        indexSeries[indexSize] = (byte) seriesId;
+        indexBucketStarts[indexSize] = bucketStart;
+        indexPositions[indexSize] = blockPosition;
+        indexSize++;
+    }
+
+    /**
+     * 1系列分の、集計中の集計単位の値を保持します。
+     *
+     * キーごとの値の格納位置(スロット)は集計単位をまたいで使い回し、集計単位ごとに値の生成を行いません。
+     */
+    private class Series {
+
+        private final RollupGranularity granularity;
+
+        private final boolean subnet;
+
+        // キーとスロットの対応(キーの追加順をスロット番号とする)
+        private final LongIntMap slotMap = new LongIntMap();
+
+        // スロットごとの値
+        private int[] counts = new int[DEFAULT_CAPACITY];
+        private int[] timeoutCounts = new int[DEFAULT_CAPACITY];
+        private long[] returnTimeSums = new long[DEFAULT_CAPACITY];
+        private int[] returnTimeMaxes = new int[DEFAULT_CAPACITY];
+
+        // 集計中の集計単位に現れたスロット(初出順)
+        private int[] touchedSlots = new int[DEFAULT_CAPACITY];
+        private int touchedSize = 0;
+
+        private long bucketStart = Long.MIN_VALUE;
+
+        Series(final RollupGranularity granularity, final boolean subnet) {
+            this.granularity = granularity;
+            this.subnet = subnet;
+        }
+
+        void accept(final long key, final LogRecord record) throws IOException {
+
+            final long recordBucketStart = granularity.bucketStart(record.getEpochSecond());
+            if (recordBucketStart != bucketStart) {
+                flush();
+                bucketStart = recordBucketStart;
+            }
+
+            final int slot = slotMap.indexOfOrAdd(key);
+            if (slot >= counts.length) {
+                final int capacity = Math.max(counts.length * 2, slot + 1);
+                counts = Arrays.copyOf(counts, capacity);
+                timeoutCounts = Arrays.copyOf(timeoutCounts, capacity);
+                returnTimeSums = Arrays.copyOf(returnTimeSums, capacity);
+                returnTimeMaxes = Arrays.copyOf(returnTimeMaxes, capacity);
+            }
+
+            if (counts[slot] == 0) {
+                if (touchedSize == touchedSlots.length) {
+                    touchedSlots = Arrays.copyOf(touchedSlots, touchedSize * 2);
+                }
+                touchedSlots[touchedSize++] = slot;
+            }
+            counts[slot]++;
+            if (record.isTimeout()) {
+                timeoutCounts[slot]++;
+            } else {
+                returnTimeSums[slot] += record.getReturnTime();
+                returnTimeMaxes[slot] = Math.max(returnTimeMaxes[slot], record.getReturnTime());
+            }
+        }
+
+        /**
+         * 集計中の集計単位の値をブロックとして書き込み、スロットの値を初期化します。
+         */
+        void flush() throws IOException {
+
+            if (touchedSize == 0) {
+                return;
+            }
+
+            final int seriesId = seriesId(granularity, subnet);
+            addIndex(seriesId, bucketStart, position);
+
+            output.writeByte(seriesId);
+            output.writeLong(bucketStart);
+            output.writeInt(touchedSize);
+            for (int i = 0; i < touchedSize; i++) {
+                output.writeLong(slotMap.keyAt(touchedSlots[i]));
+            }
+            for (int i = 0; i < touchedSize; i++) {
+                output.writeInt(counts[touchedSlots[i]]);
+            }
+            for (int i = 0; i < touchedSize; i++) {
+                output.writeInt(timeoutCounts[touchedSlots[i]]);
+            }
+            for (int i = 0; i < touchedSize; i++) {
+                output.writeLong(returnTimeSums[touchedSlots[i]]);
+            }
+            for (int i = 0; i < touchedSize; i++) {
+                output.writeInt(returnTimeMaxes[touchedSlots[i]]);
+            }
+            position += BLOCK_HEADER_SIZE + (long) touchedSize * BYTES_PER_ENTRY;
+
+            for (int i = 0; i < touchedSize; i++) {
+                final int slot = touchedSlots[i];
+                counts[slot] = 0;
+                timeoutCounts[slot] = 0;
+                returnTimeSums[slot] = 0;
+                returnTimeMaxes[slot] = 0;
+            }
+            touchedSize = 0;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.asukahime.logmonitor;
+
+import java.util.Comparator;
+
+/**
+ * 数値化したIPv4アドレス・プレフィックス長を扱うユーティリティです。
+ * 文字列への変換は出力時のみ行います。
+ */
+public final class ServerAddress {
+
+    private static final String MASKED_OCTET = "***";
+
+    // オクテット・プレフィックス長の最大値
+    static final int MAX_OCTET = 255;
+    static final int MAX_PREFIX_LENGTH = 32;
+
+    /**
+     * format・formatSubnet で文字列化したサーバーIP・サブネットを、アドレス・プレフィックス長の数値順に比較します。
+     * 数値が等しい場合(先頭に0を含むオクテットなど)は文字列の辞書順とします。
+     * アドレスではない文字列(範囲外のアドレスの行の空のサブネットなど)は変換せず、アドレスより後とします。
+     */
+    public static final Comparator<String> ADDRESS_ORDER = Comparator
+            .comparing((String text) -> !isAddressText(text))
+            .thenComparingLong(text -> isAddressText(text) ? parse(text) : 0L)
+            .thenComparing(Comparator.naturalOrder());
+
+    private ServerAddress() {}
+
+    /**
+     * IPv4アドレスとプレフィックス長を1つのキーにまとめます。
+     *
+     * @param address IPv4アドレス
+     * @param prefixLength プレフィックス長
+     * @return サーバーのキー
+     */
+    public static long pack(final int address, final int prefixLength) {
+        return (address & 0xFFFFFFFFL) << 8 | prefixLength;
+    }
+
+    /**
+     * @param key サーバーのキー
+     * @return IPv4アドレス
+     */
+    public static int address(final long key) {
+        return (int) (key >>> 8);
+    }
+
+    /**
+     * @param key サーバーのキー
+     * @return プレフィックス長
+     */
+    public static int prefixLength(final long key) {
+        return (int) (key & 0xFF);
+    }
+
+    /**
+     * サーバーの属するサブネットのキーを返却します。
+     * アドレスのホスト部をプレフィックス長のビットマスクで0にしたものをサブネットとします。
+     *
+     * @param address IPv4アドレス
+     * @param prefixLength プレフィックス長(0-32)
+     * @return サブネットのキー
+     */
+    public static long subnetKey(final int address, final int prefixLength) {
+        return pack(address & netmask(prefixLength), prefixLength);
+    }
+
+    /**
+     * @param prefixLength プレフィックス長
+     * @return プレフィックス長に対応するサブネットマスク
+     */
+    public static int netmask(final int prefixLength) {
+
+        if (prefixLength <= 0) {
+            return 0;
+        }
+
+        return prefixLength >= 32 ? -1 : -1 << (32 - prefixLength);
+    }
+
+    /**
+     * サーバーのキーを "a.b.c.d/p" 形式の文字列に変換します。
+     *
+     * @param key サーバーのキー
+     * @return サーバーIP
+     */
+    public static String format(final long key) {
+        return appendText(key, new StringBuilder(18)).toString();
+    }
+
+    /**
+     * サーバーのキーを "a.b.c.d/p" 形式で追記します。
+     *
+     * @param key サーバーのキー
+     * @param dest 追記先
+     * @return dest
+     */
+    public static StringBuilder appendText(final long key, final StringBuilder dest) {
+
+        final int address = address(key);
+        return dest.append(address >>> 24).append('.').append(address >>> 16 & 0xFF).append('.')
+                .append(address >>> 8 & 0xFF).append('.').append(address & 0xFF)
+                .append('/').append(prefixLength(key));
+    }
+
+    /**
+     * format・formatSubnet で文字列化したサーバーIP・サブネットをキーに変換します。
+     * "***" のオクテットは0とし、プレフィックス長は数値のオクテット数から求めます。
+     *
+     * @param text サーバーIPまたはサブネット
+     * @return サーバーまたはサブネットのキー
+     */
+    public static long parse(final String text) {
+
+        final int slash = text.indexOf('/');
+        final String[] octets = (slash < 0 ? text : text.substring(0, slash)).split("\\.");
+        int address = 0;
+        int visibleOctets = 0;
+        for (final String octet : octets) {
+            if (MASKED_OCTET.equals(octet)) {
+                address <<= 8;
+            } else {
+                address = address << 8 | Integer.parseInt(octet);
+                visibleOctets++;
+            }
+        }
+
+        final int prefixLength = slash < 0 ? visibleOctets * 8 : Integer.parseInt(text.substring(slash + 1));
+        return pack(address, prefixLength);
+    }
+
+    /**
+     * parse で変換できる形式(数字・"***" のオクテットとプレフィックス長)かを判定します。
+     */
+    private static boolean isAddressText(final String text) {
+        return !text.isEmpty() && text.chars().allMatch(c -> (c >= '0' && c <= '9') || c == '.' || c == '/' || c == '*');
+    }
+
+    /**
+     * サブネットのキーを文字列に変換します。
+     * プレフィックス長が8,16,24の場合はホスト部を "***" とした形式(例:10.20.***.***)、
+     * それ以外の場合はネットワークアドレスとプレフィックス長の形式(例:10.20.16.0/20)とします。
+     *
+     * @param key サブネットのキー
+     * @return サブネット
+     */
+    public static String formatSubnet(final long key) {
+        return appendSubnetText(key, new StringBuilder(18)).toString();
+    }
+
+    /**
+     * サブネットのキーを formatSubnet と同じ形式で追記します。
+     *
+     * @param key サブネットのキー
+     * @param dest 追記先
+     * @return dest
+     */
+    public static StringBuilder appendSubnetText(final long key, final StringBuilder dest) {
+
+        final int prefixLength = prefixLength(key);
+        if (prefixLength != 8 && prefixLength != 16 && prefixLength != 24) {
+            return appendText(key, dest);
+        }
+
+        final int address = address(key);
+        final int visibleOctets = prefixLength / 8;
+        for (int i = 0; i < 4; i++) {
+            if (i > 0) {
+                dest.append('.');
+            }
+            if (i < visibleOctets) {
+                dest.append(address >>> (24 - i * 8) & 0xFF);
+            } else {
+                dest.append(MASKED_OCTET);
+            }
+        }
+
+        return dest;
+    }
+
+    /**
+     * サーバーのキーを "a.b.c.d/p" 形式で文字列化した場合の辞書順と大小関係が一致する値を返却します。
+     * 異なるキーに対しては異なる値となるため、文字列を生成せずに数値の比較のみで並べ替えることができます。
+     *
+     * 各項目(オクテットとプレフィックス長)の10進数の文字列を3桁に左詰めした値と桁数を12ビットずつ並べた値とします。
+     * 項目の文字列が他方の先頭部分と一致する場合(例:"12" と "120")は、区切り文字が数字より小さいため桁数の少ない方が小さくなります。
+     *
+     * @param key サーバーのキー
+     * @return 辞書順と大小関係が一致する値
+     */
+    public static long textOrder(final long key) {
+
+        final int address = address(key);
+        long order = 0;
+        for (int i = 0; i < 4; i++) {
+            order = order << 12 | textOrderOfField(address >>> (24 - i * 8) & 0xFF);
+        }
+
+        return order << 12 | textOrderOfField(prefixLength(key));
+    }
+
+    private static int textOrderOfField(final int value) {
+
+        if (value >= 100) {
+            return value << 2 | 3;
+        }
+        if (value >= 10) {
+            return value * 10 << 2 | 2;
+        }
+        return value * 100 << 2 | 1;
+    }
+}
@@ -0,0 +1,190 @@
+package com.asukahime.logmonitor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * long のキー(パックしたサーバーIP)ごとの固定長のレコードを、ヒープ外のメモリ(ダイレクトバッファ)に保持します。
+ * キーごとのオブジェクトを生成しないため、キーの数によらずヒープの使用量と GC の走査対象は一定です。
+ *
+ * レコードは追加順に番号を割り当て、CHUNK_BYTES 程度のチャンクに詰めて保持します。
+ * キーからレコード番号への索引もヒープ外のオープンアドレス法のハッシュ表とし、LongObjectMap と同じハッシュ関数を使用します。
+ * 追加したレコードの各項目は0で初期化されています。削除はできません。
+ *
+ * ヒープ外のメモリは -XX:MaxDirectMemorySize の上限の範囲で確保します。
+ */
+public class ServerStateStore {
+
+    // 1チャンクの目安のバイト数
+    private static final int CHUNK_BYTES = 4 * 1024 * 1024;
+
+    private static final int DEFAULT_TABLE_SIZE = 32;
+
+    // ハッシュ表の最大サイズ(要素数)。1つのダイレクトバッファに収まる範囲とする
+    private static final int MAX_TABLE_SIZE = 1 << 29;
+
+    // キーを含む1レコードのバイト数
+    private final int recordSize;
+
+    // 1チャンクのレコード数(2のべき乗)
+    private final int chunkShift;
+    private final int chunkMask;
+
+    private ByteBuffer[] chunks = new ByteBuffer[16];
+    private int size = 0;
+
+    // ハッシュ位置ごとの (レコード番号 + 1)。0は空き
+    private ByteBuffer table;
+    private int mask;
+
+    /**
+     * @param fieldSize キーを除く1レコードのバイト数
+     */
+    public ServerStateStore(final int fieldSize) {
+
+        // long の項目の位置が揃うよう、8バイト単位とする
+        this.recordSize = (Long.BYTES + fieldSize + Long.BYTES - 1) & -Long.BYTES;
+        this.chunkShift = Math.max(0, Integer.numberOfTrailingZeros(Integer.highestOneBit(Math.max(CHUNK_BYTES / recordSize, 1))));
+        this.chunkMask = (1 << chunkShift) - 1;
+        this.table = allocate(DEFAULT_TABLE_SIZE * Integer.BYTES);
+        this.mask = DEFAULT_TABLE_SIZE - 1;
+    }
+
+    /**
+     * @param key キー
+     * @return キーのレコード番号。存在しない場合は-1
+     */
+    public int indexOf(final long key) {
+
+        int slot = slot(key);
+        int entry;
+        while ((entry = table.getInt(slot * Integer.BYTES)) != 0) {
+            if (keyAt(entry - 1) == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * キーのレコード番号を返却します。存在しない場合は項目を0としたレコードを追加します。
+     *
+     * @param key キー
+     * @return キーのレコード番号
+     */
+    public int computeIfAbsent(final long key) {
+
+        int slot = slot(key);
+        int entry;
+        while ((entry = table.getInt(slot * Integer.BYTES)) != 0) {
+            if (keyAt(entry - 1) == key) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        final int index = size;
+        final int chunkIndex = index >>> chunkShift;
+        if (chunkIndex == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        if (chunks[chunkIndex] == null) {
+            chunks[chunkIndex] = allocate(recordSize << chunkShift);
+        }
+        chunks[chunkIndex].putLong(recordPosition(index), key);
+        table.putInt(slot * Integer.BYTES, ++size);
+
+        if (size > (mask + 1) / 2) {
+            rehash((mask + 1) * 2);
+        }
+
+        return index;
+    }
+
+    /**
+     * @return 保持しているキーの数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index レコード番号(追加順)
+     * @return キー
+     */
+    public long keyAt(final int index) {
+        return chunk(index).getLong(recordPosition(index));
+    }
+
+    // 以下の各項目の位置(offset)は、レコード内のキーに続く項目の先頭からのバイト数
+
+    public byte getByte(final int index, final int offset) {
+        return chunk(index).get(position(index, offset));
+    }
+
+    public void putByte(final int index, final int offset, final byte value) {
+        chunk(index).put(position(index, offset), value);
+    }
+
+    public int getInt(final int index, final int offset) {
+        return chunk(index).getInt(position(index, offset));
+    }
+
+    public void putInt(final int index, final int offset, final int value) {
+        chunk(index).putInt(position(index, offset), value);
+    }
+
+    public long getLong(final int index, final int offset) {
+        return chunk(index).getLong(position(index, offset));
+    }
+
+    public void putLong(final int index, final int offset, final long value) {
+        chunk(index).putLong(position(index, offset), value);
+    }
+
+    private ByteBuffer chunk(final int index) {
+        return chunks[index >>> chunkShift];
+    }
+
+    /**
+     * レコードの先頭(キーの位置)を返却します。
+     */
+    private int recordPosition(final int index) {
+        return (index & chunkMask) * recordSize;
+    }
+
+    private int position(final int index, final int offset) {
+        return recordPosition(index) + Long.BYTES + offset;
+    }
+
+    private int slot(final long key) {
+
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(final int tableSize) {
+
+        // ハッシュ表をこれ以上拡張できない場合は、ヒープ外のメモリを確保できない場合と同様に扱う
+        if (tableSize > MAX_TABLE_SIZE) {
+            throw new OutOfMemoryError();
+        }
+
+        table = allocate(tableSize * Integer.BYTES);
+        mask = tableSize - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = slot(keyAt(i));
+            while (table.getInt(slot * Integer.BYTES) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table.putInt(slot * Integer.BYTES, i + 1);
+        }
+    }
+
+    private static ByteBuffer allocate(final int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+}
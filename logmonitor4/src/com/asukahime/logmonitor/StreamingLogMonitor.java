@@ -0,0 +1,426 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * ログファイルを1行ずつ受け取り、検証・解析したうえでサーバーごと、サブネットごとの状態に反映します。
+ * 保持するのはサーバー数・サブネット数に比例する状態のみで、ファイル全体をメモリに読み込みません。
+ *
+ * 結果の並び順は Collectors.groupingBy による従来の集計と同一です。
+ *
+ * 各行は1回だけ解析し、有効な検出器(DetectorType)すべてに同じ解析結果を渡します。
+ * 検出器を指定しない場合は、故障サーバー・サブネットと、指定平均回数を指定した場合は過負荷期間を求めます。
+ * listener を指定した場合は、各検出器が故障・過負荷を検出した時点で通知します。
+ * 応答時間のパーセンタイルは全行の集計結果のため、通知しません。
+ *
+ * offHeap を指定した場合は、サーバーごとの状態を OffHeapServerDetector に、サブネットのサーバーごとのタイムアウト回数を
+ * ServerStateStore に保持し、サーバー数によらずヒープの使用量を一定にします。結果は指定しない場合と同一です。
+ * 応答時間のヒストグラムとサブネットごとの状態は、指定した場合もヒープに保持します。
+ */
+public class StreamingLogMonitor implements LogLineReader.LineHandler {
+
+    private final int notAcceptableCount;
+
+    private final int subnetFaultPercent;
+
+    private final int averageCount;
+
+    private final int notAcceptableMillis;
+
+    private final FaultListener listener;
+
+    // 有効な検出器(行ごとに参照するため、種類ごとのフラグで保持する)
+    private final boolean detectRecovery;
+    private final boolean detectTimeout;
+    private final boolean detectOverload;
+    private final boolean detectSubnet;
+    private final boolean detectLatency;
+
+    // 解析結果の格納先(行ごとに使い回す)
+    private final LogRecord record = new LogRecord();
+
+    // サーバーのキー(ServerAddress#pack)ごとの状態
+    private final LongObjectMap<RecoveryDetector> recoveryDetectorMap = new LongObjectMap<>();
+
+    private final LongObjectMap<TimeoutDetector> timeoutDetectorMap = new LongObjectMap<>();
+
+    private final LongObjectMap<OverloadDetector> overloadDetectorMap = new LongObjectMap<>();
+
+    private final LongObjectMap<LatencyHistogram> latencyHistogramMap = new LongObjectMap<>();
+
+    // サブネットのキー(ServerAddress#subnetKey)ごとの状態
+    private final LongObjectMap<SubnetTimeoutDetector> subnetTimeoutDetectorMap = new LongObjectMap<>();
+
+    // 評価待ちの行があるサブネット
+    private final List<SubnetTimeoutDetector> pendingSubnetList = new ArrayList<>();
+
+    // ヒープ外に保持するサーバーごとの状態(offHeap を指定しない場合はnull)
+    private final OffHeapServerDetector offHeapServerDetector;
+
+    private final ServerStateStore subnetCountStore;
+
+    /**
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param subnetFaultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     */
+    public StreamingLogMonitor(final int notAcceptableCount, final int subnetFaultPercent) {
+        this(notAcceptableCount, subnetFaultPercent, OVERLOAD_DISABLED, 0, null);
+    }
+
+    /**
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param subnetFaultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     * @param averageCount 過負荷判定の指定平均回数。OVERLOAD_DISABLED の場合は過負荷期間を求めない
+     * @param notAcceptableMillis 過負荷とみなされるミリ秒数
+     * @param listener 通知先。null の場合は通知しない
+     */
+    public StreamingLogMonitor(
+            final int notAcceptableCount,
+            final int subnetFaultPercent,
+            final int averageCount,
+            final int notAcceptableMillis,
+            final FaultListener listener) {
+        this(defaultDetectors(averageCount), notAcceptableCount, subnetFaultPercent, averageCount, notAcceptableMillis, listener);
+    }
+
+    /**
+     * @param detectors 有効な検出器。OVERLOAD を含む場合は averageCount に OVERLOAD_DISABLED 以外を指定する
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param subnetFaultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     * @param averageCount 過負荷判定の指定平均回数
+     * @param notAcceptableMillis 過負荷とみなされるミリ秒数
+     * @param listener 通知先。null の場合は通知しない
+     */
+    public StreamingLogMonitor(
+            final Set<DetectorType> detectors,
+            final int notAcceptableCount,
+            final int subnetFaultPercent,
+            final int averageCount,
+            final int notAcceptableMillis,
+            final FaultListener listener) {
+        this(detectors, notAcceptableCount, subnetFaultPercent, averageCount, notAcceptableMillis, listener, false);
+    }
+
+    /**
+     * @param detectors 有効な検出器。OVERLOAD を含む場合は averageCount に OVERLOAD_DISABLED 以外を指定する
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param subnetFaultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     * @param averageCount 過負荷判定の指定平均回数
+     * @param notAcceptableMillis 過負荷とみなされるミリ秒数
+     * @param listener 通知先。null の場合は通知しない
+     * @param offHeap サーバーごとの状態をヒープ外に保持する場合はtrue
+     */
+    public StreamingLogMonitor(
+            final Set<DetectorType> detectors,
+            final int notAcceptableCount,
+            final int subnetFaultPercent,
+            final int averageCount,
+            final int notAcceptableMillis,
+            final FaultListener listener,
+            final boolean offHeap) {
+        this.notAcceptableCount = notAcceptableCount;
+        this.subnetFaultPercent = subnetFaultPercent;
+        this.averageCount = averageCount;
+        this.notAcceptableMillis = notAcceptableMillis;
+        this.listener = listener;
+        this.detectRecovery = detectors.contains(DetectorType.RECOVERY);
+        this.detectTimeout = detectors.contains(DetectorType.TIMEOUT);
+        this.detectOverload = detectors.contains(DetectorType.OVERLOAD) && averageCount != OVERLOAD_DISABLED;
+        this.detectSubnet = detectors.contains(DetectorType.SUBNET);
+        this.detectLatency = detectors.contains(DetectorType.LATENCY);
+        this.offHeapServerDetector = offHeap
+                ? new OffHeapServerDetector(detectRecovery, detectTimeout, detectOverload, notAcceptableCount, averageCount, notAcceptableMillis, listener)
+                : null;
+        this.subnetCountStore = offHeap && detectSubnet ? new ServerStateStore(SubnetTimeoutDetector.COUNT_RECORD_SIZE) : null;
+    }
+
+    private static Set<DetectorType> defaultDetectors(final int averageCount) {
+
+        final Set<DetectorType> detectors = EnumSet.of(DetectorType.TIMEOUT, DetectorType.SUBNET);
+        if (averageCount != OVERLOAD_DISABLED) {
+            detectors.add(DetectorType.OVERLOAD);
+        }
+        return detectors;
+    }
+
+    /**
+     * 1行分のバイト列を検証・解析し、各状態に反映します。
+     *
+     * @param buf 行を含むバイト列
+     * @param from 行の開始位置
+     * @param to 行の終了位置(改行文字を含まない)
+     */
+    @Override
+    public void accept(final byte[] buf, final int from, final int to) {
+
+        if (!LogLineParser.parse(buf, from, to, record)) {
+            throw new LogMonitoringException(MESSAGE_INVALID_FORMAT);
+        }
+
+        accept(record);
+    }
+
+    /**
+     * 解析済みの1行分を各状態に反映します。
+     *
+     * @param record 解析済みの行
+     */
+    public void accept(final LogRecord record) {
+
+        final long serverKey = ServerAddress.pack(record.getAddress(), record.getPrefixLength());
+        if (offHeapServerDetector != null) {
+            offHeapServerDetector.accept(record);
+        } else {
+            if (detectRecovery) {
+                recoveryDetectorMap.computeIfAbsent(serverKey, this::createRecoveryDetector).accept(record);
+            }
+            if (detectTimeout) {
+                timeoutDetectorMap.computeIfAbsent(serverKey, this::createTimeoutDetector).accept(record);
+            }
+            if (detectOverload) {
+                overloadDetectorMap.computeIfAbsent(serverKey, this::createOverloadDetector).accept(record);
+            }
+        }
+        if (detectLatency) {
+            latencyHistogramMap.computeIfAbsent(serverKey, key -> new LatencyHistogram()).accept(record);
+        }
+        if (!detectSubnet) {
+            return;
+        }
+
+        final SubnetTimeoutDetector subnetTimeoutDetector = subnetTimeoutDetectorMap
+                .computeIfAbsent(ServerAddress.subnetKey(record.getAddress(), record.getPrefixLength()), this::createSubnetTimeoutDetector);
+        if (!subnetTimeoutDetector.hasPending()) {
+            pendingSubnetList.add(subnetTimeoutDetector);
+        }
+        subnetTimeoutDetector.accept(record);
+    }
+
+    private RecoveryDetector createRecoveryDetector(final long serverKey) {
+        return new RecoveryDetector(serverKey, listener);
+    }
+
+    private TimeoutDetector createTimeoutDetector(final long serverKey) {
+        return new TimeoutDetector(notAcceptableCount, serverKey, listener);
+    }
+
+    private OverloadDetector createOverloadDetector(final long serverKey) {
+        return new OverloadDetector(averageCount, notAcceptableMillis, serverKey, listener);
+    }
+
+    private SubnetTimeoutDetector createSubnetTimeoutDetector(final long subnetKey) {
+        return new SubnetTimeoutDetector(notAcceptableCount, subnetFaultPercent, subnetKey, listener, subnetCountStore);
+    }
+
+    /**
+     * サブネットごとに保留している同時刻の行をすべて評価します。
+     * 追記され続けるログの末尾まで読み込んだ時点で呼び出すと、次の時刻の行を待たずに故障を検出できます。
+     */
+    public void flushPending() {
+
+        for (final SubnetTimeoutDetector subnetTimeoutDetector : pendingSubnetList) {
+            subnetTimeoutDetector.flush();
+        }
+        pendingSubnetList.clear();
+    }
+
+    /**
+     * 解析条件と、各検出器が行をまたいで保持している状態を書き込みます。
+     * 保留中の行は評価してから書き込みます。検出済みの結果は含みません。
+     *
+     * @param output 書き込み先
+     */
+    public void writeState(final DataOutput output) throws IOException {
+
+        flushPending();
+
+        output.writeInt(notAcceptableCount);
+        output.writeInt(subnetFaultPercent);
+        output.writeInt(averageCount);
+        output.writeInt(notAcceptableMillis);
+        output.writeInt(detectorFlags());
+
+        // キーの初出順に書き込み、復元後の出力順を保つ
+        // ヒープ外に保持する場合も同じ形式で書き込むため、保持先によらずチェックポイントを引き継げる
+        if (offHeapServerDetector != null) {
+            offHeapServerDetector.writeRecoveryState(output);
+            offHeapServerDetector.writeTimeoutState(output);
+            offHeapServerDetector.writeOverloadState(output);
+        } else {
+            output.writeInt(recoveryDetectorMap.size());
+            for (int i = 0; i < recoveryDetectorMap.size(); i++) {
+                output.writeLong(recoveryDetectorMap.keyAt(i));
+                recoveryDetectorMap.valueAt(i).writeState(output);
+            }
+            output.writeInt(timeoutDetectorMap.size());
+            for (int i = 0; i < timeoutDetectorMap.size(); i++) {
+                output.writeLong(timeoutDetectorMap.keyAt(i));
+                timeoutDetectorMap.valueAt(i).writeState(output);
+            }
+            output.writeInt(overloadDetectorMap.size());
+            for (int i = 0; i < overloadDetectorMap.size(); i++) {
+                output.writeLong(overloadDetectorMap.keyAt(i));
+                overloadDetectorMap.valueAt(i).writeState(output);
+            }
+        }
+        output.writeInt(subnetTimeoutDetectorMap.size());
+        for (int i = 0; i < subnetTimeoutDetectorMap.size(); i++) {
+            output.writeLong(subnetTimeoutDetectorMap.keyAt(i));
+            subnetTimeoutDetectorMap.valueAt(i).writeState(output);
+        }
+        output.writeInt(latencyHistogramMap.size());
+        for (int i = 0; i < latencyHistogramMap.size(); i++) {
+            output.writeLong(latencyHistogramMap.keyAt(i));
+            latencyHistogramMap.valueAt(i).writeState(output);
+        }
+    }
+
+    /**
+     * writeState で書き込んだ状態を復元します。行を受け取る前に呼び出してください。
+     *
+     * @param input 読み込み元
+     */
+    public void readState(final DataInput input) throws IOException {
+
+        if (input.readInt() != notAcceptableCount
+                || input.readInt() != subnetFaultPercent
+                || input.readInt() != averageCount
+                || input.readInt() != notAcceptableMillis
+                || input.readInt() != detectorFlags()) {
+            throw new LogMonitoringException(MESSAGE_CHECKPOINT_MISMATCH);
+        }
+
+        if (offHeapServerDetector != null) {
+            offHeapServerDetector.readRecoveryState(input);
+            offHeapServerDetector.readTimeoutState(input);
+            offHeapServerDetector.readOverloadState(input);
+        } else {
+            final int recoveryServerCount = input.readInt();
+            for (int i = 0; i < recoveryServerCount; i++) {
+                recoveryDetectorMap.computeIfAbsent(input.readLong(), this::createRecoveryDetector).readState(input);
+            }
+            final int serverCount = input.readInt();
+            for (int i = 0; i < serverCount; i++) {
+                timeoutDetectorMap.computeIfAbsent(input.readLong(), this::createTimeoutDetector).readState(input);
+            }
+            final int overloadServerCount = input.readInt();
+            for (int i = 0; i < overloadServerCount; i++) {
+                overloadDetectorMap.computeIfAbsent(input.readLong(), this::createOverloadDetector).readState(input);
+            }
+        }
+        final int subnetCount = input.readInt();
+        for (int i = 0; i < subnetCount; i++) {
+            subnetTimeoutDetectorMap.computeIfAbsent(input.readLong(), this::createSubnetTimeoutDetector).readState(input);
+        }
+        final int latencyServerCount = input.readInt();
+        for (int i = 0; i < latencyServerCount; i++) {
+            latencyHistogramMap.computeIfAbsent(input.readLong(), key -> new LatencyHistogram()).readState(input);
+        }
+    }
+
+    /**
+     * 有効な検出器を1ビットずつ表した値を返却します。
+     */
+    private int detectorFlags() {
+        return (detectRecovery ? 1 : 0) | (detectTimeout ? 2 : 0) | (detectOverload ? 4 : 0) | (detectSubnet ? 8 : 0) | (detectLatency ? 16 : 0);
+    }
+
+    /**
+     * タイムアウトしたサーバーIPと、タイムアウトの回数によらない復帰までの秒数のPairのリストを返却します
+     *
+     * @return left:サーバーIP,right:復帰までの秒数
+     */
+    public List<Pair<String, List<Long>>> createRecoveryServerIPAndReturnTimePairList() {
+
+        if (offHeapServerDetector != null) {
+            return offHeapServerDetector.createRecoveryPairList();
+        }
+        return createPairList(recoveryDetectorMap, ServerAddress::format, RecoveryDetector::getRecoverySeconds);
+    }
+
+    /**
+     * notAcceptableCountの回数以上連続してタイムアウトしたサーバーIPと復帰までの秒数のPairのリストを返却します
+     *
+     * @return left:サーバーIP,right:復帰までの秒数
+     */
+    public List<Pair<String, List<Long>>> createTimeoutServerIPAndReturnTimePairList() {
+
+        if (offHeapServerDetector != null) {
+            return offHeapServerDetector.createTimeoutPairList();
+        }
+        return createPairList(timeoutDetectorMap, ServerAddress::format, TimeoutDetector::getTimeoutSeconds);
+    }
+
+    /**
+     * 過負荷状態になっていたサーバーIPと過負荷期間のPairのリストを返却します
+     *
+     * @return left:サーバーIP,right:過負荷期間
+     */
+    public List<Pair<String, List<String>>> createOverloadServerIPAndPeriodPairList() {
+
+        if (offHeapServerDetector != null) {
+            return offHeapServerDetector.createOverloadPairList();
+        }
+        return createPairList(overloadDetectorMap, ServerAddress::format, OverloadDetector::getOverloadPeriods);
+    }
+
+    /**
+     * subnetFaultPercent以上のサーバーがnotAcceptableCountの回数以上連続してタイムアウトしたサブネットと故障期間のPairのリストを返却します
+     *
+     * @return left:サブネット,right:故障期間
+     */
+    public List<Pair<String, List<String>>> createTimeoutSubnetAndReturnTimePairList() {
+
+        flushPending();
+
+        return createPairList(subnetTimeoutDetectorMap, ServerAddress::formatSubnet, SubnetTimeoutDetector::getTimeoutPeriods);
+    }
+
+    /**
+     * サーバーIPと応答時間のヒストグラムのPairのリストを返却します
+     * チェックポイントから状態を引き継いだ場合は、前回までの行も含めた集計結果です。
+     *
+     * @return left:サーバーIP,right:応答時間のヒストグラム
+     */
+    public List<Pair<String, LatencyHistogram>> createLatencyServerIPAndHistogramPairList() {
+
+        final List<Pair<String, LatencyHistogram>> pairList = new ArrayList<>();
+        for (int i = 0; i < latencyHistogramMap.size(); i++) {
+            pairList.add(new Pair<>(ServerAddress.format(latencyHistogramMap.keyAt(i)), latencyHistogramMap.valueAt(i)));
+        }
+
+        GroupingOrder.sort(pairList, Pair::getLeft, latencyHistogramMap.size());
+        return pairList;
+    }
+
+    /**
+     * 結果が空でないキーについて、出力用のキー文字列と結果のPairを従来の出力順で返却します。
+     */
+    private static <D, R> List<Pair<String, List<R>>> createPairList(
+            final LongObjectMap<D> detectorMap,
+            final LongFunction<String> keyFormatter,
+            final Function<D, List<R>> resultFunction) {
+
+        // LongObjectMap はキーを初出順に保持している
+        final List<Pair<String, List<R>>> pairList = new ArrayList<>();
+        for (int i = 0; i < detectorMap.size(); i++) {
+            final List<R> result = resultFunction.apply(detectorMap.valueAt(i));
+            if (!result.isEmpty()) {
+                pairList.add(new Pair<>(keyFormatter.apply(detectorMap.keyAt(i)), result));
+            }
+        }
+
+        GroupingOrder.sort(pairList, Pair::getLeft, detectorMap.size());
+        return pairList;
+    }
+}
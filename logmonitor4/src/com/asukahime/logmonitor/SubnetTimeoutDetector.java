@@ -0,0 +1,404 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 1サブネット分の行を時系列順に1行ずつ受け取り、サブネットの故障期間を求めます。
+ * Main#calcBetweenTimeoutBySubnet を逐次処理に置き換えたもので、結果は同一です。
+ *
+ * 故障とみなされているサーバー数はサーバーのタイムアウト回数が故障判定回数をまたいだ時のみ更新するため、
+ * 各行での判定はサブネットのサーバー数によらず一定時間です。
+ *
+ * 元の処理は同時刻の行をサーバーIP順に並べ替えてから評価するため、同時刻の行はいったん保留し、
+ * 時刻が進んだ時点でサーバーIP順に評価します。
+ *
+ * listener を指定した場合は、サブネットを故障とみなした時点と故障期間が終了した時点で通知します。
+ * 通知済みの故障期間は取り消せないため、その場合はこれまでに現れたサーバーを母数として判定します。
+ *
+ * countStore を指定した場合は、サーバーごとのタイムアウト回数をヒープ外の ServerStateStore に保持します。
+ * countStore は複数のサブネットで共有でき、サブネット内のサーバーは初出順にレコード番号でつなぎます。
+ */
+public class SubnetTimeoutDetector {
+
+    private static final int INITIAL_PENDING_CAPACITY = 8;
+
+    // この件数以下の範囲は挿入ソートで並べ替える
+    private static final int INSERTION_SORT_THRESHOLD = 8;
+
+    // 最新タイムアウト時刻が未設定であることを表す値(元の処理の null に相当)
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    // countStore のレコードの項目(タイムアウト回数と、同じサブネットの次のサーバーのレコード番号 + 1。0は末尾)
+    private static final int COUNT_OFFSET = 0;
+    private static final int NEXT_SERVER_OFFSET = Integer.BYTES;
+
+    // countStore のキーを除く1レコードのバイト数
+    static final int COUNT_RECORD_SIZE = Integer.BYTES * 2;
+
+    private final int notAcceptableCount;
+
+    private final int faultPercent;
+
+    private final long subnetKey;
+
+    private final FaultListener listener;
+
+    private final List<String> timeoutPeriods = new ArrayList<>();
+
+    // サーバーごとのタイムアウト回数(countStore を指定した場合はnull)
+    private final LongIntMap ipTimeoutStatusMap;
+
+    private final ServerStateStore countStore;
+
+    // countStore に保持する場合の、サブネットのサーバー数と初出順の先頭・末尾のレコード番号
+    private int storedServerCount = 0;
+    private int firstServerIndex = -1;
+    private int lastServerIndex = -1;
+
+    // タイムアウト回数が故障判定回数以上のサーバー数
+    private int faultServerCount = 0;
+
+    // 評価待ちの同時刻の行(時刻はエポック秒)
+    private long pendingDate = Long.MIN_VALUE;
+    private long[] pendingServerKeys = new long[INITIAL_PENDING_CAPACITY];
+    private boolean[] pendingTimeouts = new boolean[INITIAL_PENDING_CAPACITY];
+    private int pendingSize = 0;
+
+    // 評価待ちの行を並べ替えるための作業領域
+    // (行の位置、サーバーIPの文字列順を表す値(ServerAddress#textOrder)、マージ用の一時領域)
+    private int[] sortedIndexes = new int[0];
+    private long[] textOrders = new long[0];
+    private int[] mergeBuffer = new int[0];
+
+    // 直前に評価した行の時刻
+    private long previousDate = 0;
+
+    // 最新タイムアウト時刻
+    private long latestTimeoutStartDate = NO_DATE;
+
+    // 故障フラグ
+    private boolean isFault = false;
+
+    /**
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param faultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     */
+    public SubnetTimeoutDetector(final int notAcceptableCount, final int faultPercent) {
+        this(notAcceptableCount, faultPercent, 0, null);
+    }
+
+    /**
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param faultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     * @param subnetKey 通知に使用するサブネットのキー
+     * @param listener 通知先。null の場合は通知しない
+     */
+    public SubnetTimeoutDetector(final int notAcceptableCount, final int faultPercent, final long subnetKey, final FaultListener listener) {
+        this(notAcceptableCount, faultPercent, subnetKey, listener, null);
+    }
+
+    /**
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param faultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     * @param subnetKey 通知に使用するサブネットのキー
+     * @param listener 通知先。null の場合は通知しない
+     * @param countStore サーバーごとのタイムアウト回数の保持先(レコードは COUNT_RECORD_SIZE バイト)。null の場合はヒープに保持する
+     */
+    public SubnetTimeoutDetector(final int notAcceptableCount, final int faultPercent, final long subnetKey, final FaultListener listener,
+                                 final ServerStateStore countStore) {
+        this.notAcceptableCount = notAcceptableCount;
+        this.faultPercent = faultPercent;
+        this.subnetKey = subnetKey;
+        this.listener = listener;
+        this.countStore = countStore;
+        this.ipTimeoutStatusMap = countStore == null ? new LongIntMap() : null;
+    }
+
+    /**
+     * 1行分の状態を反映します。
+     *
+     * @param record 解析済みの行
+     */
+    public void accept(final LogRecord record) {
+
+        if (record.getEpochSecond() < pendingDate) {
+            throw new LogMonitoringException(LogMonitorConstant.MESSAGE_NOT_CHRONOLOGICAL);
+        }
+        if (pendingSize > 0 && record.getEpochSecond() > pendingDate) {
+            flush();
+        }
+
+        // 全サーバーの故障を条件とする場合、元の処理ではファイル全体に現れるサーバーを母数とするため、
+        // 初めて現れたサーバーはファイル先頭からタイムアウト回数0として扱われている。
+        // そのため、これまでに検出した故障期間は元の処理では検出されないものとして取り消す。
+        final long serverKey = ServerAddress.pack(record.getAddress(), record.getPrefixLength());
+        if (listener == null && faultPercent == LogMonitorConstant.MAX_SUBNET_FAULT_PERCENT && addServer(serverKey) && notAcceptableCount > 0) {
+            timeoutPeriods.clear();
+            isFault = false;
+        }
+
+        if (pendingSize == pendingServerKeys.length) {
+            pendingServerKeys = Arrays.copyOf(pendingServerKeys, pendingSize * 2);
+            pendingTimeouts = Arrays.copyOf(pendingTimeouts, pendingSize * 2);
+        }
+        pendingDate = record.getEpochSecond();
+        pendingServerKeys[pendingSize] = serverKey;
+        pendingTimeouts[pendingSize] = record.isTimeout();
+        pendingSize++;
+    }
+
+    /**
+     * 保留中の行をすべて評価します。ファイル末尾まで読み込んだ後に呼び出してください。
+     */
+    public void flush() {
+
+        // サーバーIPの文字列順に安定ソート
+        // サブネットのサーバー数が多い場合は同時刻の行も多くなるため、件数が多い範囲はマージソートとする
+        if (sortedIndexes.length < pendingSize) {
+            sortedIndexes = new int[pendingServerKeys.length];
+            textOrders = new long[pendingServerKeys.length];
+            mergeBuffer = new int[pendingServerKeys.length];
+        }
+        for (int i = 0; i < pendingSize; i++) {
+            sortedIndexes[i] = i;
+            textOrders[i] = ServerAddress.textOrder(pendingServerKeys[i]);
+        }
+        sortPending(0, pendingSize);
+
+        for (int i = 0; i < pendingSize; i++) {
+            final int index = sortedIndexes[i];
+            evaluate(pendingServerKeys[index], pendingTimeouts[index]);
+        }
+        pendingSize = 0;
+    }
+
+    /**
+     * sortedIndexes の [from, to) の範囲を、サーバーIPの文字列順に安定ソートします。
+     */
+    private void sortPending(final int from, final int to) {
+
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final int index = sortedIndexes[i];
+                int j = i - 1;
+                while (j >= from && textOrders[sortedIndexes[j]] > textOrders[index]) {
+                    sortedIndexes[j + 1] = sortedIndexes[j];
+                    j--;
+                }
+                sortedIndexes[j + 1] = index;
+            }
+            return;
+        }
+
+        final int mid = (from + to) >>> 1;
+        sortPending(from, mid);
+        sortPending(mid, to);
+        if (textOrders[sortedIndexes[mid - 1]] <= textOrders[sortedIndexes[mid]]) {
+            return;
+        }
+
+        System.arraycopy(sortedIndexes, from, mergeBuffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && textOrders[mergeBuffer[left]] <= textOrders[mergeBuffer[right]])) {
+                sortedIndexes[i] = mergeBuffer[left++];
+            } else {
+                sortedIndexes[i] = mergeBuffer[right++];
+            }
+        }
+    }
+
+    /**
+     * サーバーを母数に加えます。
+     *
+     * @return 初めて現れたサーバーの場合はtrue
+     */
+    private boolean addServer(final long serverKey) {
+
+        if (!addTimeoutCount(serverKey)) {
+            return false;
+        }
+
+        if (notAcceptableCount == 0) {
+            faultServerCount++;
+        }
+        return true;
+    }
+
+    private void evaluate(final long serverKey, final boolean timeout) {
+
+        // 故障サーバーの割合を条件とする場合は、評価した時点までに現れたサーバーを母数とする
+        addServer(serverKey);
+
+        // タイムアウトの場合、最新タイムアウト時刻を記録
+        // 各IPごとのタイムアウト回数をインクリメント
+        final int timeoutCount = getTimeoutCount(serverKey);
+        if (timeout) {
+            // 一部のサーバーの故障を条件とする場合、故障期間中は開始時刻を更新しない
+            if (timeoutCount == 0 && (faultPercent == LogMonitorConstant.MAX_SUBNET_FAULT_PERCENT || !isFault)) {
+                latestTimeoutStartDate = pendingDate;
+            }
+
+            putTimeoutCount(serverKey, timeoutCount + 1);
+            if (timeoutCount < notAcceptableCount && timeoutCount + 1 >= notAcceptableCount) {
+                faultServerCount++;
+            }
+            final boolean wasFault = isFault;
+            isFault = isSubnetFault(faultServerCount, serverCount(), faultPercent);
+            if (listener != null && isFault && !wasFault && latestTimeoutStartDate != NO_DATE) {
+                listener.onSubnetFault(subnetKey, latestTimeoutStartDate);
+            }
+
+            // タイムアウトしていない場合、各IPごとのタイムアウト回数を0にリセット
+            // 故障フラグがtrue の場合は最新タイムアウト時刻から直前の行の時刻までの期間を記録し、故障フラグをfalseにする
+            // 一部のサーバーの故障を条件とする場合は、故障サーバーの割合が条件を下回った時点で故障期間を終了する
+        } else {
+            putTimeoutCount(serverKey, 0);
+            if (timeoutCount >= notAcceptableCount && notAcceptableCount > 0) {
+                faultServerCount--;
+            }
+            if (isFault && (faultPercent == LogMonitorConstant.MAX_SUBNET_FAULT_PERCENT
+                    || !isSubnetFault(faultServerCount, serverCount(), faultPercent))) {
+                final String period = formatDate(latestTimeoutStartDate) + "-" + formatDate(previousDate);
+                timeoutPeriods.add(period);
+                if (listener != null) {
+                    listener.onSubnetRecovery(subnetKey, period);
+                }
+                latestTimeoutStartDate = NO_DATE;
+                isFault = false;
+            }
+        }
+
+        previousDate = pendingDate;
+    }
+
+    /**
+     * 行をまたいで保持している状態(サーバーごとのタイムアウト回数と故障状態)を書き込みます。
+     * 保留中の行は評価してから書き込みます。結果のリストは含みません。
+     *
+     * @param output 書き込み先
+     */
+    public void writeState(final DataOutput output) throws IOException {
+
+        flush();
+
+        output.writeLong(pendingDate);
+        output.writeLong(previousDate);
+        output.writeLong(latestTimeoutStartDate);
+        output.writeBoolean(isFault);
+        output.writeInt(faultServerCount);
+        output.writeInt(serverCount());
+        if (countStore == null) {
+            for (int i = 0; i < ipTimeoutStatusMap.size(); i++) {
+                output.writeLong(ipTimeoutStatusMap.keyAt(i));
+                output.writeInt(ipTimeoutStatusMap.valueAt(i));
+            }
+            return;
+        }
+        for (int index = firstServerIndex; index >= 0; index = countStore.getInt(index, NEXT_SERVER_OFFSET) - 1) {
+            output.writeLong(countStore.keyAt(index));
+            output.writeInt(countStore.getInt(index, COUNT_OFFSET));
+        }
+    }
+
+    /**
+     * writeState で書き込んだ状態を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readState(final DataInput input) throws IOException {
+
+        pendingDate = input.readLong();
+        previousDate = input.readLong();
+        latestTimeoutStartDate = input.readLong();
+        isFault = input.readBoolean();
+        faultServerCount = input.readInt();
+        final int serverCount = input.readInt();
+        for (int i = 0; i < serverCount; i++) {
+            final long serverKey = input.readLong();
+            addTimeoutCount(serverKey);
+            putTimeoutCount(serverKey, input.readInt());
+        }
+    }
+
+    /**
+     * サーバーのタイムアウト回数を0として追加します。
+     *
+     * @return 初めて現れたサーバーの場合はtrue
+     */
+    private boolean addTimeoutCount(final long serverKey) {
+
+        if (countStore == null) {
+            return ipTimeoutStatusMap.putIfAbsent(serverKey, 0);
+        }
+        if (countStore.indexOf(serverKey) >= 0) {
+            return false;
+        }
+
+        final int index = countStore.computeIfAbsent(serverKey);
+        if (lastServerIndex >= 0) {
+            countStore.putInt(lastServerIndex, NEXT_SERVER_OFFSET, index + 1);
+        } else {
+            firstServerIndex = index;
+        }
+        lastServerIndex = index;
+        storedServerCount++;
+        return true;
+    }
+
+    private int getTimeoutCount(final long serverKey) {
+        return countStore == null ? ipTimeoutStatusMap.get(serverKey, 0) : countStore.getInt(countStore.indexOf(serverKey), COUNT_OFFSET);
+    }
+
+    private void putTimeoutCount(final long serverKey, final int timeoutCount) {
+
+        if (countStore == null) {
+            ipTimeoutStatusMap.put(serverKey, timeoutCount);
+        } else {
+            countStore.putInt(countStore.indexOf(serverKey), COUNT_OFFSET, timeoutCount);
+        }
+    }
+
+    /**
+     * @return これまでに現れたサブネットのサーバー数
+     */
+    private int serverCount() {
+        return countStore == null ? ipTimeoutStatusMap.size() : storedServerCount;
+    }
+
+    /**
+     * @return 評価待ちの行がある場合はtrue
+     */
+    public boolean hasPending() {
+        return pendingSize > 0;
+    }
+
+    /**
+     * 故障サーバーの割合がサブネットの故障とみなす割合以上であるかを判定します。
+     *
+     * @param faultServerCount 故障とみなされているサーバー数
+     * @param serverCount サブネットのサーバー数
+     * @param faultPercent サブネットの故障とみなす故障サーバーの割合(パーセント)
+     * @return サブネットの故障とみなす場合はtrue
+     */
+    public static boolean isSubnetFault(final int faultServerCount, final int serverCount, final int faultPercent) {
+        return (long) faultServerCount * LogMonitorConstant.MAX_SUBNET_FAULT_PERCENT >= (long) faultPercent * serverCount;
+    }
+
+    private static String formatDate(final long date) {
+        return date == NO_DATE ? "null" : LogTimestamp.format(date);
+    }
+
+    /**
+     * @return サブネットの故障期間を文字列化したリスト(yyyyMMddHHmmss-yyyyMMddHHmmss)
+     */
+    public List<String> getTimeoutPeriods() {
+        return timeoutPeriods;
+    }
+}
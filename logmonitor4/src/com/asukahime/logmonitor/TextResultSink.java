@@ -0,0 +1,85 @@
+package com.asukahime.logmonitor;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static com.asukahime.logmonitor.LogMonitorConstant.*;
+
+/**
+ * 従来と同じテキスト形式で出力します。
+ * 例:IP : 10.20.30.1/16, SECONDS_TO_RETURN : 20、SUBNET_IP : 10.20.***.***, FAULT_PERIOD : 20210717101010-20210717101020
+ * 応答時間のパーセンタイルは IP : 10.20.30.1/16, P50 : 12, P90 : 30, P99 : 95, MAX : 120, TIMEOUT_RATIO : 0.0100 の形式で、
+ * 応答した ping がない場合の応答時間は "-" とします。
+ */
+public class TextResultSink extends BufferedResultSink {
+
+    private static final byte[] SERVER_PREFIX = "IP : ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SUBNET_PREFIX = "SUBNET_IP : ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LABEL_SEPARATOR = ", ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_SEPARATOR = " : ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PERCENTILE_PREFIX = "P".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAX = "MAX".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMEOUT_RATIO = "TIMEOUT_RATIO".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO_VALUE = TIMEOUT_LETTER.getBytes(StandardCharsets.US_ASCII);
+
+    public TextResultSink(final PrintStream out) {
+        super(out);
+    }
+
+    @Override
+    public void writeSeconds(final ResultType type, final CharSequence address, final long seconds) {
+
+        writeHeader(type, address);
+        writeDecimal(seconds);
+        writeLineSeparator();
+    }
+
+    @Override
+    public void writePeriod(final ResultType type, final CharSequence address, final CharSequence period) {
+
+        writeHeader(type, address);
+        write(period);
+        writeLineSeparator();
+    }
+
+    @Override
+    public void writeLatency(final CharSequence address, final LatencyHistogram histogram) {
+
+        write(SERVER_PREFIX);
+        write(address);
+        for (final int percentile : LATENCY_PERCENTILES) {
+            write(LABEL_SEPARATOR);
+            write(PERCENTILE_PREFIX);
+            writeDecimal(percentile);
+            write(VALUE_SEPARATOR);
+            writeMillis(histogram.getPercentile(percentile));
+        }
+        write(LABEL_SEPARATOR);
+        write(MAX);
+        write(VALUE_SEPARATOR);
+        writeMillis(histogram.getMax());
+        write(LABEL_SEPARATOR);
+        write(TIMEOUT_RATIO);
+        write(VALUE_SEPARATOR);
+        writeRatio(histogram.getTimeoutCount(), histogram.getTotalCount());
+        writeLineSeparator();
+    }
+
+    private void writeMillis(final int millis) {
+
+        if (millis == LatencyHistogram.NO_VALUE) {
+            write(NO_VALUE);
+        } else {
+            writeDecimal(millis);
+        }
+    }
+
+    private void writeHeader(final ResultType type, final CharSequence address) {
+
+        write(type.isSubnet() ? SUBNET_PREFIX : SERVER_PREFIX);
+        write(address);
+        write(LABEL_SEPARATOR);
+        write(type.getLabel());
+        write(VALUE_SEPARATOR);
+    }
+}
@@ -0,0 +1,109 @@
+package com.asukahime.logmonitor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 1サーバー分の行を1行ずつ受け取り、タイムアウトから復帰するまでの秒数を求めます。
+ * Main#calcBetweenTimeout を逐次処理に置き換えたもので、結果は同一です。
+ *
+ * listener を指定した場合は、故障とみなした時点と復帰した時点で通知します。
+ */
+public class TimeoutDetector {
+
+    private final int notAcceptableCount;
+
+    private final long serverKey;
+
+    private final FaultListener listener;
+
+    private final LongList timeoutSeconds = new LongList();
+
+    // 連続するタイムアウトの初回の時刻(エポック秒)
+    private long timeoutEpochSecond = 0;
+
+    private int timeoutCount = 0;
+
+    public TimeoutDetector(final int notAcceptableCount) {
+        this(notAcceptableCount, 0, null);
+    }
+
+    /**
+     * @param notAcceptableCount 故障とみなされるタイムアウト回数
+     * @param serverKey 通知に使用するサーバーのキー
+     * @param listener 通知先。null の場合は通知しない
+     */
+    public TimeoutDetector(final int notAcceptableCount, final long serverKey, final FaultListener listener) {
+        this.notAcceptableCount = notAcceptableCount;
+        this.serverKey = serverKey;
+        this.listener = listener;
+    }
+
+    /**
+     * 1行分の状態を反映します。
+     *
+     * @param record 解析済みの行
+     */
+    public void accept(final LogRecord record) {
+
+        // 連続するタイムアウトの初回のみ時刻を記録
+        // 連続するタイムアウト回数をインクリメント
+        if (record.isTimeout()) {
+            if (timeoutCount == 0) {
+                timeoutEpochSecond = record.getEpochSecond();
+            }
+
+            timeoutCount++;
+            if (listener != null && timeoutCount == Math.max(notAcceptableCount, 1)) {
+                listener.onServerFault(serverKey, timeoutEpochSecond);
+            }
+            return;
+        }
+
+        if (timeoutCount == 0) {
+            return;
+        }
+
+        // タイムアウトから復帰するまでの連続タイムアウト回数が非許容回数以上の場合、復帰までの秒数を記録
+        if (timeoutCount >= notAcceptableCount) {
+            final long seconds = record.getEpochSecond() - timeoutEpochSecond;
+            timeoutSeconds.add(seconds);
+            if (listener != null) {
+                listener.onServerRecovery(serverKey, seconds);
+            }
+        }
+
+        // 記録用変数を初期化
+        timeoutCount = 0;
+    }
+
+    /**
+     * 行をまたいで保持している状態(連続タイムアウト回数と初回の時刻)を書き込みます。
+     * 結果のリストは含みません。
+     *
+     * @param output 書き込み先
+     */
+    public void writeState(final DataOutput output) throws IOException {
+        output.writeInt(timeoutCount);
+        output.writeLong(timeoutEpochSecond);
+    }
+
+    /**
+     * writeState で書き込んだ状態を復元します。
+     *
+     * @param input 読み込み元
+     */
+    public void readState(final DataInput input) throws IOException {
+        timeoutCount = input.readInt();
+        timeoutEpochSecond = input.readLong();
+    }
+
+    /**
+     * @return タイムアウトから復帰するまでの秒数のリスト。タイムアウトしていない場合は空のリスト。
+     */
+    public List<Long> getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+}
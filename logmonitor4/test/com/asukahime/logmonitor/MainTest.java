@@ -6,6 +6,14 @@ import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 import static com.asukahime.logmonitor.LogMonitorConstant.*;
@@ -225,4 +233,679 @@ public class MainTest {
                         + "SUBNET_IP : 1.1.1.***, FAULT_PERIOD : 20210717101033-20210717101043\r\n"
                 , out.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test_doProcess_ストリーミング_不正なオプション() {
+        final String validFileName = "test/resources/valid_monitoring.log";
+
+        final String[] args = new String[3];
+        args[0] = validFileName;
+        args[1] = "1";
+        args[2] = "--unknown";
+
+        Main.main(args);
+        assertEquals(MESSAGE_INVALID_OPTION + "\r\n", out.toString());
+    }
+
+    @Test
+    public void test_doProcess_ストリーミング_フォーマット不正() {
+        final String invalidFormatFileName = "test/resources/invalid_monitoring_2_1.log";
+
+        final String[] args = new String[3];
+        args[0] = invalidFormatFileName;
+        args[1] = "1";
+        args[2] = OPTION_STREAM;
+
+        Main.main(args);
+        assertEquals(MESSAGE_INVALID_FORMAT + "\r\n", out.toString());
+    }
+
+    @Test
+    public void test_doProcess_ストリーミング_0から始まるオクテット() {
+        final String invalidFormatFileName = "test/resources/invalid_monitoring_5.log";
+
+        // 0から始まるオクテットは 10.1.1.1 と区別できないため、フォーマット不正とする
+        Main.main(new String[] {invalidFormatFileName, "1", OPTION_STREAM});
+        Main.main(new String[] {invalidFormatFileName, "1", OPTION_MMAP});
+        Main.main(new String[] {invalidFormatFileName, "1", OPTION_OFF_HEAP});
+        assertEquals(MESSAGE_INVALID_FORMAT + "\r\n"
+                        + MESSAGE_INVALID_FORMAT + "\r\n"
+                        + MESSAGE_INVALID_FORMAT + "\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_ストリーミング_故障期間複数() {
+        final String validFileName = "test/resources/valid_monitoring_1.log";
+
+        final String[] args = new String[3];
+        args[0] = validFileName;
+        args[1] = "1";
+        args[2] = OPTION_STREAM;
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/16, SECONDS_TO_RETURN : 10\r\n"
+                        + "IP : 1.1.1.1/16, SECONDS_TO_RETURN : 10\r\n"
+                        + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_ストリーミング_サブネット故障期間_複数() {
+        final String validFileName = "test/resources/valid_monitoring_3.log";
+
+        final String[] args = new String[3];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_STREAM;
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/16, SECONDS_TO_RETURN : 30\r\n"
+                        + "IP : 1.1.1.2/16, SECONDS_TO_RETURN : 30\r\n"
+                        + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "SUBNET_IP : 1.1.***.***, FAULT_PERIOD : 20210717101011-20210717101031\r\n"
+                        + "SUBNET_IP : 1.1.1.***, FAULT_PERIOD : 20210717101033-20210717101043\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_メモリマップ_サブネット故障期間_複数() {
+        final String validFileName = "test/resources/valid_monitoring_3.log";
+
+        final String[] args = new String[4];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_MMAP;
+        args[3] = OPTION_THREADS + "2";
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/16, SECONDS_TO_RETURN : 30\r\n"
+                        + "IP : 1.1.1.2/16, SECONDS_TO_RETURN : 30\r\n"
+                        + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "SUBNET_IP : 1.1.***.***, FAULT_PERIOD : 20210717101011-20210717101031\r\n"
+                        + "SUBNET_IP : 1.1.1.***, FAULT_PERIOD : 20210717101033-20210717101043\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_正常_サブネット故障期間_故障割合指定() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        final String[] args = new String[3];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_SUBNET_FAULT_PERCENT + "60";
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "SUBNET_IP : 1.1.1.***, FAULT_PERIOD : 20210717101011-20210717101022\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_正常_サブネット故障期間_故障割合未達() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        final String[] args = new String[3];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_SUBNET_FAULT_PERCENT + "70";
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_正常_サブネット故障期間_任意プレフィックス長() {
+        final String validFileName = "test/resources/valid_monitoring_5.log";
+
+        final String[] args = new String[2];
+        args[0] = validFileName;
+        args[1] = "2";
+
+        Main.main(args);
+        assertEquals("IP : 10.0.31.2/20, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 10.0.16.1/20, SECONDS_TO_RETURN : 20\r\n"
+                        + "SUBNET_IP : 10.0.16.0/20, FAULT_PERIOD : 20210717101010-20210717101020\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_正常_サブネット故障期間_範囲外のアドレス() {
+        final String validFileName = "test/resources/valid_monitoring_7.log";
+
+        final String[] args = new String[2];
+        args[0] = validFileName;
+        args[1] = "1";
+
+        // 255を超えるオクテット・32を超えるプレフィックス長はアドレスに変換せず、空のサブネットとする
+        Main.main(args);
+        assertEquals("IP : 300.0.16.1/20, SECONDS_TO_RETURN : 10\r\n"
+                        + "IP : 10.0.16.2/33, SECONDS_TO_RETURN : 10\r\n"
+                        + "SUBNET_IP : , FAULT_PERIOD : 20210717101011-20210717101011\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_アドレス順_範囲外のアドレス() {
+        final String validFileName = "test/resources/valid_monitoring_8.log";
+
+        final String[] args = new String[3];
+        args[0] = validFileName;
+        args[1] = "1";
+        args[2] = OPTION_SORT;
+
+        // 範囲外のアドレスの行の空のサブネットは、アドレスのサブネットより後とする
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 1\r\n"
+                        + "IP : 999.1.1.1/20, SECONDS_TO_RETURN : 2\r\n"
+                        + "SUBNET_IP : 1.1.1.***, FAULT_PERIOD : 20210717101011-20210717101011\r\n"
+                        + "SUBNET_IP : , FAULT_PERIOD : 20210717101010-20210717101010\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_並列_アドレス順() {
+        final String validFileName = "test/resources/valid_monitoring_5.log";
+
+        final String[] args = new String[5];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_PARALLEL;
+        args[3] = OPTION_THREADS + "2";
+        args[4] = OPTION_SORT;
+
+        Main.main(args);
+        assertEquals("IP : 10.0.16.1/20, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 10.0.31.2/20, SECONDS_TO_RETURN : 20\r\n"
+                        + "SUBNET_IP : 10.0.16.0/20, FAULT_PERIOD : 20210717101010-20210717101020\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_出力形式_JSONLines() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        final String[] args = new String[4];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_SUBNET_FAULT_PERCENT + "60";
+        args[3] = OPTION_FORMAT + FORMAT_JSON_LINES;
+
+        Main.main(args);
+        assertEquals("{\"type\":\"SECONDS_TO_RETURN\",\"ip\":\"1.1.1.1/24\",\"seconds\":20}\r\n"
+                        + "{\"type\":\"SECONDS_TO_RETURN\",\"ip\":\"1.1.1.2/24\",\"seconds\":20}\r\n"
+                        + "{\"type\":\"FAULT_PERIOD\",\"subnet\":\"1.1.1.***\",\"start\":\"20210717101011\",\"end\":\"20210717101022\"}\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_出力形式_CSV() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        final String[] args = new String[5];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_SUBNET_FAULT_PERCENT + "60";
+        args[3] = OPTION_FORMAT + FORMAT_CSV;
+        args[4] = OPTION_STREAM;
+
+        Main.main(args);
+        assertEquals("type,ip,subnet,seconds,start,end\r\n"
+                        + "SECONDS_TO_RETURN,1.1.1.1/24,,20,,\r\n"
+                        + "SECONDS_TO_RETURN,1.1.1.2/24,,20,,\r\n"
+                        + "FAULT_PERIOD,,1.1.1.***,,20210717101011,20210717101022\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_ストリーミング_過負荷期間() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        final String[] args = new String[4];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_OVERLOAD_COUNT + "1";
+        args[3] = OPTION_OVERLOAD_MILLIS + "14";
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.3/24, OVERLOAD_PERIOD : 20210717101022-20210717101022\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_ストリーミング_過負荷期間_指定平均回数を超える行数() {
+        final String validFileName = "test/resources/valid_monitoring_9.log";
+        final String expected = "IP : 1.1.1.2/24, OVERLOAD_PERIOD : 20210717101020-20210717101040\r\n"
+                + "IP : 1.1.1.2/24, OVERLOAD_PERIOD : 20210717101040-20210717101130\r\n"
+                + "IP : 1.1.1.2/24, OVERLOAD_PERIOD : 20210717101130-20210717101200\r\n";
+
+        // 指定平均回数の数倍の行で、直近の応答時間の入れ替えを繰り返しても、毎回平均を計算し直した場合と同じ期間となる
+        Main.main(new String[] {validFileName, "1", OPTION_DETECTORS + "overload", OPTION_OVERLOAD_COUNT + "3", OPTION_OVERLOAD_MILLIS + "1000"});
+        Main.main(new String[] {validFileName, "1", OPTION_DETECTORS + "overload", OPTION_OVERLOAD_COUNT + "3", OPTION_OVERLOAD_MILLIS + "1000",
+                OPTION_OFF_HEAP});
+        assertEquals(expected + expected, out.toString());
+    }
+
+    @Test
+    public void test_doProcess_検出器の指定() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        final String[] args = new String[5];
+        args[0] = validFileName;
+        args[1] = "3";
+        args[2] = OPTION_DETECTORS + "recovery,overload";
+        args[3] = OPTION_OVERLOAD_COUNT + "1";
+        args[4] = OPTION_OVERLOAD_MILLIS + "14";
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/24, RECOVERY_SECONDS : 20\r\n"
+                        + "IP : 1.1.1.2/24, RECOVERY_SECONDS : 20\r\n"
+                        + "IP : 1.1.1.3/24, OVERLOAD_PERIOD : 20210717101022-20210717101022\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_応答時間のパーセンタイル() {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+
+        Main.main(new String[] {validFileName, "2", OPTION_DETECTORS + "latency", OPTION_SORT});
+        Main.main(new String[] {validFileName, "2", OPTION_DETECTORS + "timeout,latency", OPTION_SORT, OPTION_FORMAT + FORMAT_CSV});
+        assertEquals("IP : 1.1.1.1/24, P50 : 10, P90 : 10, P99 : 10, MAX : 10, TIMEOUT_RATIO : 0.6667\r\n"
+                        + "IP : 1.1.1.2/24, P50 : 11, P90 : 11, P99 : 11, MAX : 11, TIMEOUT_RATIO : 0.6667\r\n"
+                        + "IP : 1.1.1.3/24, P50 : 13, P90 : 15, P99 : 15, MAX : 15, TIMEOUT_RATIO : 0.0000\r\n"
+                        + "type,ip,subnet,seconds,start,end,p50,p90,p99,max,timeout_ratio\r\n"
+                        + "SECONDS_TO_RETURN,1.1.1.1/24,,20,,,,,,,\r\n"
+                        + "SECONDS_TO_RETURN,1.1.1.2/24,,20,,,,,,,\r\n"
+                        + "LATENCY,1.1.1.1/24,,,,,10,10,10,10,0.6667\r\n"
+                        + "LATENCY,1.1.1.2/24,,,,,11,11,11,11,0.6667\r\n"
+                        + "LATENCY,1.1.1.3/24,,,,,13,15,15,15,0.0000\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_外部ソート() {
+        final String validFileName = "test/resources/valid_monitoring_6.log";
+
+        final String[] args = new String[3];
+        args[0] = validFileName;
+        args[1] = "2";
+        args[2] = OPTION_EXTERNAL_SORT;
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_複数ファイル() {
+        final String validDirectoryName = "test/resources/multiple_monitoring";
+
+        final String[] args = new String[2];
+        args[0] = validDirectoryName;
+        args[1] = "2";
+
+        Main.main(args);
+        assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_複数ファイル_並列() {
+        final String validDirectoryName = "test/resources/multiple_monitoring";
+
+        // 1行ずつ解析するため、グループごとの並列計算は指定できない
+        Main.main(new String[] {validDirectoryName, "2", OPTION_PARALLEL});
+        Main.main(new String[] {validDirectoryName, "2", OPTION_PARALLEL, OPTION_STREAM});
+        assertEquals(MESSAGE_MULTIPLE_FILES_NOT_SUPPORTED + "\r\n"
+                        + MESSAGE_INVALID_OPTION + "\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_空のディレクトリ() throws Exception {
+        final Path emptyDirectory = Files.createTempDirectory("logmonitor");
+
+        try {
+            Main.main(new String[] {emptyDirectory.toString(), "1"});
+            assertEquals(MESSAGE_FILE_CAN_NOT_READ + "\r\n", out.toString());
+        } finally {
+            Files.delete(emptyDirectory);
+        }
+    }
+
+    @Test
+    public void test_doProcess_圧縮ファイル() {
+        final String validFileName = "test/resources/valid_monitoring_4.log.gz";
+
+        final String[] args = new String[2];
+        args[0] = validFileName;
+        args[1] = "2";
+
+        Main.main(args);
+        Main.main(new String[] {validFileName, "2", OPTION_STREAM});
+        Main.main(new String[] {validFileName, "2", OPTION_MMAP});
+        Main.main(new String[] {validFileName, "2", OPTION_FOLLOW});
+        assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                        + MESSAGE_COMPRESSED_FILE_NOT_SUPPORTED + "\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_不正な行の除外() throws Exception {
+        final String invalidFormatFileName = "test/resources/invalid_monitoring_4.log";
+        final Path quarantineFile = Files.createTempFile("logmonitor", ".quarantine");
+
+        try {
+            // 既定では最初の不正な行で中断する
+            Main.main(new String[] {invalidFormatFileName, "2"});
+            Main.main(new String[] {invalidFormatFileName, "2", OPTION_STREAM});
+            // 除外を指定した場合は、不正な行を隔離ファイルに書き出して解析を続ける
+            Main.main(new String[] {invalidFormatFileName, "2", OPTION_LENIENT, OPTION_QUARANTINE + quarantineFile});
+            Main.main(new String[] {invalidFormatFileName, "2", OPTION_LENIENT, OPTION_MMAP});
+            assertEquals(MESSAGE_INVALID_FORMAT + "\r\n"
+                            + MESSAGE_INVALID_FORMAT + "\r\n"
+                            + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                    , out.toString());
+
+            final List<String> quarantineLines = Files.readAllLines(quarantineFile);
+            assertEquals(2, quarantineLines.size());
+            assertEquals(invalidFormatFileName + ":4:2021071710101,1.1.1.1/24,-", quarantineLines.get(0));
+            assertEquals(invalidFormatFileName + ":9:20210717101031,1.1.1.2/24,11x", quarantineLines.get(1));
+        } finally {
+            Files.delete(quarantineFile);
+        }
+    }
+
+    @Test
+    public void test_doProcess_列指向形式() throws Exception {
+        final Path columnarFile = Files.createTempFile("logmonitor", ".lmc");
+
+        try {
+            ColumnarLogConverter.main(new String[] {"test/resources/valid_monitoring_4.log", columnarFile.toString()});
+            Main.main(new String[] {columnarFile.toString(), "2"});
+            Main.main(new String[] {columnarFile.toString(), "2", OPTION_DETECTORS + "latency"});
+            Main.main(new String[] {columnarFile.toString(), "2", OPTION_FOLLOW});
+            Main.main(new String[] {columnarFile.toString(), "2", OPTION_PARALLEL});
+            // 変換時の検証で不正な行があれば中断する
+            ColumnarLogConverter.main(new String[] {"test/resources/invalid_monitoring_4.log", columnarFile.toString()});
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.3/24, P50 : 13, P90 : 15, P99 : 15, MAX : 15, TIMEOUT_RATIO : 0.0000\r\n"
+                            + "IP : 1.1.1.1/24, P50 : 10, P90 : 10, P99 : 10, MAX : 10, TIMEOUT_RATIO : 0.6667\r\n"
+                            + "IP : 1.1.1.2/24, P50 : 11, P90 : 11, P99 : 11, MAX : 11, TIMEOUT_RATIO : 0.6667\r\n"
+                            + MESSAGE_COLUMNAR_FILE_NOT_SUPPORTED + "\r\n"
+                            + MESSAGE_COLUMNAR_FILE_NOT_SUPPORTED + "\r\n"
+                            + MESSAGE_INVALID_FORMAT + "\r\n"
+                    , out.toString());
+
+            // 変換に失敗した場合は、変換済みのファイルを置き換えない
+            out.reset();
+            Main.main(new String[] {columnarFile.toString(), "2"});
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                    , out.toString());
+        } finally {
+            Files.delete(columnarFile);
+        }
+    }
+
+    @Test
+    public void test_doProcess_列指向形式_空のディレクトリ() throws Exception {
+        final Path emptyDirectory = Files.createTempDirectory("logmonitor");
+        final Path columnarFile = emptyDirectory.resolveSibling(emptyDirectory.getFileName() + ".lmc");
+
+        try {
+            // 変換するファイルが存在しない場合は、列指向形式のファイルを作成しない
+            ColumnarLogConverter.main(new String[] {emptyDirectory.toString(), columnarFile.toString()});
+            assertEquals(MESSAGE_FILE_CAN_NOT_READ + "\r\n", out.toString());
+            assertFalse(Files.exists(columnarFile));
+        } finally {
+            Files.delete(emptyDirectory);
+            Files.deleteIfExists(columnarFile);
+        }
+    }
+
+    @Test
+    public void test_doProcess_期間の指定() throws Exception {
+        final Path logFile = Files.createTempFile("logmonitor", ".log");
+        final Path indexFile = LogTimeIndex.indexPath(LogTimeIndex.defaultIndexDirectory(), logFile);
+        Files.copy(Paths.get("test/resources/valid_monitoring_4.log"), logFile, StandardCopyOption.REPLACE_EXISTING);
+
+        try {
+            Main.main(new String[] {logFile.toString(), "1", OPTION_FROM + "20210717101020"});
+            assertTrue(Files.exists(indexFile));
+            // 期間の終了は含まない
+            Main.main(new String[] {logFile.toString(), "1", OPTION_FROM + "20210717101020", OPTION_TO + "20210717101031"});
+            Main.main(new String[] {logFile.toString(), "1", OPTION_FROM + "20210717101020", OPTION_TO + "20210717101020"});
+            Main.main(new String[] {logFile.toString(), "1", OPTION_FROM + "20210717101020", OPTION_FOLLOW});
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 10\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 10\r\n"
+                            + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 10\r\n"
+                            + MESSAGE_INVALID_OPTION + "\r\n"
+                            + MESSAGE_INVALID_OPTION + "\r\n"
+                    , out.toString());
+        } finally {
+            Files.delete(logFile);
+            Files.deleteIfExists(indexFile);
+        }
+    }
+
+    @Test
+    public void test_doProcess_期間の指定後のディレクトリ指定() throws Exception {
+        final Path logDirectory = Files.createTempDirectory("logmonitor");
+        final Path indexDirectory = Files.createTempDirectory("logmonitor");
+        final Path logFile = logDirectory.resolve("a.log");
+        Files.copy(Paths.get("test/resources/valid_monitoring_4.log"), logFile);
+
+        try {
+            Main.main(new String[] {logDirectory.toString(), "2"});
+            final String expected = out.toString();
+            out.reset();
+
+            // 索引ファイルはログファイルのディレクトリに作成しない
+            Main.main(new String[] {logFile.toString(), "1", OPTION_FROM + "20210717101020", OPTION_INDEX_DIR + indexDirectory});
+            assertTrue(Files.exists(LogTimeIndex.indexPath(indexDirectory, logFile)));
+            try (final Stream<Path> paths = Files.list(logDirectory)) {
+                assertEquals(1, paths.count());
+            }
+            // 索引の作成先は期間を指定する場合のみ指定できる
+            Main.main(new String[] {logFile.toString(), "1", OPTION_INDEX_DIR + indexDirectory});
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 10\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 10\r\n"
+                            + MESSAGE_INVALID_OPTION + "\r\n"
+                    , out.toString());
+            out.reset();
+
+            // 以前のバージョンがログファイルと同じディレクトリに作成した索引ファイルは解析対象に含めない
+            Files.copy(LogTimeIndex.indexPath(indexDirectory, logFile), logDirectory.resolve("a.log" + LogTimeIndex.INDEX_SUFFIX));
+            Main.main(new String[] {logDirectory.toString(), "2"});
+            assertEquals(expected, out.toString());
+        } finally {
+            for (final Path directory : new Path[] {logDirectory, indexDirectory}) {
+                try (final Stream<Path> paths = Files.list(directory)) {
+                    for (final Path path : (Iterable<Path>) paths::iterator) {
+                        Files.delete(path);
+                    }
+                }
+                Files.delete(directory);
+            }
+        }
+    }
+
+    @Test
+    public void test_doProcess_ロールアップ() throws Exception {
+        final String validFileName = "test/resources/valid_monitoring_4.log";
+        final Path rollupDirectory = Files.createTempDirectory("logmonitor");
+
+        try {
+            Main.main(new String[] {validFileName, "2", OPTION_ROLLUP + rollupDirectory});
+            RollupQuery.main(new String[] {rollupDirectory.toString()});
+            RollupQuery.main(new String[] {rollupDirectory.toString(), OPTION_GRANULARITY + "minute", OPTION_SUBNET});
+            // 期間の終了は含まない
+            RollupQuery.main(new String[] {rollupDirectory.toString(), OPTION_FROM + "20210717000000", OPTION_TO + "20210717100000"});
+            RollupQuery.main(new String[] {rollupDirectory.toString(), OPTION_TO + "20210732000000"});
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.1/24, START : 20210717100000, COUNT : 3, TIMEOUT_RATIO : 0.6667, AVERAGE : 10.0, MAX : 10\r\n"
+                            + "IP : 1.1.1.2/24, START : 20210717100000, COUNT : 3, TIMEOUT_RATIO : 0.6667, AVERAGE : 11.0, MAX : 11\r\n"
+                            + "IP : 1.1.1.3/24, START : 20210717100000, COUNT : 3, TIMEOUT_RATIO : 0.0000, AVERAGE : 13.3, MAX : 15\r\n"
+                            + "SUBNET_IP : 1.1.1.***, START : 20210717101000, COUNT : 9, TIMEOUT_RATIO : 0.4444, AVERAGE : 12.2, MAX : 15\r\n"
+                            + MESSAGE_INVALID_OPTION + "\r\n"
+                    , out.toString());
+
+            // 解析ごとのセグメントは参照時に足し合わせる
+            out.reset();
+            Main.main(new String[] {validFileName, "2", OPTION_ROLLUP + rollupDirectory, OPTION_DETECTORS + "latency"});
+            RollupQuery.main(new String[] {rollupDirectory.toString(), OPTION_SUBNET});
+            assertEquals("IP : 1.1.1.3/24, P50 : 13, P90 : 15, P99 : 15, MAX : 15, TIMEOUT_RATIO : 0.0000\r\n"
+                            + "IP : 1.1.1.1/24, P50 : 10, P90 : 10, P99 : 10, MAX : 10, TIMEOUT_RATIO : 0.6667\r\n"
+                            + "IP : 1.1.1.2/24, P50 : 11, P90 : 11, P99 : 11, MAX : 11, TIMEOUT_RATIO : 0.6667\r\n"
+                            + "SUBNET_IP : 1.1.1.***, START : 20210717100000, COUNT : 18, TIMEOUT_RATIO : 0.4444, AVERAGE : 12.2, MAX : 15\r\n"
+                    , out.toString());
+        } finally {
+            try (final Stream<Path> paths = Files.list(rollupDirectory)) {
+                for (final Path path : (Iterable<Path>) paths::iterator) {
+                    Files.delete(path);
+                }
+            }
+            Files.delete(rollupDirectory);
+        }
+    }
+
+    @Test
+    public void test_doProcess_追記監視() throws Exception {
+        final Path logFile = Files.createTempFile("logmonitor", ".log");
+        Files.copy(Paths.get("test/resources/valid_monitoring_4.log"), logFile, StandardCopyOption.REPLACE_EXISTING);
+
+        final String[] args = new String[3];
+        args[0] = logFile.toString();
+        args[1] = "2";
+        args[2] = OPTION_FOLLOW;
+
+        final Thread thread = new Thread(() -> Main.main(args));
+        thread.start();
+        try {
+            // 既存の行は読み込んだ時点で出力される
+            awaitOutput("IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n");
+
+            // 追記された行も、続きの行を待たずに出力される
+            Files.write(logFile, "20210717101040,1.1.1.1/24,-\n20210717101041,1.1.1.1/24,-\n".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+            awaitOutput("IP : 1.1.1.1/24, FAULT_START : 20210717101040\r\n");
+        } finally {
+            thread.interrupt();
+            thread.join();
+            Files.delete(logFile);
+        }
+
+        assertEquals("IP : 1.1.1.1/24, FAULT_START : 20210717101010\r\n"
+                        + "IP : 1.1.1.2/24, FAULT_START : 20210717101011\r\n"
+                        + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                        + "IP : 1.1.1.1/24, FAULT_START : 20210717101040\r\n"
+                , out.toString());
+    }
+
+    @Test
+    public void test_doProcess_チェックポイント() throws Exception {
+        final List<String> lineList = Files.readAllLines(Paths.get("test/resources/valid_monitoring_4.log"));
+        final Path logFile = Files.createTempFile("logmonitor", ".log");
+        final Path checkpointFile = Files.createTempFile("logmonitor", ".checkpoint");
+        Files.delete(checkpointFile);
+
+        final String[] args = new String[3];
+        args[0] = logFile.toString();
+        args[1] = "2";
+        args[2] = OPTION_CHECKPOINT + checkpointFile;
+
+        try {
+            // 故障中の状態をチェックポイントに保存
+            Files.write(logFile, lineList.subList(0, 6));
+            Main.main(args);
+            assertEquals("", out.toString());
+
+            // 追記された行のみを解析し、前回の状態から復帰までの秒数を求める
+            Files.write(logFile, lineList.subList(6, lineList.size()), StandardOpenOption.APPEND);
+            Main.main(args);
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                    , out.toString());
+
+            // 追記がない場合は何も出力しない
+            Main.main(args);
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                    , out.toString());
+        } finally {
+            Files.delete(logFile);
+            Files.deleteIfExists(checkpointFile);
+        }
+    }
+
+    @Test
+    public void test_doProcess_ヒープ外の状態() throws Exception {
+        final String validFileName = "test/resources/valid_monitoring_3.log";
+        final String[] options = {OPTION_DETECTORS + "recovery,timeout,overload,subnet", OPTION_OVERLOAD_COUNT + "1", OPTION_OVERLOAD_MILLIS + "14"};
+
+        Main.main(new String[] {validFileName, "2", options[0], options[1], options[2], OPTION_OFF_HEAP});
+        final String expected = "IP : 1.1.1.1/16, RECOVERY_SECONDS : 30\r\n"
+                + "IP : 1.1.1.2/16, RECOVERY_SECONDS : 30\r\n"
+                + "IP : 1.1.1.1/24, RECOVERY_SECONDS : 20\r\n"
+                + "IP : 1.1.1.1/16, SECONDS_TO_RETURN : 30\r\n"
+                + "IP : 1.1.1.2/16, SECONDS_TO_RETURN : 30\r\n"
+                + "IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                + "IP : 1.1.1.1/24, OVERLOAD_PERIOD : 20210717101012-20210717101012\r\n"
+                + "SUBNET_IP : 1.1.***.***, FAULT_PERIOD : 20210717101011-20210717101031\r\n"
+                + "SUBNET_IP : 1.1.1.***, FAULT_PERIOD : 20210717101033-20210717101043\r\n";
+        assertEquals(expected, out.toString());
+
+        // ヒープに保持した場合と同一
+        out.reset();
+        Main.main(new String[] {validFileName, "2", options[0], options[1], options[2]});
+        assertEquals(expected, out.toString());
+
+        // チェックポイントはヒープに保持した場合と同じ形式のため、保持先を変えても状態を引き継げる
+        final List<String> lineList = Files.readAllLines(Paths.get("test/resources/valid_monitoring_4.log"));
+        final Path logFile = Files.createTempFile("logmonitor", ".log");
+        final Path checkpointFile = Files.createTempFile("logmonitor", ".checkpoint");
+        Files.delete(checkpointFile);
+        out.reset();
+
+        try {
+            Files.write(logFile, lineList.subList(0, 6));
+            Main.main(new String[] {logFile.toString(), "2", OPTION_CHECKPOINT + checkpointFile, OPTION_OFF_HEAP});
+            Files.write(logFile, lineList.subList(6, lineList.size()), StandardOpenOption.APPEND);
+            Main.main(new String[] {logFile.toString(), "2", OPTION_CHECKPOINT + checkpointFile});
+            Main.main(new String[] {validFileName, "2", OPTION_OFF_HEAP, OPTION_PARALLEL});
+            assertEquals("IP : 1.1.1.1/24, SECONDS_TO_RETURN : 20\r\n"
+                            + "IP : 1.1.1.2/24, SECONDS_TO_RETURN : 20\r\n"
+                            + MESSAGE_INVALID_OPTION + "\r\n"
+                    , out.toString());
+        } finally {
+            Files.delete(logFile);
+            Files.deleteIfExists(checkpointFile);
+        }
+    }
+
+    private void awaitOutput(final String expectedEnd) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!out.toString().endsWith(expectedEnd) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}